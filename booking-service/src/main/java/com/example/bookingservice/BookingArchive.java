@@ -0,0 +1,308 @@
+package com.example.bookingservice;
+
+import com.example.reservationevents.JournalSegments;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.IntStream;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Cold tier of the bookings: the finished bookings the {@link BookingArchiver}
+ * moves out of the booking table, in append-only segment files under
+ * {@code booking.archive.dir}. Without it nothing is archived.
+ * <p>
+ * A segment holds the bookings of one move, deflated in blocks of
+ * {@code booking.archive.block-size}, and is never written again. Its index, a
+ * file of its own, has a 64-bit hash of every transaction ID and the offset of
+ * its block, sorted by hash. Indexes are memory-mapped and searched in place,
+ * twelve bytes of page cache per booking and no heap; a lookup inflates only the
+ * blocks whose hash matches.
+ * <p>
+ * The index is written last and renamed into place, so a segment without one,
+ * from a move cut short, is ignored: its bookings are still in the table.
+ */
+@Component
+class BookingArchive implements AutoCloseable {
+
+    private static final int VERSION = 1;
+    private static final int INDEX_ENTRY_BYTES = 12;
+    private static final String PREFIX = "bookings-";
+    private static final String DATA_SUFFIX = ".arc";
+    private static final String INDEX_SUFFIX = ".idx";
+
+    private final Path dir;
+    private final int blockSize;
+
+    // newest first, the order lookups search them in
+    private final List<Segment> segments = new CopyOnWriteArrayList<>();
+    private long lastNumber;
+
+    @Autowired
+    BookingArchive(@Value("${booking.archive.dir:}") String dir,
+                   @Value("${booking.archive.block-size:128}") int blockSize) throws IOException {
+        this.dir = dir.isEmpty() ? null : Paths.get(dir);
+        this.blockSize = blockSize;
+        if (this.dir != null) {
+            open();
+        }
+    }
+
+    public boolean isEnabled() {
+        return dir != null;
+    }
+
+    /**
+     * Writes the bookings as a new segment, durably, and makes them available to
+     * {@link #find}.
+     */
+    public synchronized void write(List<Booking> bookings) throws IOException {
+        if (dir == null || bookings.isEmpty()) {
+            return;
+        }
+        long number = lastNumber + 1;
+        Path data = dir.resolve(JournalSegments.nameOf(PREFIX, number) + DATA_SUFFIX);
+        long[] hashes = new long[bookings.size()];
+        int[] offsets = new int[bookings.size()];
+        try (FileChannel channel = FileChannel.open(data, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            writeFully(channel, (ByteBuffer) ByteBuffer.allocate(4).putInt(VERSION).flip());
+            for (int start = 0; start < bookings.size(); start += blockSize) {
+                long offset = channel.position();
+                if (offset > Integer.MAX_VALUE) {
+                    throw new IOException("Archive segment " + data + " is too large, lower booking.archive.batch-size");
+                }
+                List<Booking> block = bookings.subList(start, Math.min(bookings.size(), start + blockSize));
+                byte[] deflated = deflate(block);
+                writeFully(channel, (ByteBuffer) ByteBuffer.allocate(4 + deflated.length)
+                        .putInt(deflated.length).put(deflated).flip());
+                for (int i = 0; i < block.size(); i++) {
+                    hashes[start + i] = hash(block.get(i).getBookingTransactionID());
+                    offsets[start + i] = (int) offset;
+                }
+            }
+            channel.force(true);
+        }
+
+        Path index = dir.resolve(JournalSegments.nameOf(PREFIX, number) + INDEX_SUFFIX);
+        Path temporary = dir.resolve(index.getFileName() + ".tmp");
+        ByteBuffer entries = ByteBuffer.allocate(bookings.size() * INDEX_ENTRY_BYTES);
+        sortedByHash(hashes.length, hashes).forEach(i -> entries.putLong(hashes[i]).putInt(offsets[i]));
+        entries.flip();
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            writeFully(channel, entries);
+            channel.force(true);
+        }
+        Files.move(temporary, index, StandardCopyOption.ATOMIC_MOVE);
+        segments.add(0, new Segment(data, index));
+        lastNumber = number;
+    }
+
+    /**
+     * The archived booking of the transaction, or null if it was never archived.
+     */
+    public Booking find(String transactionID) throws IOException {
+        long hash = hash(transactionID);
+        for (Segment segment : segments) {
+            Booking booking = segment.find(transactionID, hash);
+            if (booking != null) {
+                return booking;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The number of bookings archived, counted from the indexes.
+     */
+    public long size() {
+        long size = 0;
+        for (Segment segment : segments) {
+            size += segment.size;
+        }
+        return size;
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (Segment segment : segments) {
+            segment.channel.close();
+        }
+    }
+
+    // FNV-1a; collisions are told apart by the transaction ID stored with the booking
+    static long hash(String transactionID) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < transactionID.length(); i++) {
+            hash ^= transactionID.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private void open() throws IOException {
+        Files.createDirectories(dir);
+        List<Path> indexes = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, PREFIX + "*")) {
+            for (Path file : stream) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(INDEX_SUFFIX)) {
+                    indexes.add(file);
+                } else if (name.endsWith(".tmp")) {
+                    Files.delete(file);
+                    continue;
+                }
+                // a segment without an index is not read, but its number is not taken again
+                lastNumber = Math.max(lastNumber, JournalSegments.numberOf(file));
+            }
+        }
+        indexes.sort((a, b) -> Long.compare(JournalSegments.numberOf(b), JournalSegments.numberOf(a)));
+        for (Path index : indexes) {
+            String name = index.getFileName().toString();
+            segments.add(new Segment(dir.resolve(name.substring(0, name.length() - INDEX_SUFFIX.length()) + DATA_SUFFIX),
+                    index));
+        }
+    }
+
+    private static IntStream sortedByHash(int count, long[] hashes) {
+        return IntStream.range(0, count).boxed()
+                .sorted((a, b) -> Long.compare(hashes[a], hashes[b]))
+                .mapToInt(Integer::intValue);
+    }
+
+    private static byte[] deflate(List<Booking> bookings) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(bytes))) {
+            out.writeInt(bookings.size());
+            for (Booking booking : bookings) {
+                out.writeLong(booking.getId());
+                out.writeUTF(booking.getBookingTransactionID());
+                out.writeLong(booking.getBookingDate().getTime());
+                writeNullable(out, booking.getBookingName());
+                writeNullable(out, booking.getBookingLocation());
+                out.writeInt(booking.getBookingSeats());
+                out.writeUTF(booking.getBookingStatus());
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void writeNullable(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Archive segment ends inside a block");
+            }
+        }
+        buffer.flip();
+    }
+
+    private static final class Segment {
+
+        private final FileChannel channel;
+        private final MappedByteBuffer index;
+        private final int size;
+
+        private Segment(Path data, Path index) throws IOException {
+            this.channel = FileChannel.open(data, StandardOpenOption.READ);
+            try (FileChannel indexChannel = FileChannel.open(index, StandardOpenOption.READ)) {
+                this.index = indexChannel.map(FileChannel.MapMode.READ_ONLY, 0, indexChannel.size());
+            }
+            this.size = this.index.capacity() / INDEX_ENTRY_BYTES;
+            ByteBuffer version = ByteBuffer.allocate(4);
+            readFully(channel, version, 0);
+            if (version.getInt() != VERSION) {
+                channel.close();
+                throw new IOException("Unknown archive version in " + data);
+            }
+        }
+
+        private Booking find(String transactionID, long hash) throws IOException {
+            // the first entry with the hash, then every other one with it
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (index.getLong(middle * INDEX_ENTRY_BYTES) < hash) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            int lastOffset = -1;
+            for (int i = low; i < size && index.getLong(i * INDEX_ENTRY_BYTES) == hash; i++) {
+                int offset = index.getInt(i * INDEX_ENTRY_BYTES + 8);
+                if (offset != lastOffset) {
+                    Booking booking = readBlock(offset, transactionID);
+                    if (booking != null) {
+                        return booking;
+                    }
+                    lastOffset = offset;
+                }
+            }
+            return null;
+        }
+
+        private Booking readBlock(int offset, String transactionID) throws IOException {
+            ByteBuffer length = ByteBuffer.allocate(4);
+            readFully(channel, length, offset);
+            ByteBuffer deflated = ByteBuffer.allocate(length.getInt());
+            readFully(channel, deflated, offset + 4L);
+            try (DataInputStream in = new DataInputStream(new InflaterInputStream(
+                    new ByteArrayInputStream(deflated.array())))) {
+                for (int i = in.readInt(); i > 0; i--) {
+                    long id = in.readLong();
+                    String bookingTransactionID = in.readUTF();
+                    Date bookingDate = new Date(in.readLong());
+                    String name = readNullable(in);
+                    String location = readNullable(in);
+                    int seats = in.readInt();
+                    String status = in.readUTF();
+                    if (bookingTransactionID.equals(transactionID)) {
+                        Booking booking = new Booking(name, location, seats, bookingTransactionID, bookingDate, status);
+                        booking.setId(id);
+                        return booking;
+                    }
+                }
+            }
+            return null;
+        }
+    }
+}
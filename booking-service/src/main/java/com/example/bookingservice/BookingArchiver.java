@@ -0,0 +1,134 @@
+package com.example.bookingservice;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Moves the finished bookings, COMPLETED or REJECTED, last written more than
+ * {@code booking.archive.min-age-ms} ago from the booking table to the
+ * {@link BookingArchive}, every {@code booking.archive.interval-ms}, a segment
+ * of at most {@code booking.archive.batch-size} bookings at a time. The table
+ * keeps the recent and in-flight bookings only, so its indexes stay small; the
+ * bookings are found through the (status, date) index.
+ * <p>
+ * A batch is written to the archive before it is deleted from the table. A
+ * crash in between leaves it in both, the table is looked in first, and the
+ * next run archives it again.
+ */
+@Component
+class BookingArchiver {
+
+    private static final Logger log = LoggerFactory.getLogger(BookingArchiver.class);
+
+    private static final String SELECT_FINISHED = "select id, booking_transactionid, booking_date, booking_name, "
+            + "booking_location, booking_seats, booking_status from booking "
+            + "where booking_status = ? and booking_date < ? order by booking_date limit ?";
+    private static final String DELETE_BOOKING = "delete from booking where id = ?";
+    private static final List<BOOKING_STATUS> FINISHED = Arrays.asList(BOOKING_STATUS.COMPLETED, BOOKING_STATUS.REJECTED);
+
+    private static final RowMapper<Booking> BOOKING_ROW = (rs, row) -> {
+        Booking booking = new Booking(rs.getString("booking_name"), rs.getString("booking_location"),
+                rs.getInt("booking_seats"), rs.getString("booking_transactionid"), rs.getTimestamp("booking_date"),
+                rs.getString("booking_status"));
+        booking.setId(rs.getLong("id"));
+        return booking;
+    };
+
+    private final BookingArchive archive;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final long minAgeMillis;
+    private final long intervalMillis;
+    private final int batchSize;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "booking-archiver");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Autowired
+    BookingArchiver(BookingArchive archive, JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                    @Value("${booking.archive.min-age-ms:86400000}") long minAgeMillis,
+                    @Value("${booking.archive.interval-ms:60000}") long intervalMillis,
+                    @Value("${booking.archive.batch-size:10000}") int batchSize) {
+        this.archive = archive;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.minAgeMillis = minAgeMillis;
+        this.intervalMillis = intervalMillis;
+        this.batchSize = batchSize;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (archive.isEnabled()) {
+            scheduler.scheduleWithFixedDelay(this::archive, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Moves every booking old enough to the archive.
+     *
+     * @return the number of bookings moved
+     */
+    int archive() {
+        long start = System.currentTimeMillis();
+        Timestamp cutoff = new Timestamp(start - minAgeMillis);
+        int moved = 0;
+        try {
+            for (BOOKING_STATUS status : FINISHED) {
+                List<Booking> batch;
+                do {
+                    batch = jdbcTemplate.query(SELECT_FINISHED, BOOKING_ROW, status.name(), cutoff, batchSize);
+                    move(batch);
+                    moved += batch.size();
+                } while (batch.size() == batchSize);
+            }
+        } catch (IOException | RuntimeException e) {
+            // what was not moved is still in the table, for the next run
+            log.warn("Could not archive bookings", e);
+        }
+        if (moved > 0) {
+            log.info("Archived {} bookings in {} ms, {} in the archive", moved, System.currentTimeMillis() - start,
+                    archive.size());
+        }
+        return moved;
+    }
+
+    private void move(List<Booking> bookings) throws IOException {
+        if (bookings.isEmpty()) {
+            return;
+        }
+        archive.write(bookings);
+        List<Object[]> ids = new ArrayList<>(bookings.size());
+        for (Booking booking : bookings) {
+            ids.add(new Object[]{booking.getId()});
+        }
+        transactionTemplate.execute(status -> jdbcTemplate.batchUpdate(DELETE_BOOKING, ids));
+    }
+
+    @PreDestroy
+    public void close() throws InterruptedException {
+        scheduler.shutdown();
+        scheduler.awaitTermination(10, TimeUnit.SECONDS);
+    }
+}
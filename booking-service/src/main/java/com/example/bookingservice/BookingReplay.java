@@ -0,0 +1,76 @@
+package com.example.bookingservice;
+
+import com.example.reservationevents.DoBookingEvent;
+import com.example.reservationevents.IdBlocks;
+import com.example.reservationevents.ReplayTarget;
+import com.example.reservationevents.ReservationDeleteEvent;
+import com.example.reservationevents.SagaEvent;
+import com.example.reservationevents.TicketRejectEvent;
+import com.example.reservationevents.TicketReserveEvent;
+import com.example.reservationevents.WriteBatch;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.util.Date;
+
+/**
+ * Rebuilds the bookings from the events the service handled (see EventReplay):
+ * PENDING from their DOBOOKING, then COMPLETED by their TICKET_RESERVE or
+ * REJECTED by their TICKET_REJECT or the RESERVATION_DELETE that compensated
+ * them (journalled by {@link BookingProcessor#reject}), whichever came first,
+ * dated from the events. Each is written anew, in place of the row of its
+ * transaction ID; bookings of transactions the journal does not have are left
+ * as they are.
+ */
+@Component
+class BookingReplay implements ReplayTarget<Booking> {
+
+    private static final String DELETE_BOOKING = "delete from booking where booking_transactionid = ?";
+
+    private final IdBlocks bookingIds;
+
+    @Autowired
+    BookingReplay(IdBlocks bookingIds) {
+        this.bookingIds = bookingIds;
+    }
+
+    @Override
+    public String getName() {
+        return "booking";
+    }
+
+    @Override
+    public String keyOf(SagaEvent event) {
+        return event instanceof DoBookingEvent || event instanceof TicketReserveEvent
+                || event instanceof TicketRejectEvent || event instanceof ReservationDeleteEvent
+                ? event.getTransactionID() : null;
+    }
+
+    @Override
+    public Booking apply(Booking booking, SagaEvent event) {
+        if (event instanceof DoBookingEvent) {
+            DoBookingEvent doBooking = (DoBookingEvent) event;
+            return new Booking(doBooking.getReservationName(), doBooking.getReservationLocation(),
+                    doBooking.getReservationCount(), doBooking.getTransactionID(), new Date(doBooking.getTimestamp()),
+                    BOOKING_STATUS.PENDING.name());
+        }
+        // a booking that was never started has its seats released, nothing is stored; a finished one stays so
+        if (booking != null && BOOKING_STATUS.PENDING.name().equals(booking.getBookingStatus())) {
+            booking.setBookingDate(new Date(event.getTimestamp()));
+            booking.setBookingStatus(event instanceof TicketReserveEvent ? BOOKING_STATUS.COMPLETED.name()
+                    : BOOKING_STATUS.REJECTED.name());
+        }
+        return booking;
+    }
+
+    @Override
+    public void write(String transactionID, Booking booking, WriteBatch batch) {
+        batch.add(DELETE_BOOKING, transactionID);
+        if (booking != null) {
+            batch.add(BookingProcessor.INSERT_BOOKING, bookingIds.next(), booking.getBookingTransactionID(),
+                    new Timestamp(booking.getBookingDate().getTime()), booking.getBookingName(),
+                    booking.getBookingLocation(), booking.getBookingSeats(), booking.getBookingStatus());
+        }
+    }
+}
@@ -1,34 +1,64 @@
 package com.example.bookingservice;
 
+import com.example.reservationevents.DoBookingEvent;
+import com.example.reservationevents.EventJournal;
+import com.example.reservationevents.EventOutbox;
+import com.example.reservationevents.IdBlocks;
+import com.example.reservationevents.ProcessedEvents;
+import com.example.reservationevents.ReservationDeleteEvent;
+import com.example.reservationevents.ReservationEvent;
+import com.example.reservationevents.ReservationSaveEvent;
+import com.example.reservationevents.SagaMetrics;
+import com.example.reservationevents.TicketConfirmEvent;
+import com.example.reservationevents.TicketRejectEvent;
+import com.example.reservationevents.TicketReleaseEvent;
+import com.example.reservationevents.TicketReserveEvent;
+import com.example.reservationevents.WriteBatch;
+import com.example.reservationevents.WriteBehind;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.cloud.client.discovery.EnableDiscoveryClient;
 import org.springframework.cloud.stream.annotation.EnableBinding;
-import org.springframework.cloud.stream.messaging.Sink;
-import org.springframework.cloud.stream.messaging.Source;
+import org.springframework.cloud.stream.annotation.Input;
+import org.springframework.cloud.stream.annotation.StreamListener;
 import org.springframework.context.annotation.Bean;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.repository.query.Param;
 import org.springframework.data.rest.core.annotation.RepositoryRestResource;
 import org.springframework.data.rest.core.annotation.RestResource;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.integration.annotation.IntegrationComponentScan;
 import org.springframework.integration.annotation.MessageEndpoint;
-import org.springframework.integration.annotation.ServiceActivator;
-import org.springframework.messaging.Message;
-import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.messaging.SubscribableChannel;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Table;
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 @EnableDiscoveryClient
 @IntegrationComponentScan
-@EnableBinding({Source.class, Sink.class})
+@EnableBinding(BookingChannels.class)
 @SpringBootApplication
 public class BookingServiceApplication {
     @Bean
@@ -38,14 +68,52 @@ public class BookingServiceApplication {
         };
     }
 
+    // IDs for the bookings the saga writes behind, from the sequence JPA takes them from
+    @Bean
+    public IdBlocks bookingIds(JdbcTemplate jdbcTemplate) {
+        return new IdBlocks(jdbcTemplate, Booking.ID_SEQUENCE, Booking.ID_BLOCK_SIZE);
+    }
+
     public static void main(String[] args) {
         SpringApplication.run(BookingServiceApplication.class, args);
 
     }
 }
 
+// Each event type the Booking Service handles arrives on its own destination
+interface BookingChannels {
+
+    String BOOKING_REQUESTS = "bookingRequests";
+    String TICKET_RESERVATIONS = "ticketReservations";
+    String TICKET_REJECTIONS = "ticketRejections";
+    String BOOKING_UPDATES = "bookingUpdates";
+    String BOOKING_REJECTION_UPDATES = "bookingRejectionUpdates";
+
+    @Input(BOOKING_REQUESTS)
+    SubscribableChannel bookingRequests();
+
+    @Input(TICKET_RESERVATIONS)
+    SubscribableChannel ticketReservations();
+
+    @Input(TICKET_REJECTIONS)
+    SubscribableChannel ticketRejections();
+
+    // TICKET_CONFIRM and RESERVATION_DELETE, sent once the booking is committed
+    // COMPLETED or REJECTED, without a consumer group, so that every instance
+    // can answer the clients waiting on it
+    @Input(BOOKING_UPDATES)
+    SubscribableChannel bookingUpdates();
+
+    @Input(BOOKING_REJECTION_UPDATES)
+    SubscribableChannel bookingRejectionUpdates();
+}
+
 enum BOOKING_STATUS {
     PENDING, COMPLETED, REJECTED;
+
+    static boolean isFinished(Booking booking) {
+        return booking != null && !PENDING.name().equals(booking.getBookingStatus());
+    }
 }
 
 
@@ -57,79 +125,370 @@ class BookingService {
     private BookingRepository bookingRepository;
 
     @Autowired
-    private Source source;
+    private BookingStatusCache bookingStatusCache;
+
+    @Autowired
+    private BookingStatusWaiters bookingStatusWaiters;
+
+    @Autowired
+    private EventOutbox outbox;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${booking.status-wait.timeout-ms:30000}")
+    private long statusWaitTimeout;
+
+    @Value("${booking.bulk.max-size:1000}")
+    private int bulkMaxSize;
 
     @GetMapping("/getstatus/{transactionID}")
     public Booking getStatus(@PathVariable String transactionID) {
-        return bookingRepository.findByBookingTransactionID(transactionID);
+        return bookingStatusCache.find(transactionID);
+
+    }
 
+    // Long poll: answers as soon as the booking is no longer PENDING,
+    // or with the booking as it stands when the wait times out
+    @GetMapping("/waitstatus/{transactionID}")
+    public DeferredResult<Booking> waitStatus(@PathVariable String transactionID) {
+        DeferredResult<Booking> result = new DeferredResult<>(statusWaitTimeout);
+        Runnable cancel = bookingStatusWaiters.await(transactionID, result::setResult);
+        result.onCompletion(cancel);
+        result.onTimeout(() -> {
+            cancel.run();
+            result.setResult(bookingStatusCache.find(transactionID));
+        });
+        completeIfFinished(transactionID);
+        return result;
+    }
+
+    // Server-Sent Events: the current booking, then the finished one
+    @GetMapping("/streamstatus/{transactionID}")
+    public SseEmitter streamStatus(@PathVariable String transactionID) throws IOException {
+        SseEmitter emitter = new SseEmitter(statusWaitTimeout);
+        Booking current = bookingStatusCache.find(transactionID);
+        if (current != null) {
+            emitter.send(current);
+        }
+        if (BOOKING_STATUS.isFinished(current)) {
+            emitter.complete();
+            return emitter;
+        }
+        Runnable cancel = bookingStatusWaiters.await(transactionID, booking -> {
+            try {
+                emitter.send(booking);
+                emitter.complete();
+            } catch (IOException e) {
+                emitter.completeWithError(e);
+            }
+        });
+        emitter.onCompletion(cancel);
+        emitter.onTimeout(cancel);
+        completeIfFinished(transactionID);
+        return emitter;
+    }
+
+    // the booking may have finished while the waiter was being registered
+    private void completeIfFinished(String transactionID) {
+        Booking latest = bookingStatusCache.find(transactionID);
+        if (BOOKING_STATUS.isFinished(latest)) {
+            bookingStatusWaiters.complete(latest);
+        }
     }
 
     @PostMapping("/ticket")
     public String bookTicket(@RequestBody Reservation r) {
 
         final String transID = UUID.randomUUID().toString();
-        bookingRepository.save(new Booking(r.getReservationName(),
-                r.getReservationLocation(), r.getReservationCount(),
-                transID));
-
-        // Save Reservation
-        // Event Name is RESERVATION_SAVE
-        // Msg format is RESERVATION_SAVE,<Reservation_Name>,<Reservation_Location>,<Reservation_Count>,<TransID>
-        Message<String> message = MessageBuilder.withPayload("RESERVATION_SAVE" + ","
-                + r.getReservationName() + ","
-                + r.getReservationLocation() + ","
-                + r.getReservationCount() + ","
-                + transID)
-                .build();
-        source.output().send(message);
+        Booking booking = transactionTemplate.execute(status -> {
+            Booking saved = bookingRepository.save(new Booking(r.getReservationName(),
+                    r.getReservationLocation(), r.getReservationCount(),
+                    transID));
+
+            // Save Reservation
+            // Event Name is RESERVATION_SAVE, sent once the booking is committed
+            outbox.add(new ReservationSaveEvent(r.getReservationName(),
+                    r.getReservationLocation(), r.getReservationCount(), transID));
+            return saved;
+        });
+        bookingStatusCache.put(booking);
 
         return transID;
     }
+
+    // Group bookings: every valid reservation is booked, and its RESERVATION_SAVE event
+    // stored for sending, in one transaction; one result per reservation, in order
+    @PostMapping("/tickets")
+    public ResponseEntity<List<BookingResult>> bookTickets(@RequestBody List<Reservation> reservations) {
+        if (reservations.size() > bulkMaxSize) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).build();
+        }
+
+        List<BookingResult> results = new ArrayList<>(reservations.size());
+        List<Booking> bookings = new ArrayList<>(reservations.size());
+        for (Reservation r : reservations) {
+            String invalid = BookingResult.validate(r);
+            if (invalid != null) {
+                results.add(BookingResult.invalid(invalid));
+                continue;
+            }
+            Booking booking = new Booking(r.getReservationName(), r.getReservationLocation(),
+                    r.getReservationCount(), UUID.randomUUID().toString());
+            results.add(BookingResult.accepted(booking.getBookingTransactionID()));
+            bookings.add(booking);
+        }
+        if (bookings.isEmpty()) {
+            return ResponseEntity.ok(results);
+        }
+
+        // one transaction, inserts sent to the database in JDBC batches
+        List<Booking> saved = transactionTemplate.execute(status -> {
+            List<Booking> inserted = bookingRepository.save(bookings);
+            List<ReservationSaveEvent> events = new ArrayList<>(inserted.size());
+            for (Booking booking : inserted) {
+                events.add(new ReservationSaveEvent(booking.getBookingName(), booking.getBookingLocation(),
+                        booking.getBookingSeats(), booking.getBookingTransactionID()));
+            }
+            outbox.addAll(events);
+            return inserted;
+        });
+        saved.forEach(bookingStatusCache::put);
+        return ResponseEntity.ok(results);
+    }
+}
+
+// Outcome of one reservation of a group booking
+class BookingResult {
+
+    enum Outcome {
+        ACCEPTED, INVALID
+    }
+
+    private final String transactionID;
+    private final Outcome outcome;
+    private final String error;
+
+    private BookingResult(String transactionID, Outcome outcome, String error) {
+        this.transactionID = transactionID;
+        this.outcome = outcome;
+        this.error = error;
+    }
+
+    static BookingResult accepted(String transactionID) {
+        return new BookingResult(transactionID, Outcome.ACCEPTED, null);
+    }
+
+    static BookingResult invalid(String error) {
+        return new BookingResult(null, Outcome.INVALID, error);
+    }
+
+    // why the reservation cannot be booked, or null if it can
+    static String validate(Reservation r) {
+        if (r == null) {
+            return "missing reservation";
+        }
+        if (r.getReservationName() == null || r.getReservationName().isEmpty()) {
+            return "missing reservationName";
+        }
+        if (r.getReservationLocation() == null || r.getReservationLocation().isEmpty()) {
+            return "missing reservationLocation";
+        }
+        if (r.getReservationCount() <= 0) {
+            return "reservationCount must be positive";
+        }
+        return null;
+    }
+
+    public String getTransactionID() {
+        return transactionID;
+    }
+
+    public Outcome getOutcome() {
+        return outcome;
+    }
+
+    public String getError() {
+        return error;
+    }
 }
 
 @MessageEndpoint
 class BookingProcessor {
 
+    static final String INSERT_BOOKING = "insert into booking (id, booking_transactionid, booking_date, "
+            + "booking_name, booking_location, booking_seats, booking_status) values (?, ?, ?, ?, ?, ?, ?)";
+    static final String UPDATE_BOOKING = "update booking set booking_date = ?, booking_status = ? where id = ?";
+
     @Autowired
-    private BookingRepository bookingRepository;
+    private IdBlocks bookingIds;
+
+    @Autowired
+    private BookingStatusCache bookingStatusCache;
+
+    @Autowired
+    private BookingStatusWaiters bookingStatusWaiters;
+
+    @Autowired
+    private EventOutbox outbox;
 
     @Autowired
-    private Source source;
+    private ProcessedEvents processedEvents;
 
-    @ServiceActivator(inputChannel = Sink.INPUT)
-    public void acceptRejectBooking(String msg) {
+    @Autowired
+    private EventJournal eventJournal;
+
+    @Autowired
+    private SagaMetrics sagaMetrics;
 
-        // Msg Format is DOBOOKING, <Reservation_Name>,<Reservation_Location>,<Reservation_Count>,<TransID>
-        String msgParts[] = msg.split(",");
-        if (msgParts[0].trim().equalsIgnoreCase("DOBOOKING")) {
-            bookingRepository.save(new Booking(msgParts[1],
-                    msgParts[2], Integer.parseInt(msgParts[3]),
-                    msgParts[4]));
+    // the handlers' writes are committed in batches with those of other events, in the order queued
+    @Autowired
+    private WriteBehind writeBehind;
+
+    // shorter than ticket.hold.ttl-ms, so a booking completes while its seats are still held
+    @Value("${booking.saga.timeout-ms:600000}")
+    private long sagaTimeoutMillis;
+
+    // Message from APIGateway
+    @StreamListener(BookingChannels.BOOKING_REQUESTS)
+    public void startBooking(DoBookingEvent doBooking) throws InterruptedException {
+        writeBehind.write(doBooking.getPartitionKey(), batch -> {
+            // a redelivery: the booking is started already
+            if (!processedEvents.markProcessed(doBooking)) {
+                return;
+            }
+            // dated when the gateway took the request, the start of the saga
+            Booking booking = new Booking(doBooking.getReservationName(),
+                    doBooking.getReservationLocation(), doBooking.getReservationCount(),
+                    doBooking.getTransactionID(), new Date(doBooking.getTimestamp()), BOOKING_STATUS.PENDING.name());
+            booking.setId(bookingIds.next());
+            batch.add(INSERT_BOOKING, booking.getId(), booking.getBookingTransactionID(),
+                    new Timestamp(booking.getBookingDate().getTime()), booking.getBookingName(),
+                    booking.getBookingLocation(), booking.getBookingSeats(), booking.getBookingStatus());
+            batch.stage(booking.getBookingTransactionID(), booking);
+            batch.afterCommit(() -> bookingStatusCache.put(booking));
 
             // Save Reservation
-            // Event Name is RESERVATION_SAVE
-            // Msg format is RESERVATION_SAVE,<Reservation_Name>,<Reservation_Location>,<Reservation_Count>,<TransID>
-            Message<String> message = MessageBuilder.withPayload("RESERVATION_SAVE" + ","
-                    + msgParts[1] + ","
-                    + msgParts[2] + ","
-                    + msgParts[3] + ","
-                    + msgParts[4])
-                    .build();
-            source.output().send(message);
-        }
+            // Event Name is RESERVATION_SAVE, sent once the booking is committed
+            outbox.add(new ReservationSaveEvent(doBooking.getReservationName(),
+                    doBooking.getReservationLocation(), doBooking.getReservationCount(),
+                    doBooking.getTransactionID()));
+        });
+    }
 
-        if (msgParts[0].trim().equalsIgnoreCase("TICKET_RESERVE")) {
-            Booking inboundBooing = new Booking(msgParts[1], msgParts[2], Integer.parseInt(msgParts[3]), msgParts[4],
-                    new Date(System.currentTimeMillis()), BOOKING_STATUS.COMPLETED.name());
-            Booking existingBooking = bookingRepository.findByBookingTransactionID(msgParts[4].trim());
-            if (existingBooking != null) {
-                if (existingBooking.getBookingTransactionID().equalsIgnoreCase(inboundBooing.getBookingTransactionID())) {
-                    inboundBooing.setId(existingBooking.getId());
-                    bookingRepository.save(inboundBooing);
-                }
+    // Message from Ticket Service
+    @StreamListener(BookingChannels.TICKET_RESERVATIONS)
+    public void completeBooking(TicketReserveEvent reserved) throws InterruptedException {
+        writeBehind.write(reserved.getPartitionKey(), batch -> {
+            if (!processedEvents.markProcessed(reserved)) {
+                return;
             }
+            Booking inboundBooing = updatedBooking(reserved, BOOKING_STATUS.COMPLETED);
+            Booking existingBooking = current(batch, bookingStatusCache, reserved.getTransactionID());
+            if (timedOut(existingBooking)) {
+                // the hold may have expired, the sweeper's rejection is only due
+                reject(batch, reserved.getTransactionID());
+            } else if (existingBooking != null
+                    && !BOOKING_STATUS.REJECTED.name().equals(existingBooking.getBookingStatus())) {
+                recordSagaLatency(existingBooking);
+                inboundBooing.setId(existingBooking.getId());
+                batch.add(UPDATE_BOOKING, new Timestamp(inboundBooing.getBookingDate().getTime()),
+                        inboundBooing.getBookingStatus(), inboundBooing.getId());
+                batch.stage(inboundBooing.getBookingTransactionID(), inboundBooing);
+                batch.afterCommit(() -> bookingStatusCache.put(inboundBooing));
+                // Sell the seats the Ticket Service holds for the booking
+                // Event Name is TICKET_CONFIRM
+                outbox.add(new TicketConfirmEvent(reserved.getReservationName(), reserved.getReservationLocation(),
+                        reserved.getReservationCount(), reserved.getTransactionID()));
+            } else {
+                // nothing to book, or the saga timed out (see StalledSagaSweeper), give the seats back
+                // rather than wait for the hold to expire
+                // Event Name is TICKET_RELEASE
+                outbox.add(new TicketReleaseEvent(reserved.getReservationName(), reserved.getReservationLocation(),
+                        reserved.getReservationCount(), reserved.getTransactionID()));
+            }
+        });
+    }
+
+    // Message from Ticket Service, the location has not enough tickets left
+    @StreamListener(BookingChannels.TICKET_REJECTIONS)
+    public void rejectBooking(TicketRejectEvent rejected) throws InterruptedException {
+        writeBehind.write(rejected.getPartitionKey(), batch -> {
+            if (processedEvents.markProcessed(rejected)) {
+                reject(batch, rejected.getTransactionID());
+            }
+        });
+    }
+
+    /**
+     * Marks the booking REJECTED, if it is still PENDING, and compensates it:
+     * RESERVATION_DELETE removes its reservation and TICKET_RELEASE gives back any
+     * seats still held for it. Runs on the write-behind, in its transaction.
+     * <p>
+     * The RESERVATION_DELETE is also journalled, as if handled, so that replay
+     * rebuilds the booking REJECTED, however it was rejected.
+     */
+    void reject(WriteBatch batch, String transactionID) {
+        Booking pending = current(batch, bookingStatusCache, transactionID);
+        if (pending == null || !BOOKING_STATUS.PENDING.name().equals(pending.getBookingStatus())) {
+            return;
         }
+        Booking rejected = new Booking(pending.getBookingName(), pending.getBookingLocation(),
+                pending.getBookingSeats(), transactionID, new Date(), BOOKING_STATUS.REJECTED.name());
+        rejected.setId(pending.getId());
+        batch.add(UPDATE_BOOKING, new Timestamp(rejected.getBookingDate().getTime()),
+                rejected.getBookingStatus(), rejected.getId());
+        batch.stage(transactionID, rejected);
+        ReservationDeleteEvent compensation = new ReservationDeleteEvent(rejected.getBookingName(),
+                rejected.getBookingLocation(), rejected.getBookingSeats(), transactionID);
+        outbox.add(compensation);
+        outbox.add(new TicketReleaseEvent(rejected.getBookingName(), rejected.getBookingLocation(),
+                rejected.getBookingSeats(), transactionID));
+        batch.afterCommit(() -> {
+            eventJournal.append(compensation);
+            bookingStatusCache.put(rejected);
+            bookingStatusWaiters.complete(rejected);
+        });
+    }
+
+    // Same messages on every instance, for the clients waiting on this one; the outbox sends them
+    // only after the booking is committed, so a client reading it back finds it updated
+    @StreamListener(BookingChannels.BOOKING_UPDATES)
+    public void notifyWaiters(TicketConfirmEvent confirmed) {
+        bookingStatusWaiters.complete(
+                bookingStatusCache.refresh(updatedBooking(confirmed, BOOKING_STATUS.COMPLETED)));
+    }
+
+    @StreamListener(BookingChannels.BOOKING_REJECTION_UPDATES)
+    public void notifyRejectionWaiters(ReservationDeleteEvent compensation) {
+        bookingStatusWaiters.complete(
+                bookingStatusCache.refresh(updatedBooking(compensation, BOOKING_STATUS.REJECTED)));
+    }
+
+    // The booking as of the units before this one: written by one of the same flush, not committed
+    // yet, or else as cached or committed
+    static Booking current(WriteBatch batch, BookingStatusCache bookingStatusCache, String transactionID) {
+        Booking staged = batch.staged(transactionID);
+        return staged != null ? staged : bookingStatusCache.find(transactionID);
+    }
+
+    private boolean timedOut(Booking booking) {
+        return booking != null && BOOKING_STATUS.PENDING.name().equals(booking.getBookingStatus())
+                && System.currentTimeMillis() - booking.getBookingDate().getTime() > sagaTimeoutMillis;
+    }
+
+    // From the DOBOOKING request to now
+    private void recordSagaLatency(Booking started) {
+        if (BOOKING_STATUS.PENDING.name().equals(started.getBookingStatus())) {
+            sagaMetrics.record("saga.end-to-end", System.currentTimeMillis() - started.getBookingDate().getTime(),
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static Booking updatedBooking(ReservationEvent event, BOOKING_STATUS status) {
+        return new Booking(event.getReservationName(), event.getReservationLocation(),
+                event.getReservationCount(), event.getTransactionID(),
+                new Date(System.currentTimeMillis()), status.name());
     }
 
 }
@@ -140,14 +499,28 @@ interface BookingRepository extends JpaRepository<Booking, Long> {
     @RestResource(path = "by-transactionID")
     Booking findByBookingTransactionID(@Param("tid") String bookingTransactionID);
 
+    // for warming the status cache, see BookingStatusCache
+    @RestResource(exported = false)
+    List<Booking> findByBookingStatusOrderByIdDesc(String bookingStatus, Pageable pageable);
+
 }
 
 
 @Entity
+// the status and date one finds the bookings to archive and the stalled sagas, see BookingArchiver
+// and StalledSagaSweeper
+@Table(indexes = {
+        @Index(name = "booking_transaction_id_idx", columnList = "bookingTransactionID", unique = true),
+        @Index(name = "booking_status_date_idx", columnList = "bookingStatus, bookingDate, id")})
 class Booking {
 
+    // IDs come in blocks, see IdBlocks, so inserts need no round trip to the sequence and can be batched
+    static final String ID_SEQUENCE = "booking_ids";
+    static final int ID_BLOCK_SIZE = 50;
+
     @Id
-    @GeneratedValue
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = ID_SEQUENCE)
+    @SequenceGenerator(name = ID_SEQUENCE, sequenceName = ID_SEQUENCE, allocationSize = ID_BLOCK_SIZE)
     private Long id;
 
     private String bookingTransactionID;
@@ -0,0 +1,158 @@
+package com.example.bookingservice;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Near-cache of the latest Booking per transaction ID, kept up to date by the
+ * Booking Service itself whenever it writes a booking, so that clients polling
+ * /booking/getstatus rarely reach the database.
+ * <p>
+ * Reads never lock; writes take a lock to keep each cached transaction once in
+ * the insertion order. The cache holds at most
+ * {@code booking.status-cache.max-size} bookings and evicts the oldest
+ * transaction first. Hits, misses and size are published on the actuator
+ * /metrics endpoint.
+ * <p>
+ * Misses are not cached: a booking that another instance, or this one, is
+ * about to commit must be found as soon as it exists, so polling an unknown
+ * transaction reads the database, and then the archive, every time.
+ * <p>
+ * On startup the cache is filled with the latest pending bookings, which a
+ * durable database kept across the restart: those are the ones clients are
+ * still polling and the saga still has to complete.
+ */
+@Component
+class BookingStatusCache implements PublicMetrics {
+
+    private static final Logger log = LoggerFactory.getLogger(BookingStatusCache.class);
+
+    private final BookingRepository bookingRepository;
+    private final BookingArchive archive;
+    private final int maxSize;
+
+    private final ConcurrentHashMap<String, Booking> bookings = new ConcurrentHashMap<>();
+    // guarded by itself
+    private final Set<String> insertionOrder = new LinkedHashSet<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    @Autowired
+    BookingStatusCache(BookingRepository bookingRepository, BookingArchive archive,
+                       @Value("${booking.status-cache.max-size:10000}") int maxSize) {
+        this.bookingRepository = bookingRepository;
+        this.archive = archive;
+        this.maxSize = maxSize;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warm() {
+        List<Booking> pending = bookingRepository.findByBookingStatusOrderByIdDesc(
+                BOOKING_STATUS.PENDING.name(), new PageRequest(0, maxSize));
+        for (int i = pending.size() - 1; i >= 0; i--) {
+            put(pending.get(i));
+        }
+        if (!pending.isEmpty()) {
+            log.info("Warmed the booking status cache with {} pending bookings", pending.size());
+        }
+    }
+
+    /**
+     * The booking of the transaction, from the cache or else from the database,
+     * or else from the {@link BookingArchive}.
+     */
+    public Booking find(String transactionID) {
+        Booking booking = bookings.get(transactionID);
+        if (booking != null) {
+            hits.increment();
+            return booking;
+        }
+        misses.increment();
+        booking = bookingRepository.findByBookingTransactionID(transactionID);
+        if (booking == null) {
+            booking = findArchived(transactionID);
+        }
+        if (booking != null) {
+            cache(transactionID, booking, false);
+        }
+        return booking;
+    }
+
+    private Booking findArchived(String transactionID) {
+        try {
+            return archive.find(transactionID);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read the booking archive", e);
+        }
+    }
+
+    /**
+     * Records a booking the service has just written.
+     */
+    public void put(Booking booking) {
+        cache(booking.getBookingTransactionID(), booking, true);
+    }
+
+    /**
+     * Replaces the cached booking of the transaction, if there is one, keeping
+     * its database ID. Used for bookings another instance writes. A rejected
+     * booking is kept: a saga that timed out does not complete.
+     *
+     * @return the booking as cached, or as given if the transaction is not cached
+     */
+    public Booking refresh(Booking booking) {
+        Booking cached = bookings.computeIfPresent(booking.getBookingTransactionID(), (id, previous) -> {
+            if (BOOKING_STATUS.REJECTED.name().equals(previous.getBookingStatus())) {
+                return previous;
+            }
+            booking.setId(previous.getId());
+            return booking;
+        });
+        return cached != null ? cached : booking;
+    }
+
+    private void cache(String transactionID, Booking booking, boolean replace) {
+        synchronized (insertionOrder) {
+            if (replace) {
+                bookings.put(transactionID, booking);
+            } else if (bookings.putIfAbsent(transactionID, booking) != null) {
+                return;
+            }
+            // an update does not make the transaction younger
+            if (insertionOrder.add(transactionID)) {
+                Iterator<String> eldest = insertionOrder.iterator();
+                while (insertionOrder.size() > maxSize) {
+                    bookings.remove(eldest.next());
+                    eldest.remove();
+                }
+            }
+        }
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        return Arrays.<Metric<?>>asList(
+                new Metric<>("booking.status-cache.hits", hits.sum()),
+                new Metric<>("booking.status-cache.misses", misses.sum()),
+                new Metric<>("booking.status-cache.size", bookings.size()));
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.bookingservice;
+
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Clients waiting for a booking to finish, per transaction ID.
+ * <p>
+ * A waiter is only a callback; the HTTP request behind it has been handed to
+ * Spring MVC's async support, so waiting clients do not hold servlet threads.
+ */
+@Component
+class BookingStatusWaiters implements PublicMetrics {
+
+    // the sets are only changed inside compute calls on their own key
+    private final ConcurrentHashMap<String, Set<Consumer<Booking>>> waiters = new ConcurrentHashMap<>();
+    private final AtomicInteger waiting = new AtomicInteger();
+
+    /**
+     * Calls {@code waiter} once with the finished booking of the transaction.
+     *
+     * @return removes the waiter again, e.g. when its request times out
+     */
+    public Runnable await(String transactionID, Consumer<Booking> waiter) {
+        waiters.compute(transactionID, (id, pending) -> {
+            if (pending == null) {
+                pending = new HashSet<>(2);
+            }
+            pending.add(waiter);
+            return pending;
+        });
+        waiting.incrementAndGet();
+        return () -> waiters.computeIfPresent(transactionID, (id, pending) -> {
+            if (pending.remove(waiter)) {
+                waiting.decrementAndGet();
+            }
+            return pending.isEmpty() ? null : pending;
+        });
+    }
+
+    /**
+     * Hands the finished booking to everyone waiting for it.
+     */
+    public void complete(Booking booking) {
+        Set<Consumer<Booking>> pending = waiters.remove(booking.getBookingTransactionID());
+        if (pending == null) {
+            return;
+        }
+        waiting.addAndGet(-pending.size());
+        for (Consumer<Booking> waiter : pending) {
+            waiter.accept(booking);
+        }
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        return Collections.<Metric<?>>singleton(new Metric<>("booking.status-waiters.waiting", waiting.get()));
+    }
+}
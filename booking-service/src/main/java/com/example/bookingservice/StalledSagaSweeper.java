@@ -0,0 +1,150 @@
+package com.example.bookingservice;
+
+import com.example.reservationevents.WriteBehind;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ends the sagas that stalled: a booking still PENDING
+ * {@code booking.saga.timeout-ms} after it was started lost its RESERVATION_SAVED
+ * or TICKET_RESERVE on the way. Every {@code booking.saga.sweep-ms} such bookings
+ * are marked REJECTED and compensated (see {@link BookingProcessor#reject}), like
+ * those the Ticket Service had no seats for.
+ * <p>
+ * The stalled bookings are the oldest of the PENDING range of the (status, date,
+ * id) index, which a sweep walks from its start up to the timeout,
+ * {@code booking.saga.sweep-batch-size} at a time, without reading any other
+ * row. The walk goes on after the (date, id) of the last booking read, so that
+ * bookings of the same instant, as a group booking's are, span batches. The
+ * rejections go through the write-behind, in order with the saga's own writes,
+ * so a TICKET_RESERVE handled meanwhile either completes the booking first or
+ * finds it rejected and releases the seats.
+ */
+@Component
+class StalledSagaSweeper {
+
+    private static final Logger log = LoggerFactory.getLogger(StalledSagaSweeper.class);
+
+    private static final String SELECT_STALLED = "select id, booking_transactionid, booking_date from booking "
+            + "where booking_status = ? and booking_date < ? and (booking_date > ? or (booking_date = ? and id > ?)) "
+            + "order by booking_date, id limit ?";
+
+    private static final RowMapper<Stalled> STALLED_ROW = (rs, row) ->
+            new Stalled(rs.getLong("id"), rs.getString("booking_transactionid"), rs.getTimestamp("booking_date"));
+
+    private final JdbcTemplate jdbcTemplate;
+    private final WriteBehind writeBehind;
+    private final BookingProcessor bookingProcessor;
+    private final long timeoutMillis;
+    private final long sweepMillis;
+    private final int batchSize;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "booking-saga-sweeper");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Autowired
+    StalledSagaSweeper(JdbcTemplate jdbcTemplate, WriteBehind writeBehind, BookingProcessor bookingProcessor,
+                       @Value("${booking.saga.timeout-ms:600000}") long timeoutMillis,
+                       @Value("${booking.saga.sweep-ms:10000}") long sweepMillis,
+                       @Value("${booking.saga.sweep-batch-size:1000}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.writeBehind = writeBehind;
+        this.bookingProcessor = bookingProcessor;
+        this.timeoutMillis = timeoutMillis;
+        this.sweepMillis = sweepMillis;
+        this.batchSize = batchSize;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        scheduler.scheduleWithFixedDelay(this::sweepQuietly, sweepMillis, sweepMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Rejects every booking that timed out, returning once the rejections are
+     * committed.
+     *
+     * @return the number of bookings found stalled
+     */
+    int sweep() throws InterruptedException {
+        Timestamp cutoff = new Timestamp(System.currentTimeMillis() - timeoutMillis);
+        // the rejections are not committed yet, so the walk goes on after the last booking read
+        Stalled last = new Stalled(0, null, new Timestamp(0));
+        List<CompletableFuture<Void>> rejections = new ArrayList<>();
+        List<Stalled> batch;
+        do {
+            batch = jdbcTemplate.query(SELECT_STALLED, STALLED_ROW, BOOKING_STATUS.PENDING.name(), cutoff,
+                    last.date, last.date, last.id, batchSize);
+            for (Stalled stalled : batch) {
+                String transactionID = stalled.transactionID;
+                rejections.add(writeBehind.submit(transactionID, unit -> bookingProcessor.reject(unit, transactionID)));
+            }
+            if (!batch.isEmpty()) {
+                last = batch.get(batch.size() - 1);
+            }
+        } while (batch.size() == batchSize);
+        for (CompletableFuture<Void> rejection : rejections) {
+            try {
+                rejection.get();
+            } catch (ExecutionException e) {
+                // still PENDING, found again by the next sweep
+                log.warn("Could not reject a booking whose saga timed out", e.getCause());
+            }
+        }
+        return rejections.size();
+    }
+
+    private void sweepQuietly() {
+        try {
+            int stalled = sweep();
+            if (stalled > 0) {
+                log.info("Rejecting {} bookings whose saga timed out", stalled);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            // still PENDING, found again by the next sweep
+            log.warn("Could not sweep the stalled sagas", e);
+        }
+    }
+
+    @PreDestroy
+    public void close() throws InterruptedException {
+        scheduler.shutdown();
+        scheduler.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    // A stalled booking, and where the walk goes on from; the date keeps its nanoseconds
+    private static final class Stalled {
+
+        private final long id;
+        private final String transactionID;
+        private final Timestamp date;
+
+        private Stalled(long id, String transactionID, Timestamp date) {
+            this.id = id;
+            this.transactionID = transactionID;
+            this.date = date;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.bookingservice;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BookingArchiveTests {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void findsArchivedBookingsAcrossSegmentsAfterARestart() throws Exception {
+		String dir = folder.getRoot().getPath();
+		BookingArchive archive = new BookingArchive(dir, 4);
+		List<Booking> first = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			first.add(booking(i, "t" + i, BOOKING_STATUS.COMPLETED));
+		}
+		archive.write(first);
+		archive.write(Collections.singletonList(booking(10, "t10", BOOKING_STATUS.REJECTED)));
+		archive.close();
+
+		BookingArchive reopened = new BookingArchive(dir, 4);
+		assertThat(reopened.size()).isEqualTo(11);
+		Booking found = reopened.find("t7");
+		assertThat(found.getId()).isEqualTo(7L);
+		assertThat(found.getBookingSeats()).isEqualTo(7);
+		assertThat(found.getBookingDate()).isEqualTo(new Date(1000007L));
+		assertThat(found.getBookingStatus()).isEqualTo(BOOKING_STATUS.COMPLETED.name());
+		assertThat(reopened.find("t10").getBookingStatus()).isEqualTo(BOOKING_STATUS.REJECTED.name());
+		assertThat(reopened.find("t11")).isNull();
+	}
+
+	@Test
+	public void ignoresASegmentWhoseIndexWasNeverWritten() throws Exception {
+		String dir = folder.getRoot().getPath();
+		BookingArchive archive = new BookingArchive(dir, 4);
+		archive.write(Collections.singletonList(booking(1, "t1", BOOKING_STATUS.COMPLETED)));
+		archive.close();
+		// a move cut short after its bookings were written
+		assertThat(new File(folder.getRoot(), "bookings-0000000001.idx").delete()).isTrue();
+
+		BookingArchive reopened = new BookingArchive(dir, 4);
+		assertThat(reopened.find("t1")).isNull();
+		reopened.write(Collections.singletonList(booking(1, "t1", BOOKING_STATUS.COMPLETED)));
+		assertThat(reopened.find("t1").getId()).isEqualTo(1L);
+		assertThat(new File(folder.getRoot(), "bookings-0000000002.idx")).exists();
+	}
+
+	private static Booking booking(long id, String transactionID, BOOKING_STATUS status) {
+		Booking booking = new Booking("Ashish", "Pune", (int) id, transactionID, new Date(1000000L + id), status.name());
+		booking.setId(id);
+		return booking;
+	}
+
+}
@@ -0,0 +1,46 @@
+package com.example.bookingservice;
+
+import com.example.reservationevents.DoBookingEvent;
+import com.example.reservationevents.TicketReserveEvent;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {"booking.archive.dir=target/booking-archive-tests", "booking.archive.min-age-ms=0",
+		"booking.archive.interval-ms=3600000"})
+public class BookingArchiverTests extends BookingSagaTestSupport {
+
+	@Autowired
+	private BookingArchiver archiver;
+
+	@Autowired
+	private BookingArchive archive;
+
+	@Test
+	public void movesFinishedBookingsOutOfTheTableWhereTheStatusIsStillFound() throws Exception {
+		String completed = UUID.randomUUID().toString();
+		String pending = UUID.randomUUID().toString();
+		bookingProcessor.startBooking(new DoBookingEvent("Ashish", "Pune", 2, completed));
+		bookingProcessor.startBooking(new DoBookingEvent("Amit", "Agra", 1, pending));
+		bookingProcessor.completeBooking(new TicketReserveEvent("Ashish", "Pune", 2, completed));
+		awaitStatus(completed, BOOKING_STATUS.COMPLETED);
+		awaitStatus(pending, BOOKING_STATUS.PENDING);
+
+		assertThat(archiver.archive()).isGreaterThanOrEqualTo(1);
+
+		assertThat(bookingRepository.findByBookingTransactionID(completed)).isNull();
+		assertThat(bookingRepository.findByBookingTransactionID(pending)).isNotNull();
+		// a cache that never saw the booking, like that of a restarted service
+		Booking archived = new BookingStatusCache(bookingRepository, archive, 10).find(completed);
+		assertThat(archived.getBookingStatus()).isEqualTo(BOOKING_STATUS.COMPLETED.name());
+		assertThat(archived.getBookingSeats()).isEqualTo(2);
+	}
+
+}
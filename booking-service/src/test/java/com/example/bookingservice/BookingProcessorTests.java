@@ -0,0 +1,49 @@
+package com.example.bookingservice;
+
+import com.example.reservationevents.DoBookingEvent;
+import com.example.reservationevents.TicketRejectEvent;
+import com.example.reservationevents.TicketReserveEvent;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class BookingProcessorTests extends BookingSagaTestSupport {
+
+	@Autowired
+	private BookingService bookingService;
+
+	@Test
+	public void writesTheSagaBookingsBehindWithIdsSharedWithJpa() throws Exception {
+		bookingProcessor.startBooking(new DoBookingEvent("Ashish", "Pune", 2, "wb-1"));
+		String booked = bookingService.bookTicket(new Reservation("Amit", "Agra", 1));
+		bookingProcessor.startBooking(new DoBookingEvent("Amar", "Delhi", 3, "wb-2"));
+
+		Booking pending = awaitStatus("wb-1", BOOKING_STATUS.PENDING);
+		bookingProcessor.completeBooking(new TicketReserveEvent("Ashish", "Pune", 2, "wb-1"));
+
+		Booking completed = awaitStatus("wb-1", BOOKING_STATUS.COMPLETED);
+		assertThat(completed.getId()).isEqualTo(pending.getId());
+		assertThat(completed.getBookingSeats()).isEqualTo(2);
+		assertThat(awaitStatus("wb-2", BOOKING_STATUS.PENDING).getId())
+				.isNotIn(pending.getId(), bookingRepository.findByBookingTransactionID(booked).getId());
+	}
+
+	@Test
+	public void rejectsTheBookingsTheTicketServiceHasNoSeatsFor() throws Exception {
+		bookingProcessor.startBooking(new DoBookingEvent("Ashish", "Pune", 20, "rj-1"));
+		bookingProcessor.rejectBooking(new TicketRejectEvent("Ashish", "Pune", 20, "rj-1"));
+
+		assertThat(awaitStatus("rj-1", BOOKING_STATUS.REJECTED).getBookingSeats()).isEqualTo(20);
+		// a redelivered DOBOOKING does not start it again
+		bookingProcessor.startBooking(new DoBookingEvent("Ashish", "Pune", 20, "rj-1"));
+		assertThat(bookingRepository.findByBookingTransactionID("rj-1").getBookingStatus())
+				.isEqualTo(BOOKING_STATUS.REJECTED.name());
+	}
+
+}
@@ -0,0 +1,58 @@
+package com.example.bookingservice;
+
+import com.example.reservationevents.DoBookingEvent;
+import com.example.reservationevents.IdBlocks;
+import com.example.reservationevents.ReservationDeleteEvent;
+import com.example.reservationevents.SagaEvent;
+import com.example.reservationevents.TicketRejectEvent;
+import com.example.reservationevents.TicketReserveEvent;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+public class BookingReplayTests {
+
+	private final BookingReplay replay = new BookingReplay(mock(IdBlocks.class));
+
+	@Test
+	public void completesTheBookingsWhoseTicketsWereReserved() {
+		Booking booking = fold(
+				new DoBookingEvent("Ashish", "Pune", 2, "t1"),
+				new TicketReserveEvent("Ashish", "Pune", 2, "t1"));
+
+		assertThat(booking.getBookingStatus()).isEqualTo(BOOKING_STATUS.COMPLETED.name());
+		assertThat(booking.getBookingSeats()).isEqualTo(2);
+	}
+
+	@Test
+	public void keepsTheBookingsTheSweeperRejectedRejected() {
+		Booking booking = fold(
+				new DoBookingEvent("Ashish", "Pune", 2, "t1"),
+				// journalled by the rejection
+				new ReservationDeleteEvent("Ashish", "Pune", 2, "t1"),
+				// the lost TICKET_RESERVE, turned up after all
+				new TicketReserveEvent("Ashish", "Pune", 2, "t1"));
+
+		assertThat(booking.getBookingStatus()).isEqualTo(BOOKING_STATUS.REJECTED.name());
+	}
+
+	@Test
+	public void rejectsTheBookingsTheTicketServiceHadNoSeatsFor() {
+		Booking booking = fold(
+				new DoBookingEvent("Amit", "Agra", 20, "t2"),
+				new TicketRejectEvent("Amit", "Agra", 20, "t2"),
+				new ReservationDeleteEvent("Amit", "Agra", 20, "t2"));
+
+		assertThat(booking.getBookingStatus()).isEqualTo(BOOKING_STATUS.REJECTED.name());
+	}
+
+	private Booking fold(SagaEvent... events) {
+		Booking booking = null;
+		for (SagaEvent event : events) {
+			assertThat(replay.keyOf(event)).isEqualTo(event.getTransactionID());
+			booking = replay.apply(booking, event);
+		}
+		return booking;
+	}
+}
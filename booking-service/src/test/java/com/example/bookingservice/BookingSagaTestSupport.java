@@ -0,0 +1,46 @@
+package com.example.bookingservice;
+
+import com.example.reservationevents.SagaEvent;
+import com.example.reservationevents.SagaEventPublisher;
+import org.mockito.ArgumentMatcher;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// The booking saga's handlers, with the events they send caught by a mock publisher
+abstract class BookingSagaTestSupport {
+
+	@Autowired
+	protected BookingProcessor bookingProcessor;
+
+	@Autowired
+	protected BookingRepository bookingRepository;
+
+	@MockBean
+	protected SagaEventPublisher publisher;
+
+	protected Booking awaitStatus(String transactionID, BOOKING_STATUS status) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000;
+		Booking booking;
+		while ((booking = bookingRepository.findByBookingTransactionID(transactionID)) == null
+				|| !status.name().equals(booking.getBookingStatus())) {
+			assertThat(System.currentTimeMillis()).isLessThan(deadline);
+			Thread.sleep(20);
+		}
+		return booking;
+	}
+
+	// a batch of sent events with one of the type for the transaction
+	protected static ArgumentMatcher<List<? extends SagaEvent>> sent(Class<? extends SagaEvent> type, String transactionID) {
+		return new ArgumentMatcher<List<? extends SagaEvent>>() {
+			@Override
+			public boolean matches(Object events) {
+				return ((List<?>) events).stream().anyMatch(event -> type.isInstance(event)
+						&& transactionID.equals(((SagaEvent) event).getTransactionID()));
+			}
+		};
+	}
+}
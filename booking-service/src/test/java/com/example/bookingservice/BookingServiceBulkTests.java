@@ -0,0 +1,54 @@
+package com.example.bookingservice;
+
+import com.example.reservationevents.ReservationSaveEvent;
+import com.example.reservationevents.SagaEventPublisher;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class BookingServiceBulkTests {
+
+	@Autowired
+	private BookingService bookingService;
+
+	@Autowired
+	private BookingRepository bookingRepository;
+
+	@MockBean
+	private SagaEventPublisher publisher;
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void booksEachValidReservationAndRelaysItsEvent() {
+		List<BookingResult> results = bookingService.bookTickets(Arrays.asList(
+				new Reservation("Ashish", "Pune", 2),
+				new Reservation("Amit", "Delhi", 0),
+				new Reservation("Amar", "Agra", 1))).getBody();
+
+		assertThat(results).extracting(BookingResult::getOutcome).containsExactly(
+				BookingResult.Outcome.ACCEPTED, BookingResult.Outcome.INVALID, BookingResult.Outcome.ACCEPTED);
+		assertThat(results.get(1).getTransactionID()).isNull();
+		assertThat(bookingRepository.findByBookingTransactionID(results.get(2).getTransactionID()).getBookingStatus())
+				.isEqualTo(BOOKING_STATUS.PENDING.name());
+
+		// sent by the outbox relay, once committed
+		ArgumentCaptor<List> sent = ArgumentCaptor.forClass(List.class);
+		verify(publisher, timeout(5000)).publishAll(sent.capture());
+		assertThat(((List<ReservationSaveEvent>) sent.getValue())).extracting(ReservationSaveEvent::getTransactionID)
+				.containsExactly(results.get(0).getTransactionID(), results.get(2).getTransactionID());
+	}
+
+}
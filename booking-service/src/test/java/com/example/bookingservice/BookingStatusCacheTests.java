@@ -0,0 +1,130 @@
+package com.example.bookingservice;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.boot.actuate.metrics.Metric;
+
+import java.util.Collections;
+import java.util.Date;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class BookingStatusCacheTests {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final BookingRepository repository = mock(BookingRepository.class);
+
+	@Test
+	public void evictsTheOldestTransactionFirst() throws Exception {
+		BookingStatusCache cache = new BookingStatusCache(repository, new BookingArchive("", 4), 2);
+		cache.put(booking(1, "t1", BOOKING_STATUS.PENDING));
+		cache.put(booking(2, "t2", BOOKING_STATUS.PENDING));
+		// updating a cached booking does not make it younger
+		cache.put(booking(1, "t1", BOOKING_STATUS.COMPLETED));
+		cache.put(booking(3, "t3", BOOKING_STATUS.PENDING));
+
+		assertThat(cache.find("t2").getId()).isEqualTo(2L);
+		assertThat(cache.find("t3").getId()).isEqualTo(3L);
+		assertThat(cache.find("t1")).isNull();
+		verify(repository).findByBookingTransactionID("t1");
+		verify(repository, never()).findByBookingTransactionID("t2");
+	}
+
+	@Test
+	public void keepsATransactionOnceWhateverItsWrites() throws Exception {
+		BookingStatusCache cache = new BookingStatusCache(repository, new BookingArchive("", 4), 2);
+		cache.put(booking(1, "t1", BOOKING_STATUS.PENDING));
+		cache.put(booking(2, "t2", BOOKING_STATUS.PENDING));
+		for (int i = 0; i < 5; i++) {
+			cache.put(booking(2, "t2", BOOKING_STATUS.COMPLETED));
+			cache.find("t2");
+		}
+		cache.put(booking(3, "t3", BOOKING_STATUS.PENDING));
+
+		// only the eldest went, and only once
+		assertThat(cache.find("t2").getBookingStatus()).isEqualTo(BOOKING_STATUS.COMPLETED.name());
+		assertThat(cache.find("t3").getId()).isEqualTo(3L);
+		assertThat(metric(cache, "booking.status-cache.size")).isEqualTo(2);
+		verify(repository, never()).findByBookingTransactionID("t2");
+	}
+
+	@Test
+	public void doesNotCacheAMiss() throws Exception {
+		BookingStatusCache cache = new BookingStatusCache(repository, new BookingArchive("", 4), 10);
+
+		assertThat(cache.find("unknown")).isNull();
+		assertThat(cache.find("unknown")).isNull();
+
+		// a booking committed meanwhile is found at once
+		when(repository.findByBookingTransactionID("unknown")).thenReturn(booking(1, "unknown", BOOKING_STATUS.PENDING));
+		assertThat(cache.find("unknown").getId()).isEqualTo(1L);
+		verify(repository, times(3)).findByBookingTransactionID("unknown");
+	}
+
+	@Test
+	public void readsAMissFromTheDatabaseThenTheArchive() throws Exception {
+		BookingArchive archive = new BookingArchive(folder.getRoot().getPath(), 4);
+		archive.write(Collections.singletonList(booking(1, "archived", BOOKING_STATUS.COMPLETED)));
+		when(repository.findByBookingTransactionID("stored")).thenReturn(booking(2, "stored", BOOKING_STATUS.PENDING));
+		BookingStatusCache cache = new BookingStatusCache(repository, archive, 10);
+
+		assertThat(cache.find("stored").getId()).isEqualTo(2L);
+		assertThat(cache.find("archived").getId()).isEqualTo(1L);
+		assertThat(cache.find("unknown")).isNull();
+
+		// cached since
+		assertThat(cache.find("stored").getId()).isEqualTo(2L);
+		assertThat(cache.find("archived").getId()).isEqualTo(1L);
+		verify(repository).findByBookingTransactionID("stored");
+		verify(repository).findByBookingTransactionID("archived");
+		assertThat(metric(cache, "booking.status-cache.hits")).isEqualTo(2L);
+		assertThat(metric(cache, "booking.status-cache.misses")).isEqualTo(3L);
+		assertThat(metric(cache, "booking.status-cache.size")).isEqualTo(2);
+		archive.close();
+	}
+
+	@Test
+	public void refreshKeepsTheIdAndARejection() throws Exception {
+		BookingStatusCache cache = new BookingStatusCache(repository, new BookingArchive("", 4), 10);
+		cache.put(booking(1, "pending", BOOKING_STATUS.PENDING));
+		cache.put(booking(2, "rejected", BOOKING_STATUS.REJECTED));
+
+		Booking completed = cache.refresh(booking(0, "pending", BOOKING_STATUS.COMPLETED));
+		assertThat(completed.getId()).isEqualTo(1L);
+		assertThat(completed.getBookingStatus()).isEqualTo(BOOKING_STATUS.COMPLETED.name());
+
+		// a saga that timed out does not complete
+		Booking rejected = cache.refresh(booking(0, "rejected", BOOKING_STATUS.COMPLETED));
+		assertThat(rejected.getBookingStatus()).isEqualTo(BOOKING_STATUS.REJECTED.name());
+		assertThat(cache.find("rejected").getBookingStatus()).isEqualTo(BOOKING_STATUS.REJECTED.name());
+
+		// written by another instance, not cached here
+		Booking other = booking(0, "other", BOOKING_STATUS.COMPLETED);
+		assertThat(cache.refresh(other)).isSameAs(other);
+		assertThat(metric(cache, "booking.status-cache.size")).isEqualTo(2);
+	}
+
+	private static Number metric(BookingStatusCache cache, String name) {
+		for (Metric<?> metric : cache.metrics()) {
+			if (metric.getName().equals(name)) {
+				return metric.getValue();
+			}
+		}
+		throw new AssertionError("No metric " + name);
+	}
+
+	private static Booking booking(long id, String transactionID, BOOKING_STATUS status) {
+		Booking booking = new Booking("Ashish", "Pune", 2, transactionID, new Date(1000000L + id), status.name());
+		booking.setId(id);
+		return booking;
+	}
+
+}
@@ -0,0 +1,47 @@
+package com.example.bookingservice;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BookingStatusWaitersTests {
+
+	private final BookingStatusWaiters waiters = new BookingStatusWaiters();
+
+	@Test
+	public void completionReachesEveryWaiterOnce() {
+		List<String> answered = new ArrayList<>();
+		waiters.await("t1", booking -> answered.add("first:" + booking.getBookingStatus()));
+		waiters.await("t1", booking -> answered.add("second:" + booking.getBookingStatus()));
+		waiters.await("t2", booking -> answered.add("other"));
+
+		Booking completed = booking("t1");
+		waiters.complete(completed);
+		waiters.complete(completed);
+
+		assertThat(answered).containsExactlyInAnyOrder("first:COMPLETED", "second:COMPLETED");
+		assertThat(waiters.metrics()).extracting("value").containsExactly(1);
+	}
+
+	@Test
+	public void cancelledWaiterIsNotCalled() {
+		List<Booking> answered = new ArrayList<>();
+		Runnable cancel = waiters.await("t1", answered::add);
+
+		cancel.run();
+		waiters.complete(booking("t1"));
+
+		assertThat(answered).isEmpty();
+		assertThat(waiters.metrics()).extracting("value").containsExactly(0);
+	}
+
+	private static Booking booking(String transactionID) {
+		Booking booking = new Booking("Ashish", "Pune", 2, transactionID);
+		booking.setBookingStatus(BOOKING_STATUS.COMPLETED.name());
+		return booking;
+	}
+
+}
@@ -0,0 +1,78 @@
+package com.example.bookingservice;
+
+import com.example.reservationevents.DoBookingEvent;
+import com.example.reservationevents.ReservationDeleteEvent;
+import com.example.reservationevents.TicketConfirmEvent;
+import com.example.reservationevents.TicketReleaseEvent;
+import com.example.reservationevents.TicketReserveEvent;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.Date;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.argThat;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {"booking.saga.timeout-ms=0", "booking.saga.sweep-ms=3600000",
+		"booking.saga.sweep-batch-size=2"})
+public class StalledSagaSweeperTests extends BookingSagaTestSupport {
+
+	@Autowired
+	private StalledSagaSweeper sweeper;
+
+	@Test
+	public void rejectsAndCompensatesABookingWhoseSagaStalled() throws Exception {
+		bookingProcessor.startBooking(new DoBookingEvent("Ashish", "Pune", 2, "stalled-1"));
+		awaitStatus("stalled-1", BOOKING_STATUS.PENDING);
+
+		assertThat(sweeper.sweep()).isEqualTo(1);
+
+		awaitStatus("stalled-1", BOOKING_STATUS.REJECTED);
+		verify(publisher, timeout(5000).atLeastOnce()).publishAll(argThat(sent(ReservationDeleteEvent.class, "stalled-1")));
+		verify(publisher, timeout(5000).atLeastOnce()).publishAll(argThat(sent(TicketReleaseEvent.class, "stalled-1")));
+		assertThat(sweeper.sweep()).isZero();
+
+		// the lost TICKET_RESERVE turns up after all: the seats are released, not sold
+		bookingProcessor.completeBooking(new TicketReserveEvent("Ashish", "Pune", 2, "stalled-1"));
+		verify(publisher, after(500).never()).publishAll(argThat(sent(TicketConfirmEvent.class, "stalled-1")));
+		assertThat(bookingRepository.findByBookingTransactionID("stalled-1").getBookingStatus())
+				.isEqualTo(BOOKING_STATUS.REJECTED.name());
+	}
+
+	@Test
+	public void rejectsABookingWhoseTicketsAreReservedAfterTheTimeoutBeforeTheSweep() throws Exception {
+		bookingProcessor.startBooking(new DoBookingEvent("Amit", "Agra", 1, "stalled-2"));
+		// its hold may have expired already
+		bookingProcessor.completeBooking(new TicketReserveEvent("Amit", "Agra", 1, "stalled-2"));
+
+		awaitStatus("stalled-2", BOOKING_STATUS.REJECTED);
+		verify(publisher, timeout(5000).atLeastOnce()).publishAll(argThat(sent(TicketReleaseEvent.class, "stalled-2")));
+		verify(publisher, never()).publishAll(argThat(sent(TicketConfirmEvent.class, "stalled-2")));
+	}
+
+	@Test
+	public void rejectsTheBookingsOfOneInstantAcrossBatches() throws Exception {
+		// as a group booking leaves them
+		Date instant = new Date(System.currentTimeMillis() - 1000);
+		for (int i = 0; i < 5; i++) {
+			bookingRepository.save(new Booking("Amar", "Delhi", 1, "stalled-group-" + i, instant,
+					BOOKING_STATUS.PENDING.name()));
+		}
+
+		assertThat(sweeper.sweep()).isEqualTo(5);
+
+		for (int i = 0; i < 5; i++) {
+			awaitStatus("stalled-group-" + i, BOOKING_STATUS.REJECTED);
+		}
+	}
+
+}
@@ -0,0 +1,83 @@
+package com.example.reservationbenchmarks;
+
+import com.example.reservationevents.DoBookingEvent;
+import com.example.reservationevents.ReservationSaveEvent;
+import com.example.reservationevents.ReservationSavedEvent;
+import com.example.reservationevents.SagaEventMessageConverter;
+import com.example.reservationevents.SagaEventPublisher;
+import com.example.reservationevents.TicketReserveEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.messaging.Message;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The message work of a booking: the gateway building the DOBOOKING message in
+ * addBooking, and each service turning the message it receives back into the
+ * event its @StreamListener takes, as the binder's converter does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageBenchmarks {
+
+    private final SagaEventMessageConverter converter = new SagaEventMessageConverter();
+
+    private Message<byte[]> doBooking;
+    private Message<byte[]> reservationSave;
+    private Message<byte[]> reservationSaved;
+    private Message<byte[]> ticketReserve;
+
+    @Setup
+    public void setUp() {
+        String transactionID = UUID.randomUUID().toString();
+        doBooking = SagaEventPublisher.toMessage(new DoBookingEvent("Sharma, Amit", "Mumbai", 3, transactionID));
+        reservationSave = SagaEventPublisher.toMessage(new ReservationSaveEvent("Sharma, Amit", "Mumbai", 3, transactionID));
+        reservationSaved = SagaEventPublisher.toMessage(new ReservationSavedEvent("Sharma, Amit", "Mumbai", 3, transactionID));
+        ticketReserve = SagaEventPublisher.toMessage(new TicketReserveEvent("Sharma, Amit", "Mumbai", 3, transactionID));
+    }
+
+    // ReservationAPIGateway.addBooking, up to handing the message to the binder
+    @Benchmark
+    public Message<byte[]> buildDoBooking() {
+        return SagaEventPublisher.toMessage(new DoBookingEvent("Sharma, Amit", "Mumbai", 3,
+                UUID.randomUUID().toString()));
+    }
+
+    // BookingProcessor.startBooking
+    @Benchmark
+    public Object readDoBooking() {
+        return converter.fromMessage(doBooking, DoBookingEvent.class);
+    }
+
+    // ReservationProcessor.acceptReservation
+    @Benchmark
+    public Object readReservationSave() {
+        return converter.fromMessage(reservationSave, ReservationSaveEvent.class);
+    }
+
+    // TicketProcessor.acceptTicketLocation
+    @Benchmark
+    public Object readReservationSaved() {
+        return converter.fromMessage(reservationSaved, ReservationSavedEvent.class);
+    }
+
+    // BookingProcessor.completeBooking
+    @Benchmark
+    public Object readTicketReserve() {
+        return converter.fromMessage(ticketReserve, TicketReserveEvent.class);
+    }
+}
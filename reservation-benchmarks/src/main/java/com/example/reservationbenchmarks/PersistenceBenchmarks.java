@@ -0,0 +1,182 @@
+package com.example.reservationbenchmarks;
+
+import com.example.reservationevents.DoBookingEvent;
+import com.example.reservationevents.EventOutbox;
+import com.example.reservationevents.ProcessedEvents;
+import com.example.reservationevents.ReservationSaveEvent;
+import com.example.reservationevents.ReservationSavedEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The database work of the saga handlers and of the lookups the services serve,
+ * against an in-memory H2 like the services use.
+ * <p>
+ * The entities are package-private to their service, so the tables are created
+ * here as Hibernate creates them, and each benchmark runs the statements the
+ * repositories issue: the next value of hibernate_sequence and an insert for a
+ * save, a select on an indexed column for a lookup. Saves are done together with
+ * the dedup insert and the outbox insert of the same handler, in one transaction.
+ * What Hibernate itself adds on top (dirty checking, the session) is not measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PersistenceBenchmarks {
+
+    private static final int BOOKINGS = 10_000;
+    private static final int LOCATIONS = 100;
+
+    private EmbeddedDatabase database;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+    private ProcessedEvents processedEvents;
+    private EventOutbox outbox;
+
+    private String[] transactionIDs;
+    private long seededBookings;
+
+    @Setup
+    public void setUp() {
+        database = new EmbeddedDatabaseBuilder().setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true).build();
+        jdbcTemplate = new JdbcTemplate(database);
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(database));
+        processedEvents = new ProcessedEvents(jdbcTemplate, 6, 600_000, 100_000, 604_800_000);
+        outbox = new EventOutbox(jdbcTemplate, () -> {
+        });
+
+        jdbcTemplate.execute("create sequence hibernate_sequence start with 1 increment by 1");
+        jdbcTemplate.execute("create table booking (id bigint not null, booking_date timestamp, "
+                + "booking_location varchar(255), booking_name varchar(255), booking_seats integer not null, "
+                + "booking_status varchar(255), booking_transactionid varchar(255), primary key (id))");
+        jdbcTemplate.execute("create unique index booking_transaction_id_idx on booking (booking_transactionid)");
+        jdbcTemplate.execute("create table reservation (id bigint not null, reservation_count integer not null, "
+                + "reservation_location varchar(255), reservation_name varchar(255), "
+                + "reservation_transactionid varchar(255), primary key (id))");
+        jdbcTemplate.execute("create table ticket (id bigint not null, ticket_counts integer not null, "
+                + "ticket_location varchar(255), primary key (id))");
+
+        transactionIDs = new String[BOOKINGS];
+        for (int i = 0; i < BOOKINGS; i++) {
+            transactionIDs[i] = UUID.randomUUID().toString();
+            insertBooking("Passenger " + i, location(i), 2, transactionIDs[i]);
+        }
+        seededBookings = jdbcTemplate.queryForObject("select max(id) from booking", Long.class);
+        for (int i = 0; i < LOCATIONS; i++) {
+            jdbcTemplate.update("insert into ticket (id, ticket_counts, ticket_location) values (?, ?, ?)",
+                    nextId(), Integer.MAX_VALUE, location(i));
+        }
+    }
+
+    // keeps the tables the saves grow at their seeded size, iteration to iteration
+    @TearDown(Level.Iteration)
+    public void trim() {
+        jdbcTemplate.update("delete from booking where id > ?", seededBookings);
+        jdbcTemplate.update("delete from reservation");
+        jdbcTemplate.update("delete from event_outbox");
+        jdbcTemplate.update("delete from processed_event");
+    }
+
+    @TearDown
+    public void tearDown() {
+        database.shutdown();
+    }
+
+    // BookingProcessor.startBooking
+    @Benchmark
+    public Object startBooking() {
+        DoBookingEvent doBooking = new DoBookingEvent("Sharma, Amit", "Mumbai", 3, UUID.randomUUID().toString());
+        return transactionTemplate.execute(status -> {
+            if (!processedEvents.markProcessed(doBooking)) {
+                return null;
+            }
+            insertBooking(doBooking.getReservationName(), doBooking.getReservationLocation(),
+                    doBooking.getReservationCount(), doBooking.getTransactionID());
+            outbox.add(new ReservationSaveEvent(doBooking.getReservationName(), doBooking.getReservationLocation(),
+                    doBooking.getReservationCount(), doBooking.getTransactionID()));
+            return doBooking;
+        });
+    }
+
+    // BookingStatusCache misses and BookingRepository.findByBookingTransactionID
+    @Benchmark
+    public Map<String, Object> findBooking() {
+        String transactionID = transactionIDs[ThreadLocalRandom.current().nextInt(BOOKINGS)];
+        return jdbcTemplate.queryForMap("select id, booking_date, booking_location, booking_name, booking_seats, "
+                + "booking_status, booking_transactionid from booking where booking_transactionid = ?", transactionID);
+    }
+
+    // ReservationProcessor.acceptReservation
+    @Benchmark
+    public Object saveReservation() {
+        ReservationSaveEvent save = new ReservationSaveEvent("Sharma, Amit", "Mumbai", 3, UUID.randomUUID().toString());
+        return transactionTemplate.execute(status -> {
+            if (!processedEvents.markProcessed(save)) {
+                return null;
+            }
+            jdbcTemplate.update("insert into reservation (id, reservation_count, reservation_location, "
+                            + "reservation_name, reservation_transactionid) values (?, ?, ?, ?, ?)",
+                    nextId(), save.getReservationCount(), save.getReservationLocation(), save.getReservationName(),
+                    save.getTransactionID());
+            outbox.add(new ReservationSavedEvent(save.getReservationName(), save.getReservationLocation(),
+                    save.getReservationCount(), save.getTransactionID()));
+            return save;
+        });
+    }
+
+    // TicketRepository.findByTicketLocation, as TicketInventory loads a location
+    @Benchmark
+    public List<Map<String, Object>> findTicket() {
+        return jdbcTemplate.queryForList("select id, ticket_counts, ticket_location from ticket where ticket_location = ?",
+                location(ThreadLocalRandom.current().nextInt(LOCATIONS)));
+    }
+
+    // TicketRepository.takeTickets, once per location of a ReservationBatcher batch
+    @Benchmark
+    public Object takeTickets() {
+        String location = location(ThreadLocalRandom.current().nextInt(LOCATIONS));
+        return transactionTemplate.execute(status -> jdbcTemplate.update(
+                "update ticket set ticket_counts = ticket_counts - ? where ticket_location = ?", 3, location));
+    }
+
+    private void insertBooking(String name, String location, int seats, String transactionID) {
+        jdbcTemplate.update("insert into booking (id, booking_date, booking_location, booking_name, booking_seats, "
+                        + "booking_status, booking_transactionid) values (?, ?, ?, ?, ?, ?, ?)",
+                nextId(), new Timestamp(System.currentTimeMillis()), location, name, seats, "PENDING", transactionID);
+    }
+
+    private long nextId() {
+        return jdbcTemplate.queryForObject("call next value for hibernate_sequence", Long.class);
+    }
+
+    private static String location(int i) {
+        return "Location " + (i % LOCATIONS);
+    }
+}
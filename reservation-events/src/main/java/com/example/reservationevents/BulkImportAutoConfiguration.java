@@ -0,0 +1,35 @@
+package com.example.reservationevents;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.autoconfigure.AutoConfigureAfter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceTransactionManagerAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.JdbcTemplateAutoConfiguration;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+/**
+ * Registers the {@link BulkImporter} in the services that have a database.
+ */
+@Configuration
+@ConditionalOnClass({JdbcTemplate.class, HealthIndicator.class})
+@AutoConfigureAfter({JdbcTemplateAutoConfiguration.class, HibernateJpaAutoConfiguration.class,
+        DataSourceTransactionManagerAutoConfiguration.class})
+public class BulkImportAutoConfiguration {
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnBean({JdbcTemplate.class, PlatformTransactionManager.class})
+    @ConditionalOnMissingBean
+    public BulkImporter bulkImporter(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                     @Value("${reservation.import.batch-size:1000}") int batchSize,
+                                     @Value("${reservation.import.id-sequence:}") String idSequence,
+                                     @Value("${reservation.import.id-block-size:1}") int idBlockSize) {
+        return new BulkImporter(jdbcTemplate, transactionManager, batchSize, idSequence, idBlockSize);
+    }
+}
@@ -0,0 +1,230 @@
+package com.example.reservationevents;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Loads master data from CSV or NDJSON files straight into its table, for
+ * catalogues too big to seed an entity at a time.
+ * <p>
+ * The file is streamed a line at a time and written with JDBC batch inserts of
+ * {@code batchSize} rows, each batch in its own transaction. No entity is
+ * created, so memory use does not grow with the file. With an {@code idSequence}
+ * the IDs of a batch are taken from it in one query, in blocks of
+ * {@code idBlockSize} (see {@link IdBlocks}); without one, the table's identity
+ * column numbers the rows as the batch is inserted.
+ * <p>
+ * Files ending in {@code .ndjson} hold one JSON object per line; any other file is
+ * CSV with a header line, fields optionally quoted with {@code "}. While an import
+ * submitted with {@link #submit} runs, the service reports itself
+ * OUT_OF_SERVICE.
+ */
+public class BulkImporter implements HealthIndicator {
+
+    private static final Logger log = LoggerFactory.getLogger(BulkImporter.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final IdBlocks ids;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final AtomicInteger running = new AtomicInteger();
+    private final Map<String, ImportReport> reports = new ConcurrentHashMap<>();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "bulk-import");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * @param idSequence  sequence to take the IDs of tables without {@link ImportTable#ids} from, or empty if
+     *                    they have an identity column
+     * @param idBlockSize the allocation size of the sequence's generator
+     */
+    public BulkImporter(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager, int batchSize,
+                        String idSequence, int idBlockSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        this.ids = idSequence.isEmpty() ? null : new IdBlocks(jdbcTemplate, idSequence, idBlockSize);
+    }
+
+    /**
+     * Imports the file in the background, the service being OUT_OF_SERVICE until
+     * it is done.
+     */
+    public CompletableFuture<ImportReport> submit(Path file, ImportTable table) {
+        running.incrementAndGet();
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return load(file, table);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                running.decrementAndGet();
+            }
+        }, executor).whenComplete((report, failure) -> {
+            if (failure != null) {
+                log.error("Could not import {} into {}", file, table.getName(), failure);
+            }
+        });
+    }
+
+    public ImportReport load(Path file, ImportTable table) throws IOException {
+        boolean ndjson = file.getFileName().toString().endsWith(".ndjson");
+        IdBlocks tableIds = table.getIds() != null ? table.getIds() : ids;
+        boolean pooledIds = tableIds != null;
+        // the ID, if the importer allocates it, goes first
+        int offset = pooledIds ? 1 : 0;
+        String sql = table.insertSql(pooledIds);
+        List<ImportTable.Column> columns = table.getColumns();
+        long start = System.nanoTime();
+        long[] idRange = {0, 0};
+        long rows = 0;
+        List<Object[]> batch = new ArrayList<>(batchSize);
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            Map<String, Integer> header = ndjson ? null : header(reader.readLine(), file);
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                Map<?, ?> fields = ndjson ? objectMapper.readValue(line, Map.class) : csvFields(line, header);
+                Object[] values = new Object[columns.size() + offset];
+                for (int i = 0; i < columns.size(); i++) {
+                    ImportTable.Column column = columns.get(i);
+                    Object value = fields.get(column.field);
+                    values[i + offset] = value != null ? value : column.whenMissing.get();
+                }
+                batch.add(values);
+                if (batch.size() == batchSize) {
+                    rows += write(table.getName(), sql, batch, tableIds, idRange);
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            rows += write(table.getName(), sql, batch, tableIds, idRange);
+        }
+        ImportReport report = new ImportReport(table.getName(), rows,
+                (System.nanoTime() - start) / 1_000_000, idRange[0], idRange[1]);
+        reports.put(table.getName(), report);
+        log.info("Imported {} from {}", report, file);
+        return report;
+    }
+
+    // Writes and clears the batch, widening the lowest and highest ID seen in idRange
+    private int write(String table, String sql, List<Object[]> batch, IdBlocks tableIds, long[] idRange) {
+        transactionTemplate.execute(status -> {
+            long lowest;
+            long highest;
+            if (tableIds != null) {
+                long[] allocated = tableIds.next(batch.size());
+                for (int i = 0; i < batch.size(); i++) {
+                    batch.get(i)[0] = allocated[i];
+                }
+                lowest = allocated[0];
+                highest = allocated[allocated.length - 1];
+                jdbcTemplate.batchUpdate(sql, batch);
+            } else {
+                // the identity column counts up, the rows of this batch are above the highest ID before it
+                Long before = jdbcTemplate.queryForObject("select max(id) from " + table, Long.class);
+                jdbcTemplate.batchUpdate(sql, batch);
+                lowest = (before != null ? before : 0) + 1;
+                highest = jdbcTemplate.queryForObject("select max(id) from " + table, Long.class);
+            }
+            idRange[0] = idRange[0] == 0 ? lowest : idRange[0];
+            idRange[1] = highest;
+            return null;
+        });
+        int written = batch.size();
+        batch.clear();
+        return written;
+    }
+
+    private static Map<String, Integer> header(String line, Path file) {
+        if (line == null) {
+            throw new IllegalArgumentException("CSV file " + file + " has no header line");
+        }
+        List<String> names = csvValues(line);
+        Map<String, Integer> header = new HashMap<>();
+        for (int i = 0; i < names.size(); i++) {
+            header.put(names.get(i).trim(), i);
+        }
+        return header;
+    }
+
+    private static Map<String, String> csvFields(String line, Map<String, Integer> header) {
+        List<String> values = csvValues(line);
+        Map<String, String> fields = new HashMap<>();
+        header.forEach((name, index) -> {
+            if (index < values.size()) {
+                fields.put(name, values.get(index));
+            }
+        });
+        return fields;
+    }
+
+    // One CSV line; a quoted field may hold commas and "" for a quote, but no line break
+    static List<String> csvValues(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    value.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    value.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(value.toString());
+                value.setLength(0);
+            } else {
+                value.append(c);
+            }
+        }
+        values.add(value.toString());
+        return values;
+    }
+
+    @Override
+    public Health health() {
+        Health.Builder health = running.get() > 0 ? Health.outOfService().withDetail("importing", running.get())
+                : Health.up();
+        reports.forEach((table, report) -> health.withDetail(table, report.toString()));
+        return health.build();
+    }
+
+    public void close() {
+        executor.shutdownNow();
+    }
+}
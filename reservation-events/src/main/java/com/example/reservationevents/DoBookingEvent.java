@@ -0,0 +1,20 @@
+package com.example.reservationevents;
+
+/**
+ * Gateway asks the booking service to start a booking.
+ */
+public class DoBookingEvent extends ReservationEvent {
+
+    public DoBookingEvent() {
+
+    }
+
+    public DoBookingEvent(String reservationName, String reservationLocation, int reservationCount, String transactionID) {
+        super(reservationName, reservationLocation, reservationCount, transactionID);
+    }
+
+    @Override
+    public EventType getType() {
+        return EventType.DOBOOKING;
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.reservationevents;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.AutoConfigureAfter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.jdbc.JdbcTemplateAutoConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Registers {@link ProcessedEvents} in the services that have a database.
+ */
+@Configuration
+@ConditionalOnClass(JdbcTemplate.class)
+@AutoConfigureAfter(JdbcTemplateAutoConfiguration.class)
+public class EventDeduplicationAutoConfiguration {
+
+    @Bean
+    @ConditionalOnBean(JdbcTemplate.class)
+    @ConditionalOnMissingBean
+    public ProcessedEvents processedEvents(JdbcTemplate jdbcTemplate,
+                                           @Value("${reservation.events.dedup.buckets:6}") int buckets,
+                                           @Value("${reservation.events.dedup.bucket-ms:600000}") long bucketMillis,
+                                           @Value("${reservation.events.dedup.bucket-max-keys:100000}") int maxKeysPerBucket,
+                                           @Value("${reservation.events.dedup.retention-ms:604800000}") long retentionMillis) {
+        return new ProcessedEvents(jdbcTemplate, buckets, bucketMillis, maxKeysPerBucket, retentionMillis);
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.reservationevents;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Local journal of the saga events a service handled, in their
+ * {@link SagaEventCodec binary form}, appended to {@link JournalSegments}
+ * in the order they were handled. It is what {@link EventReplay} rebuilds the
+ * service's tables from, without the broker.
+ * <p>
+ * Every input binding is recorded (see {@link EventJournalAutoConfiguration}),
+ * redeliveries included; replay drops them the way {@link ProcessedEvents}
+ * does. Without a directory nothing is recorded.
+ */
+public class EventJournal implements AutoCloseable {
+
+    private static final String SEGMENT_PREFIX = "events-";
+
+    private final JournalSegments segments;
+    private final LongAdder appended = new LongAdder();
+
+    public EventJournal(String dir, int segmentBytes) throws IOException {
+        this.segments = dir.isEmpty() ? null : new JournalSegments(Paths.get(dir), SEGMENT_PREFIX, segmentBytes, 0);
+    }
+
+    public boolean isEnabled() {
+        return segments != null;
+    }
+
+    public void append(SagaEvent event) {
+        if (segments != null) {
+            append(SagaEventCodec.encode(event));
+        }
+    }
+
+    /**
+     * Records an event as it arrived, encoded.
+     */
+    public void append(byte[] encoded) {
+        if (segments != null) {
+            segments.append(encoded);
+            appended.increment();
+        }
+    }
+
+    public long getAppended() {
+        return appended.sum();
+    }
+
+    /**
+     * The segments of the journal, oldest first.
+     */
+    public List<Path> segments() throws IOException {
+        return segments == null ? Collections.emptyList() : segments.segments();
+    }
+
+    @Override
+    public void close() {
+        if (segments != null) {
+            segments.close();
+        }
+    }
+}
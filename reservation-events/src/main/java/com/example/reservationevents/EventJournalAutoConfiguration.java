@@ -0,0 +1,96 @@
+package com.example.reservationevents;
+
+import org.springframework.beans.factory.ListableBeanFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.AutoConfigureAfter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceTransactionManagerAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.JdbcTemplateAutoConfiguration;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration;
+import org.springframework.cloud.stream.binding.Bindable;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.integration.channel.ChannelInterceptorAware;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Registers the {@link EventJournal}, records every input binding in it when
+ * {@code reservation.events.journal.dir} is set, and registers
+ * {@link EventReplay} in the services that have a database.
+ * <p>
+ * With {@code reservation.events.replay.on-start}, every {@link ReplayTarget}
+ * is rebuilt from the journal once the beans are created, before the bindings
+ * start delivering events.
+ */
+@Configuration
+@AutoConfigureAfter({JdbcTemplateAutoConfiguration.class, HibernateJpaAutoConfiguration.class,
+        DataSourceTransactionManagerAutoConfiguration.class})
+public class EventJournalAutoConfiguration {
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnMissingBean
+    public EventJournal eventJournal(@Value("${reservation.events.journal.dir:}") String dir,
+                                    @Value("${reservation.events.journal.segment-bytes:67108864}") int segmentBytes)
+            throws IOException {
+        return new EventJournal(dir, segmentBytes);
+    }
+
+    @Bean
+    public SmartInitializingSingleton eventJournalRecording(ListableBeanFactory beanFactory, EventJournal journal) {
+        return () -> {
+            if (!journal.isEnabled()) {
+                return;
+            }
+            for (Bindable bindable : beanFactory.getBeansOfType(Bindable.class).values()) {
+                for (String input : bindable.getInputs()) {
+                    Object channel = beanFactory.getBean(input);
+                    if (channel instanceof ChannelInterceptorAware) {
+                        ((ChannelInterceptorAware) channel).addInterceptor(new EventJournalInterceptor(journal));
+                    }
+                }
+            }
+        };
+    }
+
+    // the gateway has no database
+    @Configuration
+    @ConditionalOnClass(JdbcTemplate.class)
+    static class ReplayConfiguration {
+
+        @Bean
+        @ConditionalOnBean({JdbcTemplate.class, PlatformTransactionManager.class})
+        @ConditionalOnMissingBean
+        public EventReplay eventReplay(EventJournal journal, JdbcTemplate jdbcTemplate,
+                                       PlatformTransactionManager transactionManager,
+                                       @Value("${reservation.events.replay.workers:4}") int workers,
+                                       @Value("${reservation.events.replay.batch-size:1000}") int batchSize) {
+            return new EventReplay(journal, jdbcTemplate, transactionManager, workers, batchSize);
+        }
+
+        @Bean
+        @ConditionalOnBean({JdbcTemplate.class, PlatformTransactionManager.class})
+        @ConditionalOnProperty("reservation.events.replay.on-start")
+        public SmartInitializingSingleton eventReplayOnStart(ListableBeanFactory beanFactory, EventReplay replay) {
+            return () -> {
+                for (ReplayTarget<?> target : beanFactory.getBeansOfType(ReplayTarget.class).values()) {
+                    try {
+                        replay.replay(target);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException("Could not replay the event journal into " + target.getName(), e);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IllegalStateException("Interrupted while replaying into " + target.getName(), e);
+                    }
+                }
+            };
+        }
+    }
+}
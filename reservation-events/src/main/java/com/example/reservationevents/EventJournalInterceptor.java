@@ -0,0 +1,29 @@
+package com.example.reservationevents;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.support.ChannelInterceptorAdapter;
+
+/**
+ * Records each saga event an input binding delivers in the {@link EventJournal}
+ * once its handler has returned; an event the handler failed on is recorded
+ * when it is redelivered.
+ */
+class EventJournalInterceptor extends ChannelInterceptorAdapter {
+
+    private final EventJournal journal;
+
+    EventJournalInterceptor(EventJournal journal) {
+        this.journal = journal;
+    }
+
+    @Override
+    public void afterSendCompletion(Message<?> message, MessageChannel channel, boolean sent, Exception ex) {
+        Object payload = message.getPayload();
+        if (ex == null && payload instanceof byte[]) {
+            journal.append((byte[]) payload);
+        } else if (ex == null && payload instanceof SagaEvent) {
+            journal.append((SagaEvent) payload);
+        }
+    }
+}
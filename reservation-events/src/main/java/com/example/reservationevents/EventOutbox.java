@@ -0,0 +1,61 @@
+package com.example.reservationevents;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Saga events to be sent once the transaction that produced them commits.
+ * <p>
+ * {@link #add} writes the event, in its binary form, to the event_outbox table in
+ * the caller's transaction, next to the entities it describes: the event is stored
+ * if and only if they are. {@link EventOutboxRelay} sends stored events in the
+ * background and deletes them once sent, so no request waits on the broker.
+ */
+public class EventOutbox {
+
+    static final String CREATE_TABLE = "create table if not exists event_outbox ("
+            + "id bigint auto_increment primary key, payload varbinary(65535) not null)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Runnable committed;
+
+    /**
+     * @param committed called after each transaction that added events commits
+     */
+    public EventOutbox(JdbcTemplate jdbcTemplate, Runnable committed) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.committed = committed;
+        jdbcTemplate.execute(CREATE_TABLE);
+    }
+
+    /**
+     * Stores the event for sending.
+     *
+     * @throws IllegalStateException if there is no transaction to store it in
+     */
+    public void add(SagaEvent event) {
+        addAll(Collections.singletonList(event));
+    }
+
+    public void addAll(List<? extends SagaEvent> events) {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException("Events must be added to the outbox in a transaction");
+        }
+        List<Object[]> payloads = new ArrayList<>(events.size());
+        for (SagaEvent event : events) {
+            payloads.add(new Object[]{SagaEventCodec.encode(event)});
+        }
+        jdbcTemplate.batchUpdate("insert into event_outbox (payload) values (?)", payloads);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                committed.run();
+            }
+        });
+    }
+}
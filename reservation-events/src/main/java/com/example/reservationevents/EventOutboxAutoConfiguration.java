@@ -0,0 +1,38 @@
+package com.example.reservationevents;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.AutoConfigureAfter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.jdbc.JdbcTemplateAutoConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Registers the {@link EventOutbox} and its {@link EventOutboxRelay} in the services
+ * that have a database.
+ */
+@Configuration
+@ConditionalOnClass(JdbcTemplate.class)
+@AutoConfigureAfter(JdbcTemplateAutoConfiguration.class)
+public class EventOutboxAutoConfiguration {
+
+    @Bean
+    @ConditionalOnBean(JdbcTemplate.class)
+    @ConditionalOnMissingBean
+    public EventOutboxRelay eventOutboxRelay(JdbcTemplate jdbcTemplate, SagaEventPublisher publisher,
+                                             @Value("${reservation.events.outbox.batch-size:100}") int batchSize,
+                                             @Value("${reservation.events.outbox.poll-ms:1000}") long pollMillis,
+                                             @Value("${reservation.events.outbox.retry-ms:1000}") long retryMillis) {
+        return new EventOutboxRelay(jdbcTemplate, publisher, batchSize, pollMillis, retryMillis);
+    }
+
+    @Bean
+    @ConditionalOnBean(EventOutboxRelay.class)
+    @ConditionalOnMissingBean
+    public EventOutbox eventOutbox(JdbcTemplate jdbcTemplate, EventOutboxRelay eventOutboxRelay) {
+        return new EventOutbox(jdbcTemplate, eventOutboxRelay::wakeUp);
+    }
+}
@@ -0,0 +1,174 @@
+package com.example.reservationevents;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Sends the events of the {@link EventOutbox} from a background thread, oldest
+ * first, up to {@code batchSize} per round, and deletes each one once it is sent.
+ * <p>
+ * A round starts as soon as a transaction with events commits, or after
+ * {@code pollMillis} at the latest. A failed send is retried after
+ * {@code retryMillis}; events may then go out twice, which the consumers'
+ * {@link ProcessedEvents} absorbs. The relay starts last, once the bindings are up,
+ * and stops first.
+ */
+public class EventOutboxRelay implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(EventOutboxRelay.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final SagaEventPublisher publisher;
+    private final int batchSize;
+    private final long pollMillis;
+    private final long retryMillis;
+
+    private final Semaphore wakeUp = new Semaphore(0);
+    private final LongAdder relayed = new LongAdder();
+
+    private volatile boolean running;
+    private Thread relay;
+
+    public EventOutboxRelay(JdbcTemplate jdbcTemplate, SagaEventPublisher publisher,
+                            int batchSize, long pollMillis, long retryMillis) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.publisher = publisher;
+        this.batchSize = batchSize;
+        this.pollMillis = pollMillis;
+        this.retryMillis = retryMillis;
+    }
+
+    /**
+     * Starts the next round now rather than at the next poll.
+     */
+    public void wakeUp() {
+        if (wakeUp.availablePermits() == 0) {
+            wakeUp.release();
+        }
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        relay = new Thread(this::relay, "event-outbox-relay");
+        relay.setDaemon(true);
+        relay.start();
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        wakeUp();
+        try {
+            relay.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void stop(Runnable callback) {
+        stop();
+        callback.run();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public boolean isAutoStartup() {
+        return true;
+    }
+
+    @Override
+    public int getPhase() {
+        return Integer.MAX_VALUE;
+    }
+
+    /**
+     * How many events have been sent.
+     */
+    public long getRelayed() {
+        return relayed.sum();
+    }
+
+    private void relay() {
+        while (running) {
+            try {
+                if (relayBatch() < batchSize) {
+                    wakeUp.tryAcquire(pollMillis, TimeUnit.MILLISECONDS);
+                    wakeUp.drainPermits();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("Could not relay the event outbox, retrying in {} ms", retryMillis, e);
+                try {
+                    Thread.sleep(retryMillis);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Sends and deletes the oldest events of the outbox.
+     *
+     * @return the number of events read, a full batch if more may be waiting
+     */
+    int relayBatch() {
+        List<Long> ids = new ArrayList<>(batchSize);
+        List<SagaEvent> events = new ArrayList<>(batchSize);
+        List<Object[]> undecodable = new ArrayList<>();
+        jdbcTemplate.query("select id, payload from event_outbox order by id limit ?", rs -> {
+            long id = rs.getLong(1);
+            try {
+                events.add(SagaEventCodec.decode(rs.getBytes(2)));
+                ids.add(id);
+            } catch (IllegalArgumentException e) {
+                log.error("Dropping outbox event {}, which cannot be decoded", id, e);
+                undecodable.add(new Object[]{id});
+            }
+        }, batchSize);
+        if (!undecodable.isEmpty()) {
+            jdbcTemplate.batchUpdate("delete from event_outbox where id = ?", undecodable);
+        }
+        if (events.isEmpty()) {
+            return undecodable.size();
+        }
+
+        int sent = events.size();
+        SagaEventPublishException failure = null;
+        try {
+            publisher.publishAll(events);
+        } catch (SagaEventPublishException e) {
+            sent = e.getSent();
+            failure = e;
+        }
+        List<Object[]> sentIds = new ArrayList<>(sent);
+        for (Long id : ids.subList(0, sent)) {
+            sentIds.add(new Object[]{id});
+        }
+        if (!sentIds.isEmpty()) {
+            jdbcTemplate.batchUpdate("delete from event_outbox where id = ?", sentIds);
+            relayed.add(sent);
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return events.size() + undecodable.size();
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.reservationevents;
+
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.cloud.stream.binder.ConsumerProperties;
+import org.springframework.cloud.stream.binder.ProducerProperties;
+import org.springframework.cloud.stream.config.BindingProperties;
+import org.springframework.cloud.stream.config.BindingServiceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+
+/**
+ * Partitions the saga destinations.
+ * <p>
+ * With {@code reservation.events.partition-count} above 1, every event is routed
+ * on its {@link SagaEvent#getPartitionKey()} to one of that many partitions, and
+ * every input binding with a group consumes only the partition of
+ * {@code spring.cloud.stream.instanceIndex}, so each instance of a service needs
+ * its own index, from 0 to partition-count - 1. Bindings without a group, which
+ * every instance reads in full, stay unpartitioned. All services must use the
+ * same partition count.
+ */
+@Configuration
+public class EventPartitioningAutoConfiguration {
+
+    @Bean
+    public static BeanPostProcessor sagaEventPartitioning(Environment environment) {
+        int partitionCount = environment.getProperty("reservation.events.partition-count", Integer.class, 1);
+        return new BeanPostProcessor() {
+
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) throws BeansException {
+                return bean;
+            }
+
+            // after the binding properties are bound from the environment
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+                if (bean instanceof BindingServiceProperties && partitionCount > 1) {
+                    partition((BindingServiceProperties) bean, partitionCount);
+                }
+                return bean;
+            }
+        };
+    }
+
+    static void partition(BindingServiceProperties properties, int partitionCount) {
+        for (BindingProperties binding : properties.getBindings().values()) {
+            if (binding.getGroup() != null) {
+                ConsumerProperties consumer = binding.getConsumer() != null ? binding.getConsumer() : new ConsumerProperties();
+                consumer.setPartitioned(true);
+                binding.setConsumer(consumer);
+            }
+        }
+        // the publisher binds each destination on first use, with the properties of its name
+        for (EventType type : EventType.values()) {
+            BindingProperties binding = properties.getBindings().computeIfAbsent(type.getDestination(),
+                    destination -> new BindingProperties());
+            ProducerProperties producer = binding.getProducer() != null ? binding.getProducer() : new ProducerProperties();
+            producer.setPartitionKeyExpression(new SpelExpressionParser().parseExpression(
+                    "headers['" + SagaEventPublisher.PARTITION_KEY + "']"));
+            producer.setPartitionCount(partitionCount);
+            binding.setProducer(producer);
+        }
+        properties.setInstanceCount(partitionCount);
+    }
+}
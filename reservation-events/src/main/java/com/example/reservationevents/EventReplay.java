@@ -0,0 +1,233 @@
+package com.example.reservationevents;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Rebuilds a {@link ReplayTarget} from the {@link EventJournal}, without the broker.
+ * <p>
+ * The journal is read once, in order, and each event handed to the worker its
+ * key maps to (see {@link KeyAffinity#workerOf}), in chunks. A worker folds
+ * the events of its keys into their state, in journal order, dropping
+ * redeliveries, and owns that state alone, so the keys are folded in parallel
+ * with no locking. The states are then written in JDBC batches,
+ * {@code batchSize} keys per transaction.
+ */
+public class EventReplay {
+
+    private static final Logger log = LoggerFactory.getLogger(EventReplay.class);
+
+    private static final int CHUNK_SIZE = 1024;
+    private static final List<SagaEvent> END = new ArrayList<>();
+
+    private final EventJournal journal;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int workers;
+    private final int batchSize;
+
+    public EventReplay(EventJournal journal, JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                       int workers, int batchSize) {
+        this.journal = journal;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.workers = Math.max(1, workers);
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    public <S> ReplayReport replay(ReplayTarget<S> target) throws IOException, InterruptedException {
+        long start = System.currentTimeMillis();
+        Fold<S>[] folds = run(target);
+        long rows = 0;
+        Map<String, S> states = new HashMap<>();
+        for (Fold<S> fold : folds) {
+            rows += write(target, fold.states);
+            states.putAll(fold.states);
+        }
+        target.replayed(states);
+        long events = 0;
+        long duplicates = 0;
+        for (Fold<S> fold : folds) {
+            events += fold.events;
+            duplicates += fold.duplicates;
+        }
+        ReplayReport report = new ReplayReport(target.getName(), events, duplicates, states.size(), rows,
+                System.currentTimeMillis() - start);
+        log.info("Replayed {}", report);
+        return report;
+    }
+
+    /**
+     * The state of every key of the target the journal has events of, by key,
+     * without writing anything.
+     */
+    public <S> Map<String, S> fold(ReplayTarget<S> target) throws IOException, InterruptedException {
+        Map<String, S> states = new HashMap<>();
+        for (Fold<S> fold : run(target)) {
+            states.putAll(fold.states);
+        }
+        return states;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <S> Fold<S>[] run(ReplayTarget<S> target) throws IOException, InterruptedException {
+        Fold<S>[] folds = new Fold[workers];
+        Thread[] threads = new Thread[workers];
+        List<SagaEvent>[] chunks = new List[workers];
+        AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        for (int i = 0; i < workers; i++) {
+            Fold<S> fold = new Fold<>(target);
+            folds[i] = fold;
+            chunks[i] = new ArrayList<>(CHUNK_SIZE);
+            threads[i] = new Thread(() -> {
+                try {
+                    fold.run();
+                } catch (RuntimeException e) {
+                    failure.compareAndSet(null, e);
+                    fold.queue.clear();
+                    fold.failed = true;
+                }
+            }, "event-replay-" + i);
+            threads[i].setDaemon(true);
+            threads[i].start();
+        }
+        try {
+            for (Path segment : journal.segments()) {
+                JournalSegments.read(segment, record -> {
+                    SagaEvent event = decode(record);
+                    String key = event == null ? null : target.keyOf(event);
+                    if (key == null) {
+                        return;
+                    }
+                    int worker = KeyAffinity.workerOf(key, workers);
+                    chunks[worker].add(event);
+                    if (chunks[worker].size() == CHUNK_SIZE) {
+                        folds[worker].hand(chunks[worker]);
+                        chunks[worker] = new ArrayList<>(CHUNK_SIZE);
+                    }
+                });
+            }
+            for (int i = 0; i < workers; i++) {
+                folds[i].hand(chunks[i]);
+                folds[i].hand(END);
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        } finally {
+            for (Thread thread : threads) {
+                thread.interrupt();
+            }
+        }
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+        return folds;
+    }
+
+    private <S> long write(ReplayTarget<S> target, Map<String, S> states) {
+        long rows = 0;
+        WriteBatch batch = WriteBatch.grouped();
+        int keys = 0;
+        for (Map.Entry<String, S> state : states.entrySet()) {
+            target.write(state.getKey(), state.getValue(), batch);
+            if (++keys == batchSize) {
+                rows += execute(batch);
+                batch = WriteBatch.grouped();
+                keys = 0;
+            }
+        }
+        return rows + execute(batch);
+    }
+
+    private int execute(WriteBatch batch) {
+        if (batch.size() > 0) {
+            transactionTemplate.execute(status -> {
+                batch.execute(jdbcTemplate);
+                return null;
+            });
+        }
+        return batch.size();
+    }
+
+    private static SagaEvent decode(ByteBuffer record) {
+        byte[] encoded = new byte[record.remaining()];
+        record.get(encoded);
+        try {
+            return SagaEventCodec.decode(encoded);
+        } catch (IllegalArgumentException e) {
+            log.warn("Skipping an event the journal cannot decode: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    // The keys of one worker: their state, and the redeliveries seen among their events
+    private static final class Fold<S> {
+
+        private final ReplayTarget<S> target;
+        private final BlockingQueue<List<SagaEvent>> queue = new ArrayBlockingQueue<>(16);
+        private final Map<String, S> states = new HashMap<>();
+        private final Set<String> processed = new HashSet<>();
+        private long events;
+        private long duplicates;
+        private volatile boolean failed;
+
+        private Fold(ReplayTarget<S> target) {
+            this.target = target;
+        }
+
+        private void hand(List<SagaEvent> chunk) {
+            if (failed) {
+                return;
+            }
+            try {
+                queue.put(chunk);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while replaying events", e);
+            }
+        }
+
+        private void run() {
+            while (true) {
+                List<SagaEvent> chunk;
+                try {
+                    chunk = queue.take();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (chunk == END) {
+                    return;
+                }
+                for (SagaEvent event : chunk) {
+                    events++;
+                    // the same key as ProcessedEvents; events without a transaction ID cannot be told apart
+                    if (event.getTransactionID() != null
+                            && !processed.add(event.getType().getCode() + ":" + event.getTransactionID())) {
+                        duplicates++;
+                        continue;
+                    }
+                    String key = target.keyOf(event);
+                    // a key whose state ends up null is kept, so that what was stored for it is removed
+                    states.put(key, target.apply(states.get(key), event));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.reservationevents;
+
+/**
+ * Every event exchanged on the reservation saga, together with the single byte
+ * that identifies it on the wire and the destination it is published to.
+ * <p>
+ * Booking traffic and master data traffic use separate destination prefixes, so
+ * a bulk load of locations or reservations never queues in front of a booking.
+ */
+public enum EventType {
+
+    DOBOOKING(1, "reservations.dobooking"),
+    RESERVATION_SAVE(2, "reservations.reservation-save"),
+    RESERVATION_SAVED(3, "reservations.reservation-saved"),
+    TICKET_RESERVE(4, "reservations.ticket-reserve"),
+    TICKET_SAVE(5, "reservations.master.ticket-save"),
+    RESERVATION_MASTER_SAVE(6, "reservations.master.reservation-save"),
+    RESERVATION_DELETE(7, "reservations.reservation-delete"),
+    TICKET_CONFIRM(8, "reservations.ticket-confirm"),
+    TICKET_RELEASE(9, "reservations.ticket-release"),
+    TICKET_REJECT(10, "reservations.ticket-reject"),
+    INVENTORY(11, "reservations.inventory");
+
+    private static final EventType[] BY_CODE = new EventType[128];
+
+    static {
+        for (EventType type : values()) {
+            BY_CODE[type.code] = type;
+        }
+    }
+
+    private final byte code;
+    private final String destination;
+
+    EventType(int code, String destination) {
+        this.code = (byte) code;
+        this.destination = destination;
+    }
+
+    public byte getCode() {
+        return code;
+    }
+
+    public String getDestination() {
+        return destination;
+    }
+
+    public static EventType fromCode(byte code) {
+        EventType type = code >= 0 ? BY_CODE[code] : null;
+        if (type == null) {
+            throw new IllegalArgumentException("Unknown event type code " + code);
+        }
+        return type;
+    }
+}
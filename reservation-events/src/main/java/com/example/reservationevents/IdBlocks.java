@@ -0,0 +1,75 @@
+package com.example.reservationevents;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+/**
+ * Entity IDs handed out from a database sequence a block at a time, so that
+ * writing a row does not cost a round trip to the sequence.
+ * <p>
+ * Each value {@code s} taken from the sequence stands for the IDs
+ * {@code s * blockSize} to {@code s * blockSize + blockSize - 1}. That is how
+ * Hibernate reads a {@code @SequenceGenerator} with an {@code allocationSize} of
+ * {@code blockSize} under Spring Boot's default ID generator mappings, so the
+ * JPA saves of an entity and the rows written with IDs from here can share its
+ * sequence without ever taking the same ID.
+ */
+public class IdBlocks {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final String sequence;
+    private final int blockSize;
+
+    // the rest of the current block, next up to end exclusive
+    private long next;
+    private long end;
+
+    public IdBlocks(JdbcTemplate jdbcTemplate, String sequence, int blockSize) {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("Block size must be positive");
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.sequence = sequence;
+        this.blockSize = blockSize;
+    }
+
+    public synchronized long next() {
+        if (next == end) {
+            startBlock(jdbcTemplate.queryForObject("select next value for " + sequence, Long.class));
+        }
+        return next++;
+    }
+
+    /**
+     * {@code count} IDs, taking all the blocks they need from the sequence in one query.
+     */
+    public synchronized long[] next(int count) {
+        long[] ids = new long[count];
+        int taken = 0;
+        while (taken < count && next < end) {
+            ids[taken++] = next++;
+        }
+        if (taken < count) {
+            int blocks = (count - taken + blockSize - 1) / blockSize;
+            List<Long> values = jdbcTemplate.queryForList(
+                    "select next value for " + sequence + " from system_range(1, ?)", Long.class, blocks);
+            for (Long value : values) {
+                startBlock(value);
+                while (taken < count && next < end) {
+                    ids[taken++] = next++;
+                }
+            }
+        }
+        return ids;
+    }
+
+    private void startBlock(long value) {
+        next = value * blockSize;
+        end = next + blockSize;
+        // Hibernate never hands out 0 either
+        if (next == 0) {
+            next = 1;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.reservationevents;
+
+/**
+ * What a {@link BulkImporter} loaded into a table.
+ */
+public class ImportReport {
+
+    private final String table;
+    private final long rows;
+    private final long millis;
+    private final long firstId;
+    private final long lastId;
+
+    ImportReport(String table, long rows, long millis, long firstId, long lastId) {
+        this.table = table;
+        this.rows = rows;
+        this.millis = millis;
+        this.firstId = firstId;
+        this.lastId = lastId;
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public long getMillis() {
+        return millis;
+    }
+
+    public double getRowsPerSecond() {
+        return millis > 0 ? rows * 1000.0 / millis : rows;
+    }
+
+    /**
+     * IDs of the imported rows are between the first and the last, both included;
+     * rows of other writers may be among them. Both are 0 if nothing was imported.
+     */
+    public long getFirstId() {
+        return firstId;
+    }
+
+    public long getLastId() {
+        return lastId;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d rows into %s in %d ms (%.0f rows/s)", rows, table, millis, getRowsPerSecond());
+    }
+}
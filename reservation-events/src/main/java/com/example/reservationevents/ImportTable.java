@@ -0,0 +1,83 @@
+package com.example.reservationevents;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * The table a {@link BulkImporter} loads, and where each of its columns is read
+ * from: the CSV header or NDJSON field named after the entity property.
+ * <p>
+ * The {@code id} column is not listed; it is filled by the importer, from the
+ * table's own {@link #ids} or else the importer's sequence, or by the database.
+ */
+public class ImportTable {
+
+    private final String name;
+    private final List<Column> columns = new ArrayList<>();
+    private IdBlocks ids;
+
+    public ImportTable(String name) {
+        this.name = name;
+    }
+
+    public ImportTable column(String field, String column) {
+        return column(field, column, () -> null);
+    }
+
+    /**
+     * @param whenMissing value of the column for rows without the field
+     */
+    public ImportTable column(String field, String column, Supplier<?> whenMissing) {
+        columns.add(new Column(field, column, whenMissing));
+        return this;
+    }
+
+    /**
+     * Takes the IDs of the rows from the blocks the entity's writes take theirs from.
+     */
+    public ImportTable ids(IdBlocks ids) {
+        this.ids = ids;
+        return this;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    IdBlocks getIds() {
+        return ids;
+    }
+
+    List<Column> getColumns() {
+        return Collections.unmodifiableList(columns);
+    }
+
+    String insertSql(boolean withId) {
+        StringBuilder sql = new StringBuilder("insert into ").append(name).append(" (");
+        StringBuilder values = new StringBuilder(") values (");
+        if (withId) {
+            sql.append("id, ");
+            values.append("?, ");
+        }
+        for (int i = 0; i < columns.size(); i++) {
+            sql.append(i > 0 ? ", " : "").append(columns.get(i).column);
+            values.append(i > 0 ? ", ?" : "?");
+        }
+        return sql.append(values).append(')').toString();
+    }
+
+    static final class Column {
+
+        final String field;
+        final String column;
+        final Supplier<?> whenMissing;
+
+        private Column(String field, String column, Supplier<?> whenMissing) {
+            this.field = field;
+            this.column = column;
+            this.whenMissing = whenMissing;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.reservationevents;
+
+/**
+ * Ticket service tells whoever keeps a copy of its inventory how many tickets of
+ * a location can still be booked. Sent when the count changes and again now and
+ * then, so a copy that missed one catches up.
+ */
+public class InventoryEvent extends SagaEvent {
+
+    private String ticketLocation;
+    private int availableTickets;
+
+    public InventoryEvent() {
+
+    }
+
+    public InventoryEvent(String ticketLocation, int availableTickets) {
+        this.ticketLocation = ticketLocation;
+        this.availableTickets = availableTickets;
+    }
+
+    @Override
+    public EventType getType() {
+        return EventType.INVENTORY;
+    }
+
+    @Override
+    public String getPartitionKey() {
+        return ticketLocation != null ? ticketLocation.trim() : "";
+    }
+
+    public String getTicketLocation() {
+        return ticketLocation;
+    }
+
+    public void setTicketLocation(String ticketLocation) {
+        this.ticketLocation = ticketLocation;
+    }
+
+    public int getAvailableTickets() {
+        return availableTickets;
+    }
+
+    public void setAvailableTickets(int availableTickets) {
+        this.availableTickets = availableTickets;
+    }
+}
@@ -0,0 +1,156 @@
+package com.example.reservationevents;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Append-only log of records in numbered, memory-mapped segment files of
+ * {@code segmentBytes} each. Appending is a copy into the mapping, with no
+ * system call, and what is appended survives the process; a new segment is
+ * started when a record no longer fits.
+ * <p>
+ * A record is its length, four bytes, followed by its bytes. The length is
+ * written last, so a record cut short by a crash reads as the end of its
+ * segment. Segments are never appended to after a restart: a new one is started
+ * after the highest existing number.
+ */
+public class JournalSegments implements AutoCloseable {
+
+    private static final String SUFFIX = ".seg";
+
+    private final Path dir;
+    private final String prefix;
+    private final int segmentBytes;
+
+    private long segmentNumber;
+    private MappedByteBuffer segment;
+
+    /**
+     * Opens the log in the directory, starting a segment numbered above both the
+     * existing segments and {@code after}.
+     */
+    public JournalSegments(Path dir, String prefix, int segmentBytes, long after) throws IOException {
+        this.dir = dir;
+        this.prefix = prefix;
+        this.segmentBytes = segmentBytes;
+        Files.createDirectories(dir);
+        List<Path> segments = segments();
+        segmentNumber = Math.max(after, segments.isEmpty() ? 0 : numberOf(segments.get(segments.size() - 1)));
+        next();
+    }
+
+    public synchronized void append(byte[] record) {
+        if (record.length == 0 || record.length > segmentBytes - 8) {
+            throw new IllegalArgumentException("Cannot journal a record of " + record.length + " bytes");
+        }
+        if (segment.remaining() < record.length + 8) {
+            next();
+        }
+        int start = segment.position();
+        segment.position(start + 4);
+        segment.put(record);
+        segment.putInt(start, record.length);
+    }
+
+    /**
+     * Starts a new segment.
+     *
+     * @return the number of the segment before it, the last one with records
+     * appended so far
+     */
+    public synchronized long rotate() {
+        long last = segmentNumber;
+        next();
+        return last;
+    }
+
+    /**
+     * The segments in the directory, oldest first.
+     */
+    public List<Path> segments() throws IOException {
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, prefix + "*" + SUFFIX)) {
+            stream.forEach(segments::add);
+        }
+        segments.sort((a, b) -> Long.compare(numberOf(a), numberOf(b)));
+        return segments;
+    }
+
+    /**
+     * Deletes the segments numbered up to {@code number}, included.
+     */
+    public void deleteThrough(long number) throws IOException {
+        for (Path segment : segments()) {
+            if (numberOf(segment) <= number) {
+                Files.delete(segment);
+            }
+        }
+    }
+
+    public Path getDir() {
+        return dir;
+    }
+
+    @Override
+    public synchronized void close() {
+        segment.force();
+    }
+
+    /**
+     * Hands each record of the segment to the consumer, as a buffer positioned at
+     * its first byte and limited to its last, valid until the consumer returns.
+     */
+    public static void read(Path segment, Consumer<ByteBuffer> records) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        while (buffer.remaining() >= 4) {
+            int length = buffer.getInt();
+            if (length <= 0 || length > buffer.remaining()) {
+                return;
+            }
+            ByteBuffer record = buffer.slice();
+            record.limit(length);
+            records.accept(record);
+            buffer.position(buffer.position() + length);
+        }
+    }
+
+    /**
+     * The number of a segment, or of any file named like one: a prefix ending in
+     * a dash, the number and a suffix.
+     */
+    public static long numberOf(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(name.lastIndexOf('-') + 1, name.indexOf('.')));
+    }
+
+    public static String nameOf(String prefix, long number) {
+        return prefix + String.format("%010d", number);
+    }
+
+    private void next() {
+        if (segment != null) {
+            segment.force();
+        }
+        segmentNumber++;
+        Path file = dir.resolve(nameOf(prefix, segmentNumber) + SUFFIX);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not create journal segment " + file, e);
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.reservationevents;
+
+/**
+ * Spreads events over a fixed number of workers by key, each key always on the
+ * same worker, so that events with different keys can be handled in parallel
+ * while those with the same key stay in order. The workers are the lanes of
+ * whoever asks: the {@link WriteBehind} flushers, the ticket service's batcher,
+ * the folding threads of {@link EventReplay}.
+ */
+public final class KeyAffinity {
+
+    private KeyAffinity() {
+    }
+
+    /**
+     * The worker, out of {@code workers}, that handles the events of the key.
+     */
+    public static int workerOf(String key, int workers) {
+        return workers > 1 ? Math.floorMod(key.hashCode(), workers) : 0;
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.reservationevents;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Timestamp;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Drops redelivered saga events. An event is identified by its type and transaction ID.
+ * <p>
+ * Events processed lately are remembered in memory ({@link RecentKeys}), so a
+ * redelivery soon after the first delivery is dropped without going to the database.
+ * Every event is also recorded in the processed_event table, which catches
+ * redeliveries the memory no longer holds, after a restart for instance. The
+ * record is only inserted if there is none yet, so a redelivery inserts no row
+ * rather than violating the primary key, which some databases would answer by
+ * aborting the transaction the event shares with others. Otherwise the table is
+ * never read; records older than the retention are deleted now and then.
+ * <p>
+ * Call {@link #markProcessed} in the transaction that applies the event: if that
+ * transaction rolls back, so does the record, and a redelivery is processed again.
+ */
+public class ProcessedEvents {
+
+    private static final String INSERT_IF_ABSENT = "insert into processed_event "
+            + "(event_type, transaction_id, processed_at) select ?, ?, ? where not exists "
+            + "(select 1 from processed_event where event_type = ? and transaction_id = ?)";
+
+    static final String CREATE_TABLE = "create table if not exists processed_event ("
+            + "event_type tinyint not null, transaction_id varchar(64) not null, processed_at timestamp not null, "
+            + "primary key (event_type, transaction_id))";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final RecentKeys recent;
+    private final long retentionMillis;
+    private final AtomicLong lastPurge = new AtomicLong(System.currentTimeMillis());
+    private final LongAdder duplicates = new LongAdder();
+
+    public ProcessedEvents(JdbcTemplate jdbcTemplate, int bucketCount, long bucketMillis, int maxKeysPerBucket,
+                           long retentionMillis) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.recent = new RecentKeys(bucketCount, bucketMillis, maxKeysPerBucket, System::currentTimeMillis);
+        this.retentionMillis = retentionMillis;
+        jdbcTemplate.execute(CREATE_TABLE);
+    }
+
+    /**
+     * Records the event as processed.
+     *
+     * @return false if it was processed before and should be dropped; always true
+     * for events without a transaction ID, which cannot be told apart
+     */
+    public boolean markProcessed(SagaEvent event) {
+        if (event.getTransactionID() == null) {
+            return true;
+        }
+        String key = event.getType().getCode() + ":" + event.getTransactionID();
+        if (recent.contains(key)) {
+            duplicates.increment();
+            return false;
+        }
+        long now = System.currentTimeMillis();
+        // the same event inserted concurrently by another transaction still violates the key, failing this one,
+        // whose redelivery then finds the record
+        int inserted = jdbcTemplate.update(INSERT_IF_ABSENT, event.getType().getCode(), event.getTransactionID(),
+                new Timestamp(now), event.getType().getCode(), event.getTransactionID());
+        if (inserted == 0) {
+            recent.add(key);
+            duplicates.increment();
+            return false;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            // remembered only once the record is committed
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    recent.add(key);
+                }
+            });
+        } else {
+            recent.add(key);
+        }
+        // at most once per tenth of the retention, by whichever event comes first
+        long purged = lastPurge.get();
+        if (now - purged > retentionMillis / 10 && lastPurge.compareAndSet(purged, now)) {
+            purgeBefore(now - retentionMillis);
+        }
+        return true;
+    }
+
+    int purgeBefore(long timestamp) {
+        return jdbcTemplate.update("delete from processed_event where processed_at < ?", new Timestamp(timestamp));
+    }
+
+    /**
+     * How many events have been dropped as duplicates.
+     */
+    public long getDuplicates() {
+        return duplicates.sum();
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.reservationevents;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * The keys added over the last few time buckets, in memory that does not grow with
+ * traffic: once the current bucket is {@code bucketMillis} old or holds
+ * {@code maxKeysPerBucket} keys, the oldest bucket is cleared and becomes the current one.
+ * Lookups check every bucket, a handful of hash lookups.
+ */
+class RecentKeys {
+
+    private final Set<String>[] buckets;
+    private final long bucketMillis;
+    private final int maxKeysPerBucket;
+    private final LongSupplier clock;
+
+    private volatile int current;
+    private volatile long currentSince;
+
+    @SuppressWarnings("unchecked")
+    RecentKeys(int bucketCount, long bucketMillis, int maxKeysPerBucket, LongSupplier clock) {
+        this.buckets = new Set[bucketCount];
+        for (int i = 0; i < bucketCount; i++) {
+            buckets[i] = Collections.newSetFromMap(new ConcurrentHashMap<>());
+        }
+        this.bucketMillis = bucketMillis;
+        this.maxKeysPerBucket = maxKeysPerBucket;
+        this.clock = clock;
+        this.currentSince = clock.getAsLong();
+    }
+
+    public boolean contains(String key) {
+        for (Set<String> bucket : buckets) {
+            if (bucket.contains(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public void add(String key) {
+        Set<String> bucket = buckets[current];
+        if (clock.getAsLong() - currentSince >= bucketMillis || bucket.size() >= maxKeysPerBucket) {
+            bucket = rotate(bucket);
+        }
+        bucket.add(key);
+    }
+
+    private synchronized Set<String> rotate(Set<String> full) {
+        if (buckets[current] != full) {
+            // another thread has rotated already
+            return buckets[current];
+        }
+        int next = (current + 1) % buckets.length;
+        buckets[next].clear();
+        currentSince = clock.getAsLong();
+        current = next;
+        return buckets[next];
+    }
+}
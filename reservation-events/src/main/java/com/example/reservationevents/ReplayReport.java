@@ -0,0 +1,63 @@
+package com.example.reservationevents;
+
+/**
+ * What an {@link EventReplay} read and rebuilt.
+ */
+public class ReplayReport {
+
+    private final String target;
+    private final long events;
+    private final long duplicates;
+    private final long keys;
+    private final long rows;
+    private final long millis;
+
+    ReplayReport(String target, long events, long duplicates, long keys, long rows, long millis) {
+        this.target = target;
+        this.events = events;
+        this.duplicates = duplicates;
+        this.keys = keys;
+        this.rows = rows;
+        this.millis = millis;
+    }
+
+    public String getTarget() {
+        return target;
+    }
+
+    /**
+     * Events of the target read from the journal, redeliveries included.
+     */
+    public long getEvents() {
+        return events;
+    }
+
+    public long getDuplicates() {
+        return duplicates;
+    }
+
+    public long getKeys() {
+        return keys;
+    }
+
+    /**
+     * Row statements written, deletes included.
+     */
+    public long getRows() {
+        return rows;
+    }
+
+    public long getMillis() {
+        return millis;
+    }
+
+    public double getEventsPerSecond() {
+        return millis > 0 ? events * 1000.0 / millis : events;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d events (%d redelivered) into %d keys of %s, %d rows, in %d ms (%.0f events/s)",
+                events, duplicates, keys, target, rows, millis, getEventsPerSecond());
+    }
+}
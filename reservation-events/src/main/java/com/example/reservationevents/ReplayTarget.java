@@ -0,0 +1,46 @@
+package com.example.reservationevents;
+
+import java.util.Map;
+
+/**
+ * What {@link EventReplay} rebuilds from the {@link EventJournal}: state per
+ * key, folded from the events of the key in journal order, then written.
+ * <p>
+ * Keys are folded in parallel, each on one worker, so {@link #apply} must only
+ * depend on the state of its own key.
+ *
+ * @param <S> the state of a key, typically a row
+ */
+public interface ReplayTarget<S> {
+
+    /**
+     * Name of the table or state rebuilt, for the report.
+     */
+    String getName();
+
+    /**
+     * Key of the state the event changes, or null if it does not concern this target.
+     */
+    String keyOf(SagaEvent event);
+
+    /**
+     * The state of the key after the event.
+     *
+     * @param state the state before, null for the first event of the key
+     * @return the new state, null if there is none any more
+     */
+    S apply(S state, SagaEvent event);
+
+    /**
+     * Adds the statements that store the state of the key, replacing what is
+     * stored for it. The state is null if the events of the key left none.
+     */
+    void write(String key, S state, WriteBatch batch);
+
+    /**
+     * Called once every key is written, with the state of each.
+     */
+    default void replayed(Map<String, S> states) {
+
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.reservationevents;
+
+/**
+ * Rolls back a reservation recorded earlier in the saga.
+ */
+public class ReservationDeleteEvent extends ReservationEvent {
+
+    public ReservationDeleteEvent() {
+
+    }
+
+    public ReservationDeleteEvent(String reservationName, String reservationLocation, int reservationCount, String transactionID) {
+        super(reservationName, reservationLocation, reservationCount, transactionID);
+    }
+
+    @Override
+    public EventType getType() {
+        return EventType.RESERVATION_DELETE;
+    }
+
+    @Override
+    public String getPartitionKey() {
+        return locationKey();
+    }
+}
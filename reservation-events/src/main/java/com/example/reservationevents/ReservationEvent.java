@@ -0,0 +1,51 @@
+package com.example.reservationevents;
+
+/**
+ * Events that carry a reservation: who, where and how many seats.
+ */
+public abstract class ReservationEvent extends SagaEvent {
+
+    private String reservationName;
+    private String reservationLocation;
+    private int reservationCount;
+
+    protected ReservationEvent() {
+
+    }
+
+    protected ReservationEvent(String reservationName, String reservationLocation, int reservationCount, String transactionID) {
+        super(transactionID);
+        this.reservationName = reservationName;
+        this.reservationLocation = reservationLocation;
+        this.reservationCount = reservationCount;
+    }
+
+    public String getReservationName() {
+        return reservationName;
+    }
+
+    public void setReservationName(String reservationName) {
+        this.reservationName = reservationName;
+    }
+
+    public String getReservationLocation() {
+        return reservationLocation;
+    }
+
+    public void setReservationLocation(String reservationLocation) {
+        this.reservationLocation = reservationLocation;
+    }
+
+    // the services trim the location before using it
+    protected String locationKey() {
+        return reservationLocation != null ? reservationLocation.trim() : "";
+    }
+
+    public int getReservationCount() {
+        return reservationCount;
+    }
+
+    public void setReservationCount(int reservationCount) {
+        this.reservationCount = reservationCount;
+    }
+}
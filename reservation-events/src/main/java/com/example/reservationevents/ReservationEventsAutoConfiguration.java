@@ -0,0 +1,26 @@
+package com.example.reservationevents;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.cloud.stream.binding.BinderAwareChannelResolver;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Registers the saga event converter with Spring Cloud Stream and a publisher
+ * that routes every event to the destination of its type.
+ */
+@Configuration
+public class ReservationEventsAutoConfiguration {
+
+    @Bean
+    @ConditionalOnMissingBean
+    public SagaEventMessageConverter sagaEventMessageConverter() {
+        return new SagaEventMessageConverter();
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public SagaEventPublisher sagaEventPublisher(BinderAwareChannelResolver binderAwareChannelResolver) {
+        return new SagaEventPublisher(binderAwareChannelResolver);
+    }
+}
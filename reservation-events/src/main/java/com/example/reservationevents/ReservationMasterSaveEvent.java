@@ -0,0 +1,25 @@
+package com.example.reservationevents;
+
+/**
+ * Gateway writes a reservation straight into the reservation master data.
+ */
+public class ReservationMasterSaveEvent extends ReservationEvent {
+
+    public ReservationMasterSaveEvent() {
+
+    }
+
+    public ReservationMasterSaveEvent(String reservationName, String reservationLocation, int reservationCount, String transactionID) {
+        super(reservationName, reservationLocation, reservationCount, transactionID);
+    }
+
+    @Override
+    public EventType getType() {
+        return EventType.RESERVATION_MASTER_SAVE;
+    }
+
+    @Override
+    public String getPartitionKey() {
+        return locationKey();
+    }
+}
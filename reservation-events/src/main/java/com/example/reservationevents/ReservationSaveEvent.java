@@ -0,0 +1,25 @@
+package com.example.reservationevents;
+
+/**
+ * Booking service asks the reservation service to record the reservation.
+ */
+public class ReservationSaveEvent extends ReservationEvent {
+
+    public ReservationSaveEvent() {
+
+    }
+
+    public ReservationSaveEvent(String reservationName, String reservationLocation, int reservationCount, String transactionID) {
+        super(reservationName, reservationLocation, reservationCount, transactionID);
+    }
+
+    @Override
+    public EventType getType() {
+        return EventType.RESERVATION_SAVE;
+    }
+
+    @Override
+    public String getPartitionKey() {
+        return locationKey();
+    }
+}
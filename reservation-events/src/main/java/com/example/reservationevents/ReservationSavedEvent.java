@@ -0,0 +1,25 @@
+package com.example.reservationevents;
+
+/**
+ * Reservation service tells the ticket service the reservation is recorded.
+ */
+public class ReservationSavedEvent extends ReservationEvent {
+
+    public ReservationSavedEvent() {
+
+    }
+
+    public ReservationSavedEvent(String reservationName, String reservationLocation, int reservationCount, String transactionID) {
+        super(reservationName, reservationLocation, reservationCount, transactionID);
+    }
+
+    @Override
+    public EventType getType() {
+        return EventType.RESERVATION_SAVED;
+    }
+
+    @Override
+    public String getPartitionKey() {
+        return locationKey();
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.reservationevents;
+
+/**
+ * Base class of all events travelling between the gateway, booking, reservation
+ * and ticket services.
+ */
+public abstract class SagaEvent {
+
+    private String transactionID;
+    private long timestamp;
+
+    protected SagaEvent() {
+        this.timestamp = System.currentTimeMillis();
+    }
+
+    protected SagaEvent(String transactionID) {
+        this();
+        this.transactionID = transactionID;
+    }
+
+    public abstract EventType getType();
+
+    public String getTransactionID() {
+        return transactionID;
+    }
+
+    public void setTransactionID(String transactionID) {
+        this.transactionID = transactionID;
+    }
+
+    /**
+     * Key of the partition the event is sent to, when the destinations are
+     * partitioned: events with the same key are handled in order by one consumer.
+     * The transaction ID, unless the event changes the state of a location.
+     */
+    public String getPartitionKey() {
+        return transactionID != null ? transactionID : "";
+    }
+
+    /**
+     * Time the event was created, in epoch milliseconds.
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+    }
+}
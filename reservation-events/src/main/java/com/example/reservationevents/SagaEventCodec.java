@@ -0,0 +1,251 @@
+package com.example.reservationevents;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Compact binary form of {@link SagaEvent}s.
+ * <p>
+ * Layout: a fixed ten byte header (format version, event type code, creation
+ * timestamp) followed by the event fields. Strings are written as an unsigned
+ * two byte length and their UTF-8 bytes, {@code 0xFFFF} standing for null;
+ * ints are four bytes, big-endian.
+ */
+public final class SagaEventCodec {
+
+    public static final byte VERSION = 1;
+
+    static final int HEADER_LENGTH = 10;
+
+    private static final int NULL_LENGTH = 0xFFFF;
+    private static final int MAX_STRING_LENGTH = NULL_LENGTH - 1;
+
+    private SagaEventCodec() {
+
+    }
+
+    public static byte[] encode(SagaEvent event) {
+        String transactionID = event.getTransactionID();
+        int size = HEADER_LENGTH + sizeOf(transactionID);
+
+        ReservationEvent reservation = null;
+        // location events: a location and a count
+        String location = null;
+        int count = 0;
+        if (event instanceof ReservationEvent) {
+            reservation = (ReservationEvent) event;
+            size += sizeOf(reservation.getReservationName()) + sizeOf(reservation.getReservationLocation()) + 4;
+        } else if (event instanceof TicketSaveEvent) {
+            location = ((TicketSaveEvent) event).getTicketLocation();
+            count = ((TicketSaveEvent) event).getTicketCounts();
+            size += sizeOf(location) + 4;
+        } else if (event instanceof InventoryEvent) {
+            location = ((InventoryEvent) event).getTicketLocation();
+            count = ((InventoryEvent) event).getAvailableTickets();
+            size += sizeOf(location) + 4;
+        } else {
+            throw new IllegalArgumentException("No wire format for " + event.getClass().getName());
+        }
+
+        byte[] out = new byte[size];
+        out[0] = VERSION;
+        out[1] = event.getType().getCode();
+        int pos = writeLong(out, 2, event.getTimestamp());
+        pos = writeString(out, pos, transactionID);
+        if (reservation != null) {
+            pos = writeString(out, pos, reservation.getReservationName());
+            pos = writeString(out, pos, reservation.getReservationLocation());
+            writeInt(out, pos, reservation.getReservationCount());
+        } else {
+            pos = writeString(out, pos, location);
+            writeInt(out, pos, count);
+        }
+        return out;
+    }
+
+    public static SagaEvent decode(byte[] in) {
+        if (in.length < HEADER_LENGTH) {
+            throw new IllegalArgumentException("Event is shorter than its header: " + in.length + " bytes");
+        }
+        if (in[0] != VERSION) {
+            throw new IllegalArgumentException("Unsupported event format version " + in[0]);
+        }
+        EventType type = EventType.fromCode(in[1]);
+        Reader reader = new Reader(in, 2);
+        long timestamp = reader.readLong();
+        String transactionID = reader.readString();
+
+        SagaEvent event;
+        if (type == EventType.TICKET_SAVE) {
+            event = new TicketSaveEvent(reader.readString(), reader.readInt());
+        } else if (type == EventType.INVENTORY) {
+            event = new InventoryEvent(reader.readString(), reader.readInt());
+        } else {
+            event = newReservationEvent(type, reader.readString(), reader.readString(), reader.readInt(), transactionID);
+        }
+        event.setTransactionID(transactionID);
+        event.setTimestamp(timestamp);
+        return event;
+    }
+
+    /**
+     * Reads only the event type, without decoding the rest of the payload.
+     */
+    public static EventType peekType(byte[] in) {
+        if (in.length < HEADER_LENGTH || in[0] != VERSION) {
+            throw new IllegalArgumentException("Not an encoded saga event");
+        }
+        return EventType.fromCode(in[1]);
+    }
+
+    private static ReservationEvent newReservationEvent(EventType type, String name, String location, int count, String transactionID) {
+        switch (type) {
+            case DOBOOKING:
+                return new DoBookingEvent(name, location, count, transactionID);
+            case RESERVATION_SAVE:
+                return new ReservationSaveEvent(name, location, count, transactionID);
+            case RESERVATION_SAVED:
+                return new ReservationSavedEvent(name, location, count, transactionID);
+            case TICKET_RESERVE:
+                return new TicketReserveEvent(name, location, count, transactionID);
+            case TICKET_REJECT:
+                return new TicketRejectEvent(name, location, count, transactionID);
+            case RESERVATION_MASTER_SAVE:
+                return new ReservationMasterSaveEvent(name, location, count, transactionID);
+            case RESERVATION_DELETE:
+                return new ReservationDeleteEvent(name, location, count, transactionID);
+            case TICKET_CONFIRM:
+                return new TicketConfirmEvent(name, location, count, transactionID);
+            case TICKET_RELEASE:
+                return new TicketReleaseEvent(name, location, count, transactionID);
+            default:
+                throw new IllegalArgumentException("No wire format for " + type);
+        }
+    }
+
+    private static int sizeOf(String value) {
+        if (value == null) {
+            return 2;
+        }
+        int length = utf8Length(value);
+        if (length > MAX_STRING_LENGTH) {
+            throw new IllegalArgumentException("String field exceeds " + MAX_STRING_LENGTH + " bytes");
+        }
+        return 2 + length;
+    }
+
+    private static int utf8Length(String value) {
+        int length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                // a lone surrogate, written as '?'
+                length++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    private static int writeString(byte[] out, int pos, String value) {
+        if (value == null) {
+            out[pos] = (byte) 0xFF;
+            out[pos + 1] = (byte) 0xFF;
+            return pos + 2;
+        }
+        int start = pos + 2;
+        int end = start;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                out[end++] = (byte) c;
+            } else if (c < 0x800) {
+                out[end++] = (byte) (0xC0 | (c >> 6));
+                out[end++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, value.charAt(++i));
+                out[end++] = (byte) (0xF0 | (cp >> 18));
+                out[end++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                out[end++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                out[end++] = (byte) (0x80 | (cp & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                // as String.getBytes does with a lone surrogate, which has no UTF-8 form
+                out[end++] = (byte) '?';
+            } else {
+                out[end++] = (byte) (0xE0 | (c >> 12));
+                out[end++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                out[end++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        int length = end - start;
+        out[pos] = (byte) (length >> 8);
+        out[pos + 1] = (byte) length;
+        return end;
+    }
+
+    private static int writeInt(byte[] out, int pos, int value) {
+        out[pos] = (byte) (value >> 24);
+        out[pos + 1] = (byte) (value >> 16);
+        out[pos + 2] = (byte) (value >> 8);
+        out[pos + 3] = (byte) value;
+        return pos + 4;
+    }
+
+    private static int writeLong(byte[] out, int pos, long value) {
+        pos = writeInt(out, pos, (int) (value >> 32));
+        return writeInt(out, pos, (int) value);
+    }
+
+    private static final class Reader {
+
+        private final byte[] in;
+        private int pos;
+
+        Reader(byte[] in, int pos) {
+            this.in = in;
+            this.pos = pos;
+        }
+
+        int readInt() {
+            require(4);
+            int value = (in[pos] & 0xFF) << 24
+                    | (in[pos + 1] & 0xFF) << 16
+                    | (in[pos + 2] & 0xFF) << 8
+                    | (in[pos + 3] & 0xFF);
+            pos += 4;
+            return value;
+        }
+
+        long readLong() {
+            long high = readInt();
+            long low = readInt() & 0xFFFFFFFFL;
+            return high << 32 | low;
+        }
+
+        String readString() {
+            require(2);
+            int length = (in[pos] & 0xFF) << 8 | (in[pos + 1] & 0xFF);
+            pos += 2;
+            if (length == NULL_LENGTH) {
+                return null;
+            }
+            require(length);
+            String value = new String(in, pos, length, StandardCharsets.UTF_8);
+            pos += length;
+            return value;
+        }
+
+        private void require(int bytes) {
+            if (pos + bytes > in.length) {
+                throw new IllegalArgumentException("Truncated event: needed " + bytes + " bytes at offset " + pos);
+            }
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.reservationevents;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.converter.AbstractMessageConverter;
+import org.springframework.util.MimeType;
+
+/**
+ * Spring Cloud Stream converter between {@link SagaEvent}s and their
+ * {@link SagaEventCodec binary form}, so that {@code @StreamListener} methods can
+ * take the typed event directly.
+ */
+public class SagaEventMessageConverter extends AbstractMessageConverter {
+
+    public static final String CONTENT_TYPE = "application/x-reservation-event";
+
+    public static final MimeType MIME_TYPE = MimeType.valueOf(CONTENT_TYPE);
+
+    public SagaEventMessageConverter() {
+        super(MIME_TYPE);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return SagaEvent.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    protected Object convertFromInternal(Message<?> message, Class<?> targetClass, Object conversionHint) {
+        Object payload = message.getPayload();
+        if (!(payload instanceof byte[])) {
+            return null;
+        }
+        SagaEvent event = SagaEventCodec.decode((byte[]) payload);
+        return targetClass.isInstance(event) ? event : null;
+    }
+
+    @Override
+    protected Object convertToInternal(Object payload, MessageHeaders headers, Object conversionHint) {
+        return SagaEventCodec.encode((SagaEvent) payload);
+    }
+}
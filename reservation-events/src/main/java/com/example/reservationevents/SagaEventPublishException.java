@@ -0,0 +1,21 @@
+package com.example.reservationevents;
+
+/**
+ * Thrown by {@link SagaEventPublisher#publishAll} when a send fails part way through.
+ */
+public class SagaEventPublishException extends RuntimeException {
+
+    private final int sent;
+
+    public SagaEventPublishException(int sent, Throwable cause) {
+        super("Sent " + sent + " events before a send failed", cause);
+        this.sent = sent;
+    }
+
+    /**
+     * How many events, from the start of the list, were sent before the failure.
+     */
+    public int getSent() {
+        return sent;
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.reservationevents;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.core.DestinationResolver;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Sends {@link SagaEvent}s in their binary form, each to the destination of its
+ * {@link EventType}.
+ */
+public class SagaEventPublisher {
+
+    /**
+     * Header with the time, in epoch milliseconds, the event was handed to the broker.
+     */
+    public static final String SENT_AT = "sagaSentAt";
+
+    /**
+     * Header with {@link SagaEvent#getPartitionKey()}, which the partitioned
+     * bindings route on.
+     */
+    public static final String PARTITION_KEY = "sagaPartitionKey";
+
+    private final DestinationResolver<MessageChannel> destinationResolver;
+
+    private final AtomicReferenceArray<MessageChannel> channels = new AtomicReferenceArray<>(EventType.values().length);
+
+    public SagaEventPublisher(DestinationResolver<MessageChannel> destinationResolver) {
+        this.destinationResolver = destinationResolver;
+    }
+
+    public void publish(SagaEvent event) {
+        channelFor(event.getType()).send(toMessage(event));
+    }
+
+    /**
+     * Sends the events one after another, in order, encoding and routing each
+     * without going back to the caller in between.
+     *
+     * @throws SagaEventPublishException if a send fails; the events before it were sent
+     */
+    public void publishAll(List<? extends SagaEvent> events) {
+        for (int sent = 0; sent < events.size(); sent++) {
+            try {
+                publish(events.get(sent));
+            } catch (RuntimeException e) {
+                throw new SagaEventPublishException(sent, e);
+            }
+        }
+    }
+
+    public static Message<byte[]> toMessage(SagaEvent event) {
+        return MessageBuilder.withPayload(SagaEventCodec.encode(event))
+                .setHeader(MessageHeaders.CONTENT_TYPE, SagaEventMessageConverter.CONTENT_TYPE)
+                .setHeader(SENT_AT, System.currentTimeMillis())
+                .setHeader(PARTITION_KEY, event.getPartitionKey())
+                .build();
+    }
+
+    private MessageChannel channelFor(EventType type) {
+        MessageChannel channel = channels.get(type.ordinal());
+        if (channel == null) {
+            // the resolver registers the channel before binding it, so a concurrent
+            // caller could get it from the resolver before it can send
+            synchronized (this) {
+                channel = channels.get(type.ordinal());
+                if (channel == null) {
+                    channel = destinationResolver.resolveDestination(type.getDestination());
+                    channels.set(type.ordinal(), channel);
+                }
+            }
+        }
+        return channel;
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.reservationevents;
+
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency histograms of the saga, by name, on the actuator /metrics endpoint as
+ * {@code <name>.count}, {@code .mean}, {@code .p50}, {@code .p95}, {@code .p99} and
+ * {@code .max}, in milliseconds.
+ * <p>
+ * Every service records, per input binding, how long its handler took
+ * ({@code saga.handler.<input>}) and how long the event spent between the sender
+ * and the handler, mostly in the broker ({@code saga.dwell.<input>}).
+ */
+public class SagaMetrics implements PublicMetrics {
+
+    private final Map<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+
+    public void record(String name, long duration, TimeUnit unit) {
+        histogram(name).record(duration, unit);
+    }
+
+    public LatencyHistogram histogram(String name) {
+        return histograms.computeIfAbsent(name, key -> new LatencyHistogram());
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        List<Metric<?>> metrics = new ArrayList<>(histograms.size() * 6);
+        histograms.forEach((name, histogram) -> {
+            metrics.add(new Metric<>(name + ".count", histogram.getCount()));
+            metrics.add(new Metric<>(name + ".mean", histogram.getMeanMillis()));
+            metrics.add(new Metric<>(name + ".p50", histogram.getPercentileMillis(0.50)));
+            metrics.add(new Metric<>(name + ".p95", histogram.getPercentileMillis(0.95)));
+            metrics.add(new Metric<>(name + ".p99", histogram.getPercentileMillis(0.99)));
+            metrics.add(new Metric<>(name + ".max", histogram.getMaxMillis()));
+        });
+        return metrics;
+    }
+}
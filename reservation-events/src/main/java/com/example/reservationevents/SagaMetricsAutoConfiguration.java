@@ -0,0 +1,39 @@
+package com.example.reservationevents;
+
+import org.springframework.beans.factory.ListableBeanFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.cloud.stream.binding.Bindable;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.integration.channel.ChannelInterceptorAware;
+
+/**
+ * Registers {@link SagaMetrics} and times every input binding with it.
+ */
+@Configuration
+@ConditionalOnClass(PublicMetrics.class)
+public class SagaMetricsAutoConfiguration {
+
+    @Bean
+    @ConditionalOnMissingBean
+    public SagaMetrics sagaMetrics() {
+        return new SagaMetrics();
+    }
+
+    @Bean
+    public SmartInitializingSingleton sagaStageInstrumentation(ListableBeanFactory beanFactory, SagaMetrics sagaMetrics) {
+        return () -> {
+            for (Bindable bindable : beanFactory.getBeansOfType(Bindable.class).values()) {
+                for (String input : bindable.getInputs()) {
+                    Object channel = beanFactory.getBean(input);
+                    if (channel instanceof ChannelInterceptorAware) {
+                        ((ChannelInterceptorAware) channel).addInterceptor(new SagaStageInterceptor(sagaMetrics, input));
+                    }
+                }
+            }
+        };
+    }
+}
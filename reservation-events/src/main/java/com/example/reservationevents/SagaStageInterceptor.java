@@ -0,0 +1,44 @@
+package com.example.reservationevents;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.support.ChannelInterceptorAdapter;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times the handler of an input binding, which runs on the sending thread, and
+ * the dwell time of each event since {@link SagaEventPublisher#SENT_AT}.
+ */
+class SagaStageInterceptor extends ChannelInterceptorAdapter {
+
+    private final SagaMetrics metrics;
+    private final String handlerMetric;
+    private final String dwellMetric;
+    private final ThreadLocal<Long> handlerStart = new ThreadLocal<>();
+
+    SagaStageInterceptor(SagaMetrics metrics, String input) {
+        this.metrics = metrics;
+        this.handlerMetric = "saga.handler." + input;
+        this.dwellMetric = "saga.dwell." + input;
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        Object sentAt = message.getHeaders().get(SagaEventPublisher.SENT_AT);
+        if (sentAt instanceof Number) {
+            metrics.record(dwellMetric, System.currentTimeMillis() - ((Number) sentAt).longValue(), TimeUnit.MILLISECONDS);
+        }
+        handlerStart.set(System.nanoTime());
+        return message;
+    }
+
+    @Override
+    public void afterSendCompletion(Message<?> message, MessageChannel channel, boolean sent, Exception ex) {
+        Long start = handlerStart.get();
+        if (start != null) {
+            handlerStart.remove();
+            metrics.record(handlerMetric, System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+}
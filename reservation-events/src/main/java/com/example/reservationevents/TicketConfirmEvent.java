@@ -0,0 +1,26 @@
+package com.example.reservationevents;
+
+/**
+ * Booking service tells the ticket service the booking is complete, so the seats held for it are sold.
+ */
+public class TicketConfirmEvent extends ReservationEvent {
+
+    public TicketConfirmEvent() {
+
+    }
+
+    public TicketConfirmEvent(String reservationName, String reservationLocation, int reservationCount, String transactionID) {
+        super(reservationName, reservationLocation, reservationCount, transactionID);
+    }
+
+    @Override
+    public EventType getType() {
+        return EventType.TICKET_CONFIRM;
+    }
+
+    // handled by the lane that holds the location's seats
+    @Override
+    public String getPartitionKey() {
+        return locationKey();
+    }
+}
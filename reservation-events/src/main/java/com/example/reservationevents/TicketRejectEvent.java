@@ -0,0 +1,20 @@
+package com.example.reservationevents;
+
+/**
+ * Ticket service tells the booking service the tickets could not be held.
+ */
+public class TicketRejectEvent extends ReservationEvent {
+
+    public TicketRejectEvent() {
+
+    }
+
+    public TicketRejectEvent(String reservationName, String reservationLocation, int reservationCount, String transactionID) {
+        super(reservationName, reservationLocation, reservationCount, transactionID);
+    }
+
+    @Override
+    public EventType getType() {
+        return EventType.TICKET_REJECT;
+    }
+}
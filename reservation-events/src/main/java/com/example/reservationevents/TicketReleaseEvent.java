@@ -0,0 +1,26 @@
+package com.example.reservationevents;
+
+/**
+ * Gives back the seats held for a transaction that will not be booked.
+ */
+public class TicketReleaseEvent extends ReservationEvent {
+
+    public TicketReleaseEvent() {
+
+    }
+
+    public TicketReleaseEvent(String reservationName, String reservationLocation, int reservationCount, String transactionID) {
+        super(reservationName, reservationLocation, reservationCount, transactionID);
+    }
+
+    @Override
+    public EventType getType() {
+        return EventType.TICKET_RELEASE;
+    }
+
+    // handled by the lane that holds the location's seats
+    @Override
+    public String getPartitionKey() {
+        return locationKey();
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.reservationevents;
+
+/**
+ * Ticket service tells the booking service the tickets are reserved.
+ */
+public class TicketReserveEvent extends ReservationEvent {
+
+    public TicketReserveEvent() {
+
+    }
+
+    public TicketReserveEvent(String reservationName, String reservationLocation, int reservationCount, String transactionID) {
+        super(reservationName, reservationLocation, reservationCount, transactionID);
+    }
+
+    @Override
+    public EventType getType() {
+        return EventType.TICKET_RESERVE;
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.reservationevents;
+
+/**
+ * Gateway writes a location and its ticket count straight into the ticket master data.
+ */
+public class TicketSaveEvent extends SagaEvent {
+
+    private String ticketLocation;
+    private int ticketCounts;
+
+    public TicketSaveEvent() {
+
+    }
+
+    public TicketSaveEvent(String ticketLocation, int ticketCounts) {
+        this.ticketLocation = ticketLocation;
+        this.ticketCounts = ticketCounts;
+    }
+
+    @Override
+    public EventType getType() {
+        return EventType.TICKET_SAVE;
+    }
+
+    @Override
+    public String getPartitionKey() {
+        return ticketLocation != null ? ticketLocation.trim() : "";
+    }
+
+    public String getTicketLocation() {
+        return ticketLocation;
+    }
+
+    public void setTicketLocation(String ticketLocation) {
+        this.ticketLocation = ticketLocation;
+    }
+
+    public int getTicketCounts() {
+        return ticketCounts;
+    }
+
+    public void setTicketCounts(int ticketCounts) {
+        this.ticketCounts = ticketCounts;
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.reservationevents;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The row writes of the units {@link WriteBehind} flushes together. The rows run
+ * in the order they were added, whichever unit added them, once every unit of
+ * the flush has run; consecutive rows of the same statement are sent as one
+ * JDBC batch. A RESERVATION_DELETE handled after the RESERVATION_SAVED of the
+ * same transaction therefore deletes the row the other inserted, even in the
+ * same flush.
+ * <p>
+ * What must wait for the rows to commit, updating a cache or answering a
+ * client, goes to {@link #afterCommit}. Values the unit {@link #stage stages}
+ * are seen by the units after it in the same flush, which cannot read them from
+ * the database or a cache yet.
+ * <p>
+ * {@link EventReplay} writes the rebuilt rows in {@link #grouped} batches, where
+ * every key is written once, so rows of the same statement are sent together
+ * wherever they were added.
+ */
+public final class WriteBatch {
+
+    private final List<Statement> statements = new ArrayList<>();
+    // by SQL, when grouped
+    private final Map<String, Statement> bySql;
+    private final List<Runnable> afterCommit = new ArrayList<>();
+    private final Map<Object, Object> staged = new HashMap<>();
+    private int size;
+
+    WriteBatch() {
+        this.bySql = null;
+    }
+
+    private WriteBatch(Map<String, Statement> bySql) {
+        this.bySql = bySql;
+    }
+
+    /**
+     * A batch that sends all rows of a statement together, in the order the
+     * statements were first added, for rows no two of which touch the same key.
+     */
+    static WriteBatch grouped() {
+        return new WriteBatch(new HashMap<>());
+    }
+
+    public void add(String sql, Object... args) {
+        Statement statement = bySql != null ? bySql.get(sql)
+                : statements.isEmpty() ? null : statements.get(statements.size() - 1);
+        if (statement == null || !statement.sql.equals(sql)) {
+            statement = new Statement(sql);
+            statements.add(statement);
+            if (bySql != null) {
+                bySql.put(sql, statement);
+            }
+        }
+        statement.rows.add(args);
+        size++;
+    }
+
+    /**
+     * Runs the action once the rows of this batch are committed, not at all if
+     * they are not.
+     */
+    public void afterCommit(Runnable action) {
+        afterCommit.add(action);
+    }
+
+    public void stage(Object key, Object value) {
+        staged.put(key, value);
+    }
+
+    /**
+     * The value an earlier unit of this flush staged for the key, or null.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T staged(Object key) {
+        return (T) staged.get(key);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    void execute(JdbcTemplate jdbcTemplate) {
+        for (Statement statement : statements) {
+            jdbcTemplate.batchUpdate(statement.sql, statement.rows);
+        }
+    }
+
+    List<Runnable> getAfterCommit() {
+        return afterCommit;
+    }
+
+    private static final class Statement {
+
+        private final String sql;
+        private final List<Object[]> rows = new ArrayList<>();
+
+        private Statement(String sql) {
+            this.sql = sql;
+        }
+    }
+}
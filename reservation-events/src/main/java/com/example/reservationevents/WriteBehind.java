@@ -0,0 +1,242 @@
+package com.example.reservationevents;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Commits the database work of the saga handlers in batches. A handler
+ * {@link #write writes} a unit of work and waits for it to commit; a flusher runs
+ * the units queued meanwhile together, up to {@code batchSize} of them in one
+ * transaction, and sends the rows they add to their {@link WriteBatch} as JDBC
+ * batches at the end of it. Everything else a unit does, marking its event
+ * processed or adding events to the {@link EventOutbox}, commits with its rows,
+ * and what it leaves {@link WriteBatch#afterCommit after the commit} runs once
+ * they are committed, before the handler returns and its message is
+ * acknowledged.
+ * <p>
+ * The units are spread over {@code lanes} flushers by key (see
+ * {@link KeyAffinity#workerOf}), each with its own queue and
+ * transactions; units with the same key run in the order they were submitted.
+ * A flusher starts on a batch as soon as a unit is queued, and waits at most
+ * {@code maxDelayMillis} for more to fill it. A lane queues at most
+ * {@code queueCapacity} units, beyond which submitting blocks, so a database
+ * that falls behind slows the handlers down rather than filling the heap.
+ * <p>
+ * If a batch fails, its units are run again one transaction each, so that one
+ * bad unit does not take the others with it; a unit that fails on its own fails
+ * its handler, whose message is then redelivered or rejected by the binder.
+ */
+public class WriteBehind implements DisposableBean, PublicMetrics {
+
+    private static final Logger log = LoggerFactory.getLogger(WriteBehind.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final long maxDelayNanos;
+    private final Lane[] lanes;
+    private volatile boolean running = true;
+
+    private final LongAdder written = new LongAdder();
+    private final LongAdder rows = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    public WriteBehind(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager, int lanes,
+                       int batchSize, long maxDelayMillis, int queueCapacity) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = Math.max(1, batchSize);
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+        this.lanes = new Lane[Math.max(1, lanes)];
+        for (int i = 0; i < this.lanes.length; i++) {
+            this.lanes[i] = new Lane("write-behind-" + i, queueCapacity);
+        }
+    }
+
+    /**
+     * Queues the unit on the lane of the key, blocking while its queue is full.
+     * The unit runs on the lane's flusher, in a transaction shared with other
+     * units.
+     *
+     * @return completed once the unit has committed and its after-commit actions
+     * have run, or exceptionally if it failed
+     */
+    public CompletableFuture<Void> submit(String key, Consumer<WriteBatch> unit) throws InterruptedException {
+        if (!running) {
+            throw new IllegalStateException("Write-behind is closed");
+        }
+        Unit queued = new Unit(unit);
+        lanes[KeyAffinity.workerOf(key, lanes.length)].queue.put(queued);
+        return queued.done;
+    }
+
+    /**
+     * Queues the unit and waits until it has committed.
+     *
+     * @throws RuntimeException what the unit or its transaction failed with
+     */
+    public void write(String key, Consumer<WriteBatch> unit) throws InterruptedException {
+        try {
+            submit(key, unit).get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    public int getQueued() {
+        int queued = 0;
+        for (Lane lane : lanes) {
+            queued += lane.queue.size();
+        }
+        return queued;
+    }
+
+    /**
+     * Stops the flushers once they have written the units queued already, waiting
+     * up to ten seconds.
+     */
+    @Override
+    public void destroy() throws InterruptedException {
+        running = false;
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        for (Lane lane : lanes) {
+            lane.flusher.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+        }
+    }
+
+    private void write(List<Unit> units) {
+        WriteBatch committed;
+        try {
+            committed = transactionTemplate.execute(status -> {
+                WriteBatch batch = new WriteBatch();
+                for (Unit unit : units) {
+                    unit.work.accept(batch);
+                }
+                batch.execute(jdbcTemplate);
+                return batch;
+            });
+        } catch (RuntimeException e) {
+            if (units.size() == 1) {
+                failed.increment();
+                log.warn("Could not write a unit of work", e);
+                units.get(0).done.completeExceptionally(e);
+                return;
+            }
+            log.warn("Could not write a batch of {} units of work, writing them one at a time", units.size(), e);
+            for (Unit unit : units) {
+                write(Collections.singletonList(unit));
+            }
+            return;
+        }
+        written.add(units.size());
+        rows.add(committed.size());
+        flushes.increment();
+        for (Runnable action : committed.getAfterCommit()) {
+            try {
+                action.run();
+            } catch (RuntimeException e) {
+                // committed all the same; what the action missed is read from the database
+                log.warn("Could not run an action after a write", e);
+            }
+        }
+        for (Unit unit : units) {
+            unit.done.complete(null);
+        }
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        return Arrays.<Metric<?>>asList(
+                new Metric<>("write-behind.queued", getQueued()),
+                new Metric<>("write-behind.written", written.sum()),
+                new Metric<>("write-behind.rows", rows.sum()),
+                new Metric<>("write-behind.flushes", flushes.sum()),
+                new Metric<>("write-behind.failed", failed.sum()));
+    }
+
+    private static final class Unit {
+
+        private final Consumer<WriteBatch> work;
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        private Unit(Consumer<WriteBatch> work) {
+            this.work = work;
+        }
+    }
+
+    private final class Lane {
+
+        private final BlockingQueue<Unit> queue;
+        private final Thread flusher;
+
+        private Lane(String name, int queueCapacity) {
+            this.queue = new ArrayBlockingQueue<>(queueCapacity);
+            this.flusher = new Thread(this::flush, name);
+            this.flusher.setDaemon(true);
+            this.flusher.start();
+        }
+
+        private void flush() {
+            List<Unit> units = new ArrayList<>(batchSize);
+            while (running || !queue.isEmpty()) {
+                try {
+                    Unit first = queue.poll(100, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    units.add(first);
+                    fill(units);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                write(units);
+                units.clear();
+            }
+        }
+
+        // Adds the units queued meanwhile, waiting for more until the batch is full or the delay is over
+        private void fill(List<Unit> units) throws InterruptedException {
+            long deadline = System.nanoTime() + maxDelayNanos;
+            while (true) {
+                queue.drainTo(units, batchSize - units.size());
+                long remaining = deadline - System.nanoTime();
+                if (units.size() >= batchSize || remaining <= 0) {
+                    return;
+                }
+                Unit next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                if (next == null) {
+                    return;
+                }
+                units.add(next);
+            }
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.reservationevents;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.autoconfigure.AutoConfigureAfter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceTransactionManagerAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.JdbcTemplateAutoConfiguration;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+/**
+ * Registers the {@link WriteBehind} stage in the services that have a database.
+ */
+@Configuration
+@ConditionalOnClass({JdbcTemplate.class, PublicMetrics.class})
+@AutoConfigureAfter({JdbcTemplateAutoConfiguration.class, HibernateJpaAutoConfiguration.class,
+        DataSourceTransactionManagerAutoConfiguration.class})
+public class WriteBehindAutoConfiguration {
+
+    @Bean(destroyMethod = "destroy")
+    @ConditionalOnBean({JdbcTemplate.class, PlatformTransactionManager.class})
+    @ConditionalOnMissingBean
+    public WriteBehind writeBehind(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                   @Value("${reservation.events.workers:1}") int lanes,
+                                   @Value("${reservation.write-behind.batch-size:200}") int batchSize,
+                                   @Value("${reservation.write-behind.max-delay-ms:0}") long maxDelayMillis,
+                                   @Value("${reservation.write-behind.queue-capacity:10000}") int queueCapacity) {
+        return new WriteBehind(jdbcTemplate, transactionManager, lanes, batchSize, maxDelayMillis, queueCapacity);
+    }
+}
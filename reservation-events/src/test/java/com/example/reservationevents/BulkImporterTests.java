@@ -0,0 +1,113 @@
+package com.example.reservationevents;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BulkImporterTests {
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	private final EmbeddedDatabase database = new EmbeddedDatabaseBuilder().setType(EmbeddedDatabaseType.H2).generateUniqueName(true).build();
+	private final JdbcTemplate jdbcTemplate = new JdbcTemplate(database);
+	private final BulkImporter importer = new BulkImporter(jdbcTemplate, new DataSourceTransactionManager(database), 2,
+			"hibernate_sequence", 1);
+
+	private final ImportTable reservations = new ImportTable("reservation")
+			.column("reservationName", "reservation_name")
+			.column("reservationLocation", "reservation_location")
+			.column("reservationCount", "reservation_count")
+			.column("reservationTransactionID", "reservation_transactionid", () -> "generated");
+
+	public BulkImporterTests() {
+		jdbcTemplate.execute("create sequence hibernate_sequence start with 1 increment by 1");
+		jdbcTemplate.execute("create table reservation (id bigint not null, reservation_count integer not null, "
+				+ "reservation_location varchar(255), reservation_name varchar(255), "
+				+ "reservation_transactionid varchar(255), primary key (id))");
+	}
+
+	@After
+	public void shutdown() {
+		importer.close();
+		database.shutdown();
+	}
+
+	@Test
+	public void importsCsvInBatchesWithPooledIds() throws Exception {
+		Path file = folder.newFile("reservations.csv").toPath();
+		Files.write(file, Arrays.asList(
+				"reservationName,reservationLocation,reservationCount,reservationTransactionID",
+				"\"Sharma, Amit\",Pune,2,t1",
+				"Ashish,\"Delhi \"\"Central\"\"\",1,",
+				"",
+				"Amar,Agra,3,t3"), StandardCharsets.UTF_8);
+
+		ImportReport report = importer.load(file, reservations);
+
+		assertThat(report.getRows()).isEqualTo(3);
+		assertThat(report.getFirstId()).isEqualTo(1);
+		assertThat(report.getLastId()).isEqualTo(3);
+		assertThat(jdbcTemplate.queryForList("select reservation_name from reservation order by id", String.class))
+				.containsExactly("Sharma, Amit", "Ashish", "Amar");
+		assertThat(jdbcTemplate.queryForObject("select reservation_location from reservation where id = 2", String.class))
+				.isEqualTo("Delhi \"Central\"");
+		assertThat(jdbcTemplate.queryForObject("select sum(reservation_count) from reservation", Integer.class))
+				.isEqualTo(6);
+		assertThat(importer.health().getStatus()).isEqualTo(Status.UP);
+	}
+
+	@Test
+	public void importsNdjsonInTheBackground() throws Exception {
+		Path file = folder.newFile("reservations.ndjson").toPath();
+		Files.write(file, Arrays.asList(
+				"{\"reservationName\":\"Ashish\",\"reservationLocation\":\"Pune\",\"reservationCount\":2}",
+				"{\"reservationName\":\"Amit\",\"reservationLocation\":\"Agra\",\"reservationCount\":1,\"reservationTransactionID\":\"t2\"}"),
+				StandardCharsets.UTF_8);
+
+		ImportReport report = importer.submit(file, reservations).get(10, TimeUnit.SECONDS);
+
+		assertThat(report.getRows()).isEqualTo(2);
+		assertThat(jdbcTemplate.queryForList("select reservation_transactionid from reservation order by id", String.class))
+				.containsExactly("generated", "t2");
+		assertThat(importer.health().getDetails()).containsKey("reservation");
+	}
+
+	@Test
+	public void leavesIdsToAnIdentityColumnWithoutASequence() throws Exception {
+		jdbcTemplate.execute("create table ticket (id bigint generated by default as identity, "
+				+ "ticket_location varchar(255), ticket_counts integer not null, primary key (id))");
+		jdbcTemplate.update("insert into ticket (ticket_location, ticket_counts) values ('Agra', 5)");
+		Path file = folder.newFile("tickets.csv").toPath();
+		Files.write(file, Arrays.asList("ticketLocation,ticketCounts", "Pune,10", "Delhi,20", "Goa,30"),
+				StandardCharsets.UTF_8);
+		BulkImporter identityImporter = new BulkImporter(jdbcTemplate, new DataSourceTransactionManager(database), 2, "", 1);
+
+		ImportReport report = identityImporter.load(file, new ImportTable("ticket")
+				.column("ticketLocation", "ticket_location")
+				.column("ticketCounts", "ticket_counts"));
+		identityImporter.close();
+
+		assertThat(report.getRows()).isEqualTo(3);
+		assertThat(report.getFirstId()).isEqualTo(2);
+		assertThat(report.getLastId()).isEqualTo(4);
+		assertThat(jdbcTemplate.queryForList("select ticket_location from ticket where id between 2 and 4 order by id",
+				String.class)).containsExactly("Pune", "Delhi", "Goa");
+	}
+
+}
@@ -0,0 +1,43 @@
+package com.example.reservationevents;
+
+import org.junit.Test;
+import org.springframework.cloud.stream.config.BindingProperties;
+import org.springframework.cloud.stream.config.BindingServiceProperties;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class EventPartitioningTests {
+
+	@Test
+	public void everyKeyHasOneWorker() {
+		Set<Integer> workers = new HashSet<>();
+		for (String location : new String[]{"Delhi", "Mumbai", "Pune", "Agra", "Bengaluru", "Chennai"}) {
+			int worker = KeyAffinity.workerOf(location, 4);
+			assertThat(worker).isBetween(0, 3).isEqualTo(KeyAffinity.workerOf(location, 4));
+			assertThat(KeyAffinity.workerOf(location, 1)).isZero();
+			workers.add(worker);
+		}
+		// and the keys are spread
+		assertThat(workers.size()).isGreaterThan(1);
+	}
+
+	@Test
+	public void groupedInputsAndEveryDestinationArePartitioned() {
+		BindingServiceProperties properties = new BindingServiceProperties();
+		BindingProperties savedReservations = new BindingProperties();
+		savedReservations.setGroup("ticket-service");
+		properties.getBindings().put("savedReservations", savedReservations);
+		properties.getBindings().put("bookingUpdates", new BindingProperties());
+
+		EventPartitioningAutoConfiguration.partition(properties, 4);
+
+		assertThat(properties.getConsumerProperties("savedReservations").isPartitioned()).isTrue();
+		assertThat(properties.getConsumerProperties("bookingUpdates").isPartitioned()).isFalse();
+		assertThat(properties.getProducerProperties(EventType.RESERVATION_SAVED.getDestination()).getPartitionCount())
+				.isEqualTo(4);
+		assertThat(properties.getInstanceCount()).isEqualTo(4);
+	}
+}
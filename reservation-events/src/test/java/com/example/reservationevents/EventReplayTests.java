@@ -0,0 +1,99 @@
+package com.example.reservationevents;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class EventReplayTests {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final EmbeddedDatabase database = new EmbeddedDatabaseBuilder().setType(EmbeddedDatabaseType.H2).generateUniqueName(true).build();
+	private final JdbcTemplate jdbcTemplate = new JdbcTemplate(database);
+
+	@After
+	public void shutdown() {
+		database.shutdown();
+	}
+
+	@Test
+	public void foldsTheEventsOfEachKeyInJournalOrderDroppingRedeliveries() throws Exception {
+		EventJournal journal = new EventJournal(folder.getRoot().getPath(), 4096);
+		for (int i = 0; i < 1000; i++) {
+			journal.append(new ReservationSaveEvent("Amit", "L" + (i % 10), 1, "t" + i));
+		}
+		// redelivered
+		journal.append(new ReservationSaveEvent("Amit", "L3", 1, "t3"));
+		journal.append(new TicketSaveEvent("L3", 7));
+
+		Map<String, String> states = replay(journal).fold(new SeatsByLocation());
+
+		assertThat(states).hasSize(10);
+		assertThat(states.get("L0")).isEqualTo("100");
+		// the save comes last, whatever the worker of L3
+		assertThat(states.get("L3")).isEqualTo("100=7");
+	}
+
+	@Test
+	public void writesTheStateOfEveryKey() throws Exception {
+		jdbcTemplate.execute("create table seats (location varchar(64) not null primary key, state varchar(64))");
+		jdbcTemplate.update("insert into seats values ('L1', 'stale'), ('Other', 'untouched')");
+		EventJournal journal = new EventJournal(folder.getRoot().getPath(), 1 << 16);
+		journal.append(new ReservationSaveEvent("Amit", "L1", 2, "t1"));
+		journal.append(new ReservationSaveEvent("Amar", "L2", 3, "t2"));
+		journal.append(new ReservationSaveEvent("Amar", "L2", 3, "t2"));
+		journal.close();
+
+		ReplayReport report = replay(new EventJournal(folder.getRoot().getPath(), 1 << 16)).replay(new SeatsByLocation());
+
+		assertThat(report.getEvents()).isEqualTo(3);
+		assertThat(report.getDuplicates()).isEqualTo(1);
+		assertThat(report.getKeys()).isEqualTo(2);
+		assertThat(jdbcTemplate.queryForList("select location || ':' || state from seats order by location", String.class))
+				.containsExactly("L1:2", "L2:3", "Other:untouched");
+	}
+
+	private EventReplay replay(EventJournal journal) {
+		return new EventReplay(journal, jdbcTemplate, new DataSourceTransactionManager(database), 4, 1);
+	}
+
+	// Seats reserved per location, then "=count" once the location is saved
+	private static class SeatsByLocation implements ReplayTarget<String> {
+
+		@Override
+		public String getName() {
+			return "seats";
+		}
+
+		@Override
+		public String keyOf(SagaEvent event) {
+			return event.getPartitionKey();
+		}
+
+		@Override
+		public String apply(String state, SagaEvent event) {
+			if (event instanceof TicketSaveEvent) {
+				return state + "=" + ((TicketSaveEvent) event).getTicketCounts();
+			}
+			int seats = ((ReservationEvent) event).getReservationCount();
+			return String.valueOf(state == null ? seats : Integer.parseInt(state) + seats);
+		}
+
+		@Override
+		public void write(String key, String state, WriteBatch batch) {
+			batch.add("delete from seats where location = ?", key);
+			batch.add("insert into seats (location, state) values (?, ?)", key, state);
+		}
+	}
+}
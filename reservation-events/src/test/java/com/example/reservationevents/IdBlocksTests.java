@@ -0,0 +1,61 @@
+package com.example.reservationevents;
+
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class IdBlocksTests {
+
+	private final EmbeddedDatabase database = new EmbeddedDatabaseBuilder().setType(EmbeddedDatabaseType.H2).generateUniqueName(true).build();
+	private final JdbcTemplate jdbcTemplate = new JdbcTemplate(database);
+
+	public IdBlocksTests() {
+		// as Hibernate creates the sequence of a @SequenceGenerator
+		jdbcTemplate.execute("create sequence booking_ids start with 1 increment by 1");
+	}
+
+	@After
+	public void shutdown() {
+		database.shutdown();
+	}
+
+	@Test
+	public void handsOutABlockPerSequenceValue() {
+		IdBlocks ids = new IdBlocks(jdbcTemplate, "booking_ids", 50);
+
+		assertThat(ids.next()).isEqualTo(50);
+		for (int i = 51; i < 100; i++) {
+			assertThat(ids.next()).isEqualTo(i);
+		}
+		assertThat(ids.next()).isEqualTo(100);
+		assertThat(jdbcTemplate.queryForObject("select next value for booking_ids", Long.class)).isEqualTo(3);
+	}
+
+	@Test
+	public void instancesSharingASequenceNeverTakeTheSameId() {
+		IdBlocks one = new IdBlocks(jdbcTemplate, "booking_ids", 50);
+		IdBlocks other = new IdBlocks(jdbcTemplate, "booking_ids", 50);
+		Set<Long> taken = new HashSet<>();
+
+		for (long id : one.next(120)) {
+			assertThat(taken.add(id)).isTrue();
+		}
+		for (int i = 0; i < 75; i++) {
+			assertThat(taken.add(other.next())).isTrue();
+		}
+		for (long id : one.next(40)) {
+			assertThat(taken.add(id)).isTrue();
+		}
+
+		assertThat(taken).hasSize(235);
+	}
+
+}
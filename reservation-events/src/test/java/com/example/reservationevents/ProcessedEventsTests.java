@@ -0,0 +1,88 @@
+package com.example.reservationevents;
+
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ProcessedEventsTests {
+
+	private final EmbeddedDatabase database = new EmbeddedDatabaseBuilder().setType(EmbeddedDatabaseType.H2).generateUniqueName(true).build();
+	private final JdbcTemplate jdbcTemplate = new JdbcTemplate(database);
+	private final ProcessedEvents processedEvents = new ProcessedEvents(jdbcTemplate, 2, 60000, 100, 60000);
+
+	@After
+	public void shutdown() {
+		database.shutdown();
+	}
+
+	@Test
+	public void dropsRedeliveriesOfTheSameTypeAndTransaction() {
+		assertThat(processedEvents.markProcessed(new ReservationSaveEvent("Ashish", "Pune", 2, "t1"))).isTrue();
+		assertThat(processedEvents.markProcessed(new ReservationSaveEvent("Ashish", "Pune", 2, "t1"))).isFalse();
+		assertThat(processedEvents.markProcessed(new ReservationSavedEvent("Ashish", "Pune", 2, "t1"))).isTrue();
+		assertThat(processedEvents.markProcessed(new ReservationMasterSaveEvent("Ashish", "Pune", 2, null))).isTrue();
+		assertThat(processedEvents.markProcessed(new ReservationMasterSaveEvent("Ashish", "Pune", 2, null))).isTrue();
+		assertThat(processedEvents.getDuplicates()).isEqualTo(1);
+	}
+
+	@Test
+	public void remembersAcrossRestartsThroughTheTable() {
+		processedEvents.markProcessed(new ReservationSaveEvent("Ashish", "Pune", 2, "t1"));
+
+		ProcessedEvents restarted = new ProcessedEvents(jdbcTemplate, 2, 60000, 100, 60000);
+		assertThat(restarted.markProcessed(new ReservationSaveEvent("Ashish", "Pune", 2, "t1"))).isFalse();
+	}
+
+	@Test
+	public void forgetsEventsOfRolledBackTransactions() {
+		TransactionTemplate transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(database));
+		transactionTemplate.execute(status -> {
+			assertThat(processedEvents.markProcessed(new ReservationSaveEvent("Ashish", "Pune", 2, "t1"))).isTrue();
+			status.setRollbackOnly();
+			return null;
+		});
+
+		assertThat(processedEvents.markProcessed(new ReservationSaveEvent("Ashish", "Pune", 2, "t1"))).isTrue();
+	}
+
+	@Test
+	public void aRedeliveryLeavesTheTransactionItSharesUsable() {
+		processedEvents.markProcessed(new ReservationSaveEvent("Ashish", "Pune", 2, "t1"));
+		ProcessedEvents restarted = new ProcessedEvents(jdbcTemplate, 2, 60000, 100, 60000);
+		TransactionTemplate transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(database));
+
+		transactionTemplate.execute(status -> {
+			assertThat(restarted.markProcessed(new ReservationSaveEvent("Ashish", "Pune", 2, "t1"))).isFalse();
+			assertThat(restarted.markProcessed(new ReservationSaveEvent("Amit", "Agra", 1, "t2"))).isTrue();
+			return null;
+		});
+
+		assertThat(jdbcTemplate.queryForObject("select count(*) from processed_event", Integer.class)).isEqualTo(2);
+	}
+
+	@Test
+	public void recentKeysAgeOutBucketByBucket() {
+		AtomicLong now = new AtomicLong();
+		RecentKeys recent = new RecentKeys(2, 1000, 100, now::get);
+		recent.add("a");
+		now.set(1000);
+		recent.add("b");
+		assertThat(recent.contains("a")).isTrue();
+
+		now.set(2000);
+		recent.add("c");
+		assertThat(recent.contains("a")).isFalse();
+		assertThat(recent.contains("b")).isTrue();
+		assertThat(recent.contains("c")).isTrue();
+	}
+
+}
@@ -0,0 +1,86 @@
+package com.example.reservationevents;
+
+import org.junit.Test;
+import org.springframework.messaging.Message;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class SagaEventCodecTests {
+
+	@Test
+	public void reservationEventRoundTrips() {
+		DoBookingEvent event = new DoBookingEvent("Sharma, Amit", "Mumbai", 3, "tx-1");
+
+		SagaEvent decoded = SagaEventCodec.decode(SagaEventCodec.encode(event));
+
+		assertThat(decoded).isInstanceOf(DoBookingEvent.class);
+		DoBookingEvent booking = (DoBookingEvent) decoded;
+		assertThat(booking.getReservationName()).isEqualTo("Sharma, Amit");
+		assertThat(booking.getReservationLocation()).isEqualTo("Mumbai");
+		assertThat(booking.getReservationCount()).isEqualTo(3);
+		assertThat(booking.getTransactionID()).isEqualTo("tx-1");
+		assertThat(booking.getTimestamp()).isEqualTo(event.getTimestamp());
+	}
+
+	@Test
+	public void ticketEventRoundTripsWithoutTransaction() {
+		TicketSaveEvent decoded = (TicketSaveEvent) SagaEventCodec.decode(
+				SagaEventCodec.encode(new TicketSaveEvent("Bengaluru ಬೆಂಗಳೂರು 🚆", 450)));
+
+		assertThat(decoded.getTicketLocation()).isEqualTo("Bengaluru ಬೆಂಗಳೂರು 🚆");
+		assertThat(decoded.getTicketCounts()).isEqualTo(450);
+		assertThat(decoded.getTransactionID()).isNull();
+	}
+
+	@Test
+	public void loneSurrogatesRoundTripAsQuestionMarks() {
+		// halves of 🚆 apart, as a name cut short can leave them, and a whole one
+		TicketSaveEvent decoded = (TicketSaveEvent) SagaEventCodec.decode(
+				SagaEventCodec.encode(new TicketSaveEvent("Pune \uD83D \uDE86x\uD83D\uDE86", 450)));
+
+		assertThat(decoded.getTicketLocation()).isEqualTo("Pune ? ?x🚆");
+		assertThat(decoded.getTicketCounts()).isEqualTo(450);
+	}
+
+	@Test
+	public void inventoryEventRoundTrips() {
+		InventoryEvent decoded = (InventoryEvent) SagaEventCodec.decode(
+				SagaEventCodec.encode(new InventoryEvent("Pune", 17)));
+
+		assertThat(decoded.getTicketLocation()).isEqualTo("Pune");
+		assertThat(decoded.getAvailableTickets()).isEqualTo(17);
+	}
+
+	@Test
+	public void everyTypeDecodesToItsOwnClass() {
+		for (EventType type : EventType.values()) {
+			if (type == EventType.TICKET_SAVE || type == EventType.INVENTORY) {
+				continue;
+			}
+			byte[] encoded = SagaEventCodec.encode(new ReservationSaveEvent("a", "b", 1, "t"));
+			encoded[1] = type.getCode();
+			assertThat(SagaEventCodec.decode(encoded).getType()).isEqualTo(type);
+			assertThat(SagaEventCodec.peekType(encoded)).isEqualTo(type);
+		}
+	}
+
+	@Test
+	public void truncatedPayloadIsRejected() {
+		byte[] encoded = SagaEventCodec.encode(new ReservationSavedEvent("Ashish", "Delhi", 2, "tx-2"));
+		byte[] truncated = new byte[encoded.length - 3];
+		System.arraycopy(encoded, 0, truncated, 0, truncated.length);
+
+		assertThatThrownBy(() -> SagaEventCodec.decode(truncated)).isInstanceOf(IllegalArgumentException.class);
+	}
+
+	@Test
+	public void converterDecodesOnlyTheRequestedType() {
+		SagaEventMessageConverter converter = new SagaEventMessageConverter();
+		Message<byte[]> message = SagaEventPublisher.toMessage(new TicketReserveEvent("Ashish", "Delhi", 2, "tx-3"));
+
+		assertThat(converter.fromMessage(message, SagaEvent.class)).isInstanceOf(TicketReserveEvent.class);
+		assertThat(converter.fromMessage(message, TicketSaveEvent.class)).isNull();
+	}
+
+}
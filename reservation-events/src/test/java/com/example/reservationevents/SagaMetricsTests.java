@@ -0,0 +1,44 @@
+package com.example.reservationevents;
+
+import org.junit.Test;
+import org.springframework.boot.actuate.metrics.Metric;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SagaMetricsTests {
+
+	@Test
+	public void percentilesFallInTheirBuckets() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (int i = 0; i < 90; i++) {
+			histogram.record(2, TimeUnit.MILLISECONDS);
+		}
+		for (int i = 0; i < 10; i++) {
+			histogram.record(400, TimeUnit.MILLISECONDS);
+		}
+
+		assertThat(histogram.getCount()).isEqualTo(100);
+		assertThat(histogram.getPercentileMillis(0.50)).isEqualTo(2.5);
+		assertThat(histogram.getPercentileMillis(0.95)).isEqualTo(400.0);
+		assertThat(histogram.getMaxMillis()).isEqualTo(400.0);
+		assertThat(histogram.getMeanMillis()).isEqualTo(41.8);
+	}
+
+	@Test
+	public void metricsAreNamedAfterTheHistogram() {
+		SagaMetrics metrics = new SagaMetrics();
+		metrics.record("saga.end-to-end", 30, TimeUnit.MILLISECONDS);
+
+		Map<String, Number> byName = metrics.metrics().stream()
+				.collect(Collectors.toMap(Metric::getName, Metric::getValue));
+
+		assertThat(byName).containsKeys("saga.end-to-end.count", "saga.end-to-end.mean", "saga.end-to-end.p50",
+				"saga.end-to-end.p95", "saga.end-to-end.p99", "saga.end-to-end.max");
+		assertThat(byName.get("saga.end-to-end.count")).isEqualTo(1L);
+		assertThat(byName.get("saga.end-to-end.p99")).isEqualTo(30.0);
+	}
+}
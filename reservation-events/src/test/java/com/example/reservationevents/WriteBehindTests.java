@@ -0,0 +1,131 @@
+package com.example.reservationevents;
+
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class WriteBehindTests {
+
+	private static final String INSERT = "insert into booking (id, booking_name) values (?, ?)";
+	private static final String DELETE = "delete from booking where id = ?";
+
+	private final EmbeddedDatabase database = new EmbeddedDatabaseBuilder().setType(EmbeddedDatabaseType.H2).generateUniqueName(true).build();
+	private final JdbcTemplate jdbcTemplate = new JdbcTemplate(database);
+	private final WriteBehind writeBehind = new WriteBehind(jdbcTemplate, new DataSourceTransactionManager(database),
+			1, 100, 50, 1000);
+
+	public WriteBehindTests() {
+		jdbcTemplate.execute("create table booking (id bigint not null, booking_name varchar(255) not null, primary key (id))");
+	}
+
+	@After
+	public void shutdown() throws InterruptedException {
+		writeBehind.destroy();
+		database.shutdown();
+	}
+
+	@Test
+	public void writesTheUnitsQueuedTogetherInOneFlush() throws Exception {
+		CountDownLatch flushing = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		writeBehind.submit("Pune", batch -> {
+			flushing.countDown();
+			await(release);
+			batch.add(INSERT, 1, "Ashish");
+		});
+		assertThat(flushing.await(5, TimeUnit.SECONDS)).isTrue();
+		for (int i = 2; i <= 11; i++) {
+			long id = i;
+			writeBehind.submit("Pune", batch -> batch.add(INSERT, id, "Amit"));
+		}
+		release.countDown();
+
+		writeBehind.destroy();
+
+		assertThat(jdbcTemplate.queryForObject("select count(*) from booking", Integer.class)).isEqualTo(11);
+		assertThat(metric("write-behind.written")).isEqualTo(11L);
+		assertThat(metric("write-behind.flushes")).isEqualTo(2L);
+	}
+
+	@Test
+	public void aFailingUnitDoesNotTakeTheRestOfItsBatchWithIt() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		writeBehind.submit("Pune", batch -> await(release));
+		CompletableFuture<Void> first = writeBehind.submit("Pune", batch -> batch.add(INSERT, 1, "Ashish"));
+		CompletableFuture<Void> failing = writeBehind.submit("Pune", batch -> batch.add(INSERT, 2, null));
+		CompletableFuture<Void> last = writeBehind.submit("Pune", batch -> batch.add(INSERT, 3, "Amar"));
+		release.countDown();
+
+		writeBehind.destroy();
+
+		assertThat(jdbcTemplate.queryForList("select booking_name from booking order by id", String.class))
+				.containsExactly("Ashish", "Amar");
+		assertThat(metric("write-behind.failed")).isEqualTo(1L);
+		assertThat(first.isDone() && !first.isCompletedExceptionally()).isTrue();
+		assertThat(failing.isCompletedExceptionally()).isTrue();
+		assertThat(last.isDone() && !last.isCompletedExceptionally()).isTrue();
+	}
+
+	@Test
+	public void runsTheRowsOfAFlushInTheOrderTheyWereAdded() throws Exception {
+		jdbcTemplate.update(INSERT, 9, "Amit");
+		CountDownLatch release = new CountDownLatch(1);
+		writeBehind.submit("Pune", batch -> await(release));
+		writeBehind.submit("Pune", batch -> batch.add(DELETE, 9));
+		writeBehind.submit("Pune", batch -> batch.add(INSERT, 1, "Ashish"));
+		// the reservation deleted in the flush that inserts it
+		writeBehind.submit("Pune", batch -> batch.add(DELETE, 1));
+		writeBehind.submit("Pune", batch -> batch.add(INSERT, 2, "Amar"));
+		release.countDown();
+
+		writeBehind.destroy();
+
+		assertThat(jdbcTemplate.queryForList("select booking_name from booking order by id", String.class))
+				.containsExactly("Amar");
+		assertThat(metric("write-behind.flushes")).isEqualTo(1L);
+	}
+
+	@Test
+	public void returnsFromAWriteOnceItIsCommittedAndItsActionsHaveRun() throws Exception {
+		AtomicInteger committed = new AtomicInteger();
+		writeBehind.write("Pune", batch -> {
+			batch.add(INSERT, 1, "Ashish");
+			batch.afterCommit(() -> committed.set(
+					jdbcTemplate.queryForObject("select count(*) from booking", Integer.class)));
+		});
+		assertThat(committed.get()).isEqualTo(1);
+
+		assertThatThrownBy(() -> writeBehind.write("Pune", batch -> {
+			batch.add(INSERT, 2, null);
+			batch.afterCommit(() -> committed.set(-1));
+		})).isInstanceOf(DataIntegrityViolationException.class);
+		assertThat(committed.get()).isEqualTo(1);
+	}
+
+	private Object metric(String name) {
+		return writeBehind.metrics().stream().filter(metric -> metric.getName().equals(name))
+				.findFirst().get().getValue();
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
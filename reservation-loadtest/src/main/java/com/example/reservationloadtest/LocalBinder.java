@@ -0,0 +1,60 @@
+package com.example.reservationloadtest;
+
+import org.springframework.cloud.stream.binder.Binder;
+import org.springframework.cloud.stream.binder.Binding;
+import org.springframework.cloud.stream.binder.ConsumerProperties;
+import org.springframework.cloud.stream.binder.DefaultBinding;
+import org.springframework.cloud.stream.binder.ProducerProperties;
+import org.springframework.context.Lifecycle;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.SubscribableChannel;
+import org.springframework.util.StringUtils;
+
+/**
+ * Binds the channels of a service to the {@link LocalBroker} it shares with the
+ * other services of the load test.
+ */
+class LocalBinder implements Binder<MessageChannel, ConsumerProperties, ProducerProperties> {
+
+    private final LocalBroker broker;
+
+    LocalBinder(LocalBroker broker) {
+        this.broker = broker;
+    }
+
+    @Override
+    public Binding<MessageChannel> bindConsumer(String name, String group, MessageChannel inputChannel,
+                                                ConsumerProperties consumerProperties) {
+        LocalBroker.Subscription subscription = broker.subscribe(name, StringUtils.hasText(group) ? group : null,
+                inputChannel::send);
+        return new DefaultBinding<>(name, group, inputChannel, subscription);
+    }
+
+    @Override
+    public Binding<MessageChannel> bindProducer(String name, MessageChannel outboundBindTarget,
+                                                ProducerProperties producerProperties) {
+        SubscribableChannel outputChannel = (SubscribableChannel) outboundBindTarget;
+        MessageHandler handler = message -> broker.send(name, message);
+        outputChannel.subscribe(handler);
+        return new DefaultBinding<>(name, null, outboundBindTarget, new Lifecycle() {
+
+            private volatile boolean running = true;
+
+            @Override
+            public void start() {
+            }
+
+            @Override
+            public void stop() {
+                outputChannel.unsubscribe(handler);
+                running = false;
+            }
+
+            @Override
+            public boolean isRunning() {
+                return running;
+            }
+        });
+    }
+}
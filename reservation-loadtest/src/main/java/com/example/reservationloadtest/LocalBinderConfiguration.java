@@ -0,0 +1,18 @@
+package com.example.reservationloadtest;
+
+import org.springframework.cloud.stream.binder.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * The "local" binder. The load test registers the shared {@link LocalBroker} in
+ * each service context, which is the parent of the binder's context.
+ */
+@Configuration
+public class LocalBinderConfiguration {
+
+    @Bean
+    public Binder<?, ?, ?> localBinder(LocalBroker broker) {
+        return new LocalBinder(broker);
+    }
+}
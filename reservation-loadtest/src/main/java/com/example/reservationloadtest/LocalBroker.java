@@ -0,0 +1,126 @@
+package com.example.reservationloadtest;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.Lifecycle;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHandler;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A message broker in memory, with the delivery rules the services rely on from
+ * RabbitMQ: every group bound to a destination gets each message once, the
+ * consumers of a group compete for its messages, a group keeps its messages
+ * until a consumer takes them, and a consumer without a group gets a group of
+ * its own. Each consumer handles its messages one at a time on its own thread.
+ */
+class LocalBroker {
+
+    private static final Logger log = LoggerFactory.getLogger(LocalBroker.class);
+
+    private final Map<String, Map<String, BlockingQueue<Message<?>>>> destinations = new ConcurrentHashMap<>();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder failedDeliveries = new LongAdder();
+
+    public void send(String destination, Message<?> message) {
+        sent.increment();
+        for (BlockingQueue<Message<?>> group : groups(destination).values()) {
+            group.add(message);
+        }
+    }
+
+    /**
+     * Starts a consumer of the destination in the group, or in a group of its own
+     * if the group is null. The consumer stops when the subscription is stopped.
+     */
+    public Subscription subscribe(String destination, String group, MessageHandler handler) {
+        boolean anonymous = group == null;
+        String name = anonymous ? "anonymous." + UUID.randomUUID() : group;
+        BlockingQueue<Message<?>> queue = groups(destination).computeIfAbsent(name, key -> new LinkedBlockingQueue<>());
+        Subscription subscription = new Subscription(destination + "." + name, queue, handler,
+                () -> {
+                    if (anonymous) {
+                        groups(destination).remove(name);
+                    }
+                });
+        subscription.start();
+        return subscription;
+    }
+
+    public long getSent() {
+        return sent.sum();
+    }
+
+    /**
+     * Messages whose handler threw; they are not redelivered.
+     */
+    public long getFailedDeliveries() {
+        return failedDeliveries.sum();
+    }
+
+    private Map<String, BlockingQueue<Message<?>>> groups(String destination) {
+        return destinations.computeIfAbsent(destination, key -> new ConcurrentHashMap<>());
+    }
+
+    class Subscription implements Lifecycle {
+
+        private final String name;
+        private final BlockingQueue<Message<?>> queue;
+        private final MessageHandler handler;
+        private final Runnable stopped;
+        private volatile Thread consumer;
+
+        Subscription(String name, BlockingQueue<Message<?>> queue, MessageHandler handler, Runnable stopped) {
+            this.name = name;
+            this.queue = queue;
+            this.handler = handler;
+            this.stopped = stopped;
+        }
+
+        @Override
+        public synchronized void start() {
+            if (consumer == null) {
+                consumer = new Thread(this::consume, name);
+                consumer.setDaemon(true);
+                consumer.start();
+            }
+        }
+
+        @Override
+        public synchronized void stop() {
+            if (consumer != null) {
+                consumer.interrupt();
+                consumer = null;
+                stopped.run();
+            }
+        }
+
+        @Override
+        public boolean isRunning() {
+            return consumer != null;
+        }
+
+        private void consume() {
+            while (!Thread.currentThread().isInterrupted()) {
+                Message<?> message;
+                try {
+                    message = queue.take();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                try {
+                    handler.handleMessage(message);
+                } catch (RuntimeException e) {
+                    failedDeliveries.increment();
+                    log.warn("Could not deliver a message to {}", name, e);
+                }
+            }
+        }
+    }
+}
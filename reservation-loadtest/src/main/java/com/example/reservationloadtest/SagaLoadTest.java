@@ -0,0 +1,199 @@
+package com.example.reservationloadtest;
+
+import com.example.bookingservice.BookingServiceApplication;
+import com.example.reservationevents.DoBookingEvent;
+import com.example.reservationevents.EventType;
+import com.example.reservationevents.LatencyHistogram;
+import com.example.reservationevents.SagaEvent;
+import com.example.reservationevents.SagaEventCodec;
+import com.example.reservationevents.SagaEventPublisher;
+import com.example.reservationevents.SagaMetrics;
+import com.example.reservationservice.ReservationServiceApplication;
+import com.example.ticketservice.TicketServiceApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.messaging.Message;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs the booking saga under a steady load, on a laptop: the Booking, Reservation
+ * and Ticket Services start in this JVM, each with its own H2 database, and
+ * exchange their events through a {@link LocalBroker} instead of RabbitMQ. Eureka
+ * and the config server are not used; the services read configdir directly.
+ * <p>
+ * DOBOOKING events are sent at {@code loadtest.rate} per second for
+ * {@code loadtest.duration-s} seconds, spread over the seeded ticket locations.
+ * The test then waits up to {@code loadtest.drain-s} seconds for the sagas to
+ * finish and reports the bookings completed per second, the saga latency
+ * percentiles the Booking Service recorded, the events lost on the way (bookings
+ * still PENDING) and the tickets sold beyond a location's count. It exits with
+ * status 1 if any event was lost or any ticket oversold.
+ */
+public class SagaLoadTest {
+
+    private final LocalBroker broker;
+    private final JdbcTemplate ticketDatabase;
+    private final JdbcTemplate bookingDatabase;
+    private final SagaMetrics bookingMetrics;
+
+    private final Set<String> outstanding = ConcurrentHashMap.newKeySet();
+    private final AtomicLong lastCompletion = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    public static void main(String[] args) {
+        String configDir = System.getProperty("loadtest.config-dir", "configdir");
+        int rate = Integer.getInteger("loadtest.rate", 200);
+        int durationSeconds = Integer.getInteger("loadtest.duration-s", 30);
+        int drainSeconds = Integer.getInteger("loadtest.drain-s", 30);
+        int seats = Integer.getInteger("loadtest.seats", 1);
+
+        LocalBroker broker = new LocalBroker();
+        List<ConfigurableApplicationContext> services = new ArrayList<>();
+        boolean failed;
+        try {
+            ConfigurableApplicationContext tickets = start(TicketServiceApplication.class, "ticket-service",
+                    configDir, broker);
+            services.add(tickets);
+            services.add(start(ReservationServiceApplication.class, "reservation-service", configDir, broker));
+            ConfigurableApplicationContext bookings = start(BookingServiceApplication.class, "booking-service",
+                    configDir, broker);
+            services.add(bookings);
+
+            failed = new SagaLoadTest(broker, database(tickets), database(bookings),
+                    bookings.getBean(SagaMetrics.class)).run(rate, durationSeconds, drainSeconds, seats);
+        } finally {
+            services.forEach(ConfigurableApplicationContext::close);
+        }
+        System.exit(failed ? 1 : 0);
+    }
+
+    private static ConfigurableApplicationContext start(Class<?> application, String name, String configDir,
+                                                        LocalBroker broker) {
+        return new SpringApplicationBuilder(application)
+                .initializers(context -> context.getBeanFactory().registerSingleton("localBroker", broker))
+                .run("--spring.application.name=" + name,
+                        "--spring.config.location=file:" + configDir + "/application.properties,file:"
+                                + configDir + "/" + name + ".properties",
+                        "--spring.cloud.config.enabled=false",
+                        "--eureka.client.enabled=false",
+                        "--spring.sleuth.enabled=false",
+                        "--spring.zipkin.enabled=false",
+                        "--spring.cloud.stream.defaultBinder=local",
+                        "--spring.datasource.generate-unique-name=true",
+                        "--server.port=0",
+                        "--debug=false",
+                        "--logging.level.root=WARN");
+    }
+
+    private static JdbcTemplate database(ConfigurableApplicationContext service) {
+        return new JdbcTemplate(service.getBean(DataSource.class));
+    }
+
+    SagaLoadTest(LocalBroker broker, JdbcTemplate ticketDatabase, JdbcTemplate bookingDatabase,
+                 SagaMetrics bookingMetrics) {
+        this.broker = broker;
+        this.ticketDatabase = ticketDatabase;
+        this.bookingDatabase = bookingDatabase;
+        this.bookingMetrics = bookingMetrics;
+    }
+
+    /**
+     * @return whether events were lost or tickets oversold
+     */
+    boolean run(int rate, int durationSeconds, int drainSeconds, int seats) {
+        Map<String, Integer> initialCounts = ticketCounts();
+        String[] locations = initialCounts.keySet().toArray(new String[0]);
+
+        // the TICKET_RESERVE or TICKET_REJECT reply ends the saga for the sender; the Booking Service
+        // completes or rejects the booking on it
+        LocalBroker.Subscription replies = broker.subscribe(EventType.TICKET_RESERVE.getDestination(), null,
+                this::reply);
+        LocalBroker.Subscription rejections = broker.subscribe(EventType.TICKET_REJECT.getDestination(), null,
+                message -> {
+                    rejected.incrementAndGet();
+                    reply(message);
+                });
+
+        long bookings = (long) rate * durationSeconds;
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+        long start = System.nanoTime();
+        for (long i = 0; i < bookings; i++) {
+            // paced by the schedule rather than by the replies, so a slow saga does not slow the load
+            long due = start + i * intervalNanos;
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            String transactionID = UUID.randomUUID().toString();
+            outstanding.add(transactionID);
+            broker.send(EventType.DOBOOKING.getDestination(), SagaEventPublisher.toMessage(new DoBookingEvent(
+                    "Load Test " + i, locations[(int) (i % locations.length)], seats, transactionID)));
+        }
+        long sendSeconds = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start);
+
+        long drainDeadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(drainSeconds);
+        while ((!outstanding.isEmpty() || pendingBookings() > 0) && System.nanoTime() < drainDeadline) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(100));
+        }
+        replies.stop();
+        rejections.stop();
+
+        long completed = bookings - outstanding.size();
+        double elapsedSeconds = (lastCompletion.get() - start) / 1e9;
+        long pending = pendingBookings();
+        long taken = 0;
+        long oversold = 0;
+        for (Map.Entry<String, Integer> location : ticketCounts().entrySet()) {
+            taken += initialCounts.getOrDefault(location.getKey(), 0) - location.getValue();
+            oversold += Math.max(0, -location.getValue());
+        }
+        LatencyHistogram latency = bookingMetrics.histogram("saga.end-to-end");
+
+        System.out.printf("%nBooking saga load test: %d bookings at %d/s over %d s, %d seats each, %d locations%n",
+                bookings, rate, sendSeconds, seats, locations.length);
+        System.out.printf("  completed            %d (%d without seats left)%n", completed, rejected.get());
+        System.out.printf("  sustained            %.1f bookings/s%n", elapsedSeconds > 0 ? completed / elapsedSeconds : 0);
+        System.out.printf("  saga latency         p50 %.1f ms, p99 %.1f ms, max %.1f ms (%d bookings)%n",
+                latency.getPercentileMillis(0.50), latency.getPercentileMillis(0.99), latency.getMaxMillis(),
+                latency.getCount());
+        System.out.printf("  lost                 %d without a reply, %d bookings still PENDING%n",
+                outstanding.size(), pending);
+        System.out.printf("  failed deliveries    %d%n", broker.getFailedDeliveries());
+        System.out.printf("  tickets              %d taken, %d oversold%n", taken, oversold);
+
+        return !outstanding.isEmpty() || pending > 0 || oversold > 0;
+    }
+
+    private void reply(Message<?> message) {
+        SagaEvent reply = SagaEventCodec.decode((byte[]) message.getPayload());
+        if (outstanding.remove(reply.getTransactionID())) {
+            lastCompletion.set(System.nanoTime());
+        }
+    }
+
+    private Map<String, Integer> ticketCounts() {
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        ticketDatabase.query("select ticket_location, ticket_counts from ticket order by id",
+                row -> {
+                    counts.put(row.getString(1), row.getInt(2));
+                });
+        return counts;
+    }
+
+    private long pendingBookings() {
+        return bookingDatabase.queryForObject("select count(*) from booking where booking_status = 'PENDING'",
+                Long.class);
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.reservationloadtest;
+
+import org.junit.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LocalBrokerTests {
+
+	private final LocalBroker broker = new LocalBroker();
+
+	@Test
+	public void consumersOfAGroupShareItsMessages() throws InterruptedException {
+		List<Object> received = new CopyOnWriteArrayList<>();
+		LocalBroker.Subscription first = broker.subscribe("reservations.dobooking", "booking-service",
+				message -> received.add(message.getPayload()));
+		LocalBroker.Subscription second = broker.subscribe("reservations.dobooking", "booking-service",
+				message -> received.add(message.getPayload()));
+
+		for (int i = 0; i < 100; i++) {
+			broker.send("reservations.dobooking", message(i));
+		}
+
+		awaitSize(received, 100);
+		assertThat(received).hasSize(100).doesNotHaveDuplicates();
+		first.stop();
+		second.stop();
+	}
+
+	@Test
+	public void everyGroupAndEveryAnonymousConsumerGetsEachMessage() throws InterruptedException {
+		List<Object> grouped = new CopyOnWriteArrayList<>();
+		List<Object> anonymous = new CopyOnWriteArrayList<>();
+		broker.subscribe("reservations.ticket-reserve", "booking-service", message -> grouped.add(message.getPayload()));
+		LocalBroker.Subscription updates = broker.subscribe("reservations.ticket-reserve", null,
+				message -> anonymous.add(message.getPayload()));
+
+		broker.send("reservations.ticket-reserve", message(1));
+		awaitSize(anonymous, 1);
+		updates.stop();
+		broker.send("reservations.ticket-reserve", message(2));
+
+		awaitSize(grouped, 2);
+		assertThat(grouped).containsExactly(1, 2);
+		assertThat(anonymous).containsExactly(1);
+	}
+
+	private static Message<Integer> message(int payload) {
+		return MessageBuilder.withPayload(payload).build();
+	}
+
+	private static void awaitSize(List<?> list, int size) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (list.size() < size && System.nanoTime() < deadline) {
+			Thread.sleep(10);
+		}
+	}
+}
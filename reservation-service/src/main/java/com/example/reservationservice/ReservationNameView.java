@@ -0,0 +1,258 @@
+package com.example.reservationservice;
+
+import com.example.reservationevents.ImportReport;
+import com.example.reservationevents.ReservationDeleteEvent;
+import com.example.reservationevents.ReservationEvent;
+import com.example.reservationevents.ReservationMasterSaveEvent;
+import com.example.reservationevents.ReservationSaveEvent;
+import com.example.reservationevents.TicketReserveEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.cloud.stream.annotation.Input;
+import org.springframework.cloud.stream.annotation.StreamListener;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.integration.annotation.MessageEndpoint;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.messaging.SubscribableChannel;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import java.util.List;
+import java.util.UUID;
+
+// The saga events the name view is kept from. Each binding has a group of its own,
+// so the view gets its copy of the events without taking them from the saga handlers
+interface ReservationNameViewChannels {
+
+    String NAME_VIEW_SAVES = "nameViewSaves";
+    String NAME_VIEW_MASTER_SAVES = "nameViewMasterSaves";
+    String NAME_VIEW_TICKETS = "nameViewTickets";
+    String NAME_VIEW_DELETES = "nameViewDeletes";
+
+    @Input(NAME_VIEW_SAVES)
+    SubscribableChannel nameViewSaves();
+
+    @Input(NAME_VIEW_MASTER_SAVES)
+    SubscribableChannel nameViewMasterSaves();
+
+    @Input(NAME_VIEW_TICKETS)
+    SubscribableChannel nameViewTickets();
+
+    @Input(NAME_VIEW_DELETES)
+    SubscribableChannel nameViewDeletes();
+}
+
+/**
+ * Keeps the reservations-by-name read model: one compact row per reservation in
+ * its own table, indexed by name and carrying the booking status, so that
+ * lookups by name never touch the reservation table the saga writes to.
+ * <p>
+ * Rows are upserted by transaction ID, so redelivered events and events of one
+ * transaction arriving out of order leave the same row behind.
+ */
+@MessageEndpoint
+class ReservationNameView {
+
+    private static final Logger log = LoggerFactory.getLogger(ReservationNameView.class);
+
+    static final String PENDING = "PENDING";
+    static final String COMPLETED = "COMPLETED";
+    static final String CANCELLED = "CANCELLED";
+
+    @Autowired
+    private ReservationSummaryRepository summaryRepository;
+
+    @Autowired
+    private ReservationRepository reservationRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // Reservations written before the view existed, or seeded without events
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfill() {
+        if (summaryRepository.count() > 0) {
+            return;
+        }
+        transactionTemplate.execute(status -> {
+            for (Reservation reservation : reservationRepository.findAll()) {
+                summaryRepository.save(new ReservationSummary(reservation.getReservationName(),
+                        reservation.getReservationLocation(), reservation.getReservationCount(),
+                        reservation.getReservationTransactionID(), COMPLETED));
+            }
+            return null;
+        });
+        log.info("Reservations by name view filled with {} reservations", summaryRepository.count());
+    }
+
+    // Reservations bulk imported, added in one statement rather than a row at a time
+    public void addImported(ImportReport imported) {
+        if (imported.getRows() == 0) {
+            return;
+        }
+        int added = jdbcTemplate.update("insert into reservation_summary "
+                        + "(reservation_name, reservation_location, reservation_count, transactionid, status) "
+                        + "select reservation_name, reservation_location, "
+                        + "reservation_count, reservation_transactionid, ? from reservation r where r.id between ? and ? "
+                        + "and not exists (select 1 from reservation_summary s where s.transactionid = r.reservation_transactionid)",
+                COMPLETED, imported.getFirstId(), imported.getLastId());
+        log.info("Reservations by name view added {} imported reservations", added);
+    }
+
+    // Saved by the saga, waiting for the Ticket Service
+    @StreamListener(ReservationNameViewChannels.NAME_VIEW_SAVES)
+    public void reservationSaved(ReservationSaveEvent saved) {
+        update(saved, PENDING);
+    }
+
+    // Written straight into the master data, nothing to wait for
+    @StreamListener(ReservationNameViewChannels.NAME_VIEW_MASTER_SAVES)
+    public void masterReservationSaved(ReservationMasterSaveEvent saved) {
+        if (saved.getTransactionID() == null) {
+            saved.setTransactionID(UUID.randomUUID().toString());
+        }
+        update(saved, COMPLETED);
+    }
+
+    @StreamListener(ReservationNameViewChannels.NAME_VIEW_TICKETS)
+    public void ticketsReserved(TicketReserveEvent reserved) {
+        update(reserved, COMPLETED);
+    }
+
+    @StreamListener(ReservationNameViewChannels.NAME_VIEW_DELETES)
+    public void reservationDeleted(ReservationDeleteEvent deleted) {
+        update(deleted, CANCELLED);
+    }
+
+    private void update(ReservationEvent event, String status) {
+        transactionTemplate.execute(tx -> {
+            // two events of a transaction inserting at once: the unique index fails one, and its redelivery updates
+            ReservationSummary summary = summaryRepository.findByTransactionID(event.getTransactionID());
+            if (summary == null) {
+                summary = new ReservationSummary(event.getReservationName(), event.getReservationLocation(),
+                        event.getReservationCount(), event.getTransactionID(), status);
+            } else if (rank(status) > rank(summary.getStatus())) {
+                // a status only moves forward, whatever order the events arrive in
+                summary.setStatus(status);
+            } else {
+                return null;
+            }
+            summaryRepository.save(summary);
+            return null;
+        });
+    }
+
+    private static int rank(String status) {
+        switch (status) {
+            case PENDING:
+                return 0;
+            case COMPLETED:
+                return 1;
+            default:
+                return 2;
+        }
+    }
+}
+
+interface ReservationSummaryRepository extends JpaRepository<ReservationSummary, Long> {
+
+    ReservationSummary findByTransactionID(String transactionID);
+
+    List<ReservationSummaryRow> findByReservationNameOrderByIdAsc(String reservationName);
+}
+
+// A reservation as the customer-service screens list it
+interface ReservationSummaryRow {
+
+    String getReservationLocation();
+
+    int getReservationCount();
+
+    String getTransactionID();
+
+    String getStatus();
+}
+
+// Reads of the name view, served from its own table
+@RestController
+class ReservationNameViewController {
+
+    @Autowired
+    private ReservationSummaryRepository summaryRepository;
+
+    @GetMapping("/reservations-by-name/{name}")
+    public List<ReservationSummaryRow> byName(@PathVariable String name) {
+        return summaryRepository.findByReservationNameOrderByIdAsc(name);
+    }
+}
+
+@Entity
+@Table(indexes = {
+        @Index(name = "reservation_summary_name_idx", columnList = "reservationName"),
+        @Index(name = "reservation_summary_transaction_id_idx", columnList = "transactionID", unique = true)})
+class ReservationSummary {
+
+    @Id
+    @GeneratedValue
+    private Long id;
+
+    private String reservationName;
+    private String reservationLocation;
+    private int reservationCount;
+    private String transactionID;
+    private String status;
+
+    public ReservationSummary() {
+        //for JPA
+    }
+
+    public ReservationSummary(String reservationName, String reservationLocation, int reservationCount,
+                              String transactionID, String status) {
+        this.reservationName = reservationName;
+        this.reservationLocation = reservationLocation;
+        this.reservationCount = reservationCount;
+        this.transactionID = transactionID;
+        this.status = status;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getReservationName() {
+        return reservationName;
+    }
+
+    public String getReservationLocation() {
+        return reservationLocation;
+    }
+
+    public int getReservationCount() {
+        return reservationCount;
+    }
+
+    public String getTransactionID() {
+        return transactionID;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.reservationservice;
+
+import com.example.reservationevents.IdBlocks;
+import com.example.reservationevents.ReplayTarget;
+import com.example.reservationevents.ReservationDeleteEvent;
+import com.example.reservationevents.ReservationEvent;
+import com.example.reservationevents.ReservationMasterSaveEvent;
+import com.example.reservationevents.ReservationSaveEvent;
+import com.example.reservationevents.SagaEvent;
+import com.example.reservationevents.WriteBatch;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Rebuilds the reservations of the saga from the events the service handled
+ * (see EventReplay): a reservation per RESERVATION_SAVE, gone once its
+ * RESERVATION_DELETE is in. Each is written anew, in place of the rows of its
+ * transaction ID.
+ * <p>
+ * Master reservations sent without a transaction ID, and those loaded by a
+ * bulk import, have nothing to be told apart by and are left as they are.
+ */
+@Component
+class ReservationReplay implements ReplayTarget<Reservation> {
+
+    private final IdBlocks reservationIds;
+
+    @Autowired
+    ReservationReplay(IdBlocks reservationIds) {
+        this.reservationIds = reservationIds;
+    }
+
+    @Override
+    public String getName() {
+        return "reservation";
+    }
+
+    @Override
+    public String keyOf(SagaEvent event) {
+        if (event instanceof ReservationSaveEvent || event instanceof ReservationMasterSaveEvent
+                || event instanceof ReservationDeleteEvent) {
+            return event.getTransactionID();
+        }
+        return null;
+    }
+
+    @Override
+    public Reservation apply(Reservation reservation, SagaEvent event) {
+        if (event instanceof ReservationDeleteEvent) {
+            return null;
+        }
+        ReservationEvent saved = (ReservationEvent) event;
+        return new Reservation(saved.getReservationName(), saved.getReservationLocation(),
+                saved.getReservationCount(), saved.getTransactionID());
+    }
+
+    @Override
+    public void write(String transactionID, Reservation reservation, WriteBatch batch) {
+        batch.add(ReservationProcessor.DELETE_RESERVATION, transactionID);
+        if (reservation != null) {
+            batch.add(ReservationProcessor.INSERT_RESERVATION, reservationIds.next(),
+                    reservation.getReservationName(), reservation.getReservationLocation(),
+                    reservation.getReservationCount(), reservation.getReservationTransactionID());
+        }
+    }
+}
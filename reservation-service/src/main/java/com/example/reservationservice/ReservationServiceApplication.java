@@ -1,5 +1,16 @@
 package com.example.reservationservice;
 
+import com.example.reservationevents.BulkImporter;
+import com.example.reservationevents.EventOutbox;
+import com.example.reservationevents.IdBlocks;
+import com.example.reservationevents.ImportTable;
+import com.example.reservationevents.ProcessedEvents;
+import com.example.reservationevents.ReservationDeleteEvent;
+import com.example.reservationevents.ReservationMasterSaveEvent;
+import com.example.reservationevents.ReservationSaveEvent;
+import com.example.reservationevents.ReservationSavedEvent;
+import com.example.reservationevents.WriteBatch;
+import com.example.reservationevents.WriteBehind;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
@@ -7,38 +18,62 @@ import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.cloud.context.config.annotation.RefreshScope;
 import org.springframework.cloud.stream.annotation.EnableBinding;
-import org.springframework.cloud.stream.messaging.Sink;
-import org.springframework.cloud.stream.messaging.Source;
+import org.springframework.cloud.stream.annotation.Input;
+import org.springframework.cloud.stream.annotation.StreamListener;
 import org.springframework.context.annotation.Bean;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.repository.query.Param;
 import org.springframework.data.rest.core.annotation.RepositoryRestResource;
 import org.springframework.data.rest.core.annotation.RestResource;
 import org.springframework.integration.annotation.IntegrationComponentScan;
 import org.springframework.integration.annotation.MessageEndpoint;
-import org.springframework.integration.annotation.ServiceActivator;
-import org.springframework.messaging.Message;
-import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.messaging.SubscribableChannel;
 import org.springframework.stereotype.Component;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Table;
+import java.nio.file.Paths;
 import java.util.Collection;
+import java.util.List;
 import java.util.Random;
 import java.util.UUID;
 import java.util.stream.Stream;
 
 @IntegrationComponentScan
-@EnableBinding({Sink.class, Source.class})
+@EnableBinding({ReservationChannels.class, ReservationNameViewChannels.class})
 @SpringBootApplication
 public class ReservationServiceApplication {
 
     @Bean
-    public CommandLineRunner commandLineRunner(ReservationRepository pr, ReservationCountLimit reservationCountLimit) {
+    public CommandLineRunner commandLineRunner(ReservationRepository pr, ReservationCountLimit reservationCountLimit,
+                                               BulkImporter importer, IdBlocks reservationIds,
+                                               ReservationNameView nameView,
+                                               @Value("${reservation.import.file:}") String importFile) {
         return args -> {
+            if (!importFile.isEmpty()) {
+                // the history is loaded in the background, the service is OUT_OF_SERVICE until it is in
+                importer.submit(Paths.get(importFile), new ImportTable("reservation").ids(reservationIds)
+                        .column("reservationName", "reservation_name")
+                        .column("reservationLocation", "reservation_location")
+                        .column("reservationCount", "reservation_count")
+                        .column("reservationTransactionID", "reservation_transactionid",
+                                () -> UUID.randomUUID().toString()))
+                        .thenAccept(nameView::addImported);
+                return;
+            }
             final String[] locations = {"Delhi", "Mumbai", "Pune", "Bangalore", "Patna", "Lucknow", "Kanpur", "Agra"};
             Random random = new Random(8);
             Stream.of("Ashish", "Amit", "Amar", "Tushar").
@@ -47,54 +82,95 @@ public class ReservationServiceApplication {
         };
     }
 
+    // IDs for the reservations written behind or imported, from the sequence JPA takes them from
+    @Bean
+    public IdBlocks reservationIds(JdbcTemplate jdbcTemplate) {
+        return new IdBlocks(jdbcTemplate, Reservation.ID_SEQUENCE, Reservation.ID_BLOCK_SIZE);
+    }
+
     public static void main(String[] args) {
         SpringApplication.run(ReservationServiceApplication.class, args);
     }
 }
 
+// Each event type the Reservation Service handles arrives on its own destination;
+// master data has its own lane so bulk loads do not hold up bookings
+interface ReservationChannels {
+
+    String RESERVATION_SAVES = "reservationSaves";
+    String RESERVATION_DELETES = "reservationDeletes";
+    String MASTER_RESERVATIONS = "masterReservations";
+
+    @Input(RESERVATION_SAVES)
+    SubscribableChannel reservationSaves();
+
+    @Input(RESERVATION_DELETES)
+    SubscribableChannel reservationDeletes();
+
+    @Input(MASTER_RESERVATIONS)
+    SubscribableChannel masterReservations();
+}
+
 @MessageEndpoint
 class ReservationProcessor {
 
+    static final String INSERT_RESERVATION = "insert into reservation (id, reservation_name, "
+            + "reservation_location, reservation_count, reservation_transactionid) values (?, ?, ?, ?, ?)";
+    // through the transaction ID index, see Reservation
+    static final String DELETE_RESERVATION = "delete from reservation where reservation_transactionid = ?";
+
     @Autowired
-    private ReservationRepository reservationRepository;
+    private IdBlocks reservationIds;
 
     @Autowired
-    private Source source;
+    private EventOutbox outbox;
 
-    @ServiceActivator(inputChannel = Sink.INPUT)
-    public void acceptRejectReservation(String msg) {
+    @Autowired
+    private ProcessedEvents processedEvents;
 
-        String msgParts[] = msg.trim().split(",");
+    // the handlers' writes are committed in batches with those of other events, in the order queued
+    @Autowired
+    private WriteBehind writeBehind;
 
-        // Message from APIGateway
-        if (msgParts[0].equalsIgnoreCase("RESERVATION_MASTER_SAVE")) {
-            Reservation s = this.reservationRepository.save(new Reservation(msgParts[1], msgParts[2], Integer.parseInt(msgParts[3])));
-        }
+    // Message from APIGateway
+    @StreamListener(ReservationChannels.MASTER_RESERVATIONS)
+    public void saveMasterReservation(ReservationMasterSaveEvent r) throws InterruptedException {
+        writeBehind.write(r.getPartitionKey(), batch -> insert(batch,
+                new Reservation(r.getReservationName(), r.getReservationLocation(), r.getReservationCount())));
+    }
 
-        // Message from Booking Service
-        // Msg format is RESERVATION_SAVE,<Reservation_Name>,<Reservation_Location>,<Reservation_Count>,<Reservation_TransactionID>
-        if (msgParts[0].equalsIgnoreCase("RESERVATION_SAVE")) {
+    // Message from Booking Service
+    @StreamListener(ReservationChannels.RESERVATION_SAVES)
+    public void acceptReservation(ReservationSaveEvent r) throws InterruptedException {
+        writeBehind.write(r.getPartitionKey(), batch -> {
+            // a redelivery: the reservation is saved and the Ticket Service told already
+            if (!processedEvents.markProcessed(r)) {
+                return;
+            }
 
             // Save the Reservation Transaction in Reservation DB
-            this.reservationRepository.save(new Reservation(msgParts[1], msgParts[2], Integer.parseInt(msgParts[3]), msgParts[4]));
+            insert(batch, new Reservation(r.getReservationName(), r.getReservationLocation(), r.getReservationCount(), r.getTransactionID()));
 
-            // Send a Message for Ticket Service
-            // Msg format is RESERVATION_SAVED,<Reservation_Name>,<Reservation_Location>,<Reservation_Count>,<Reservation_TransactionID>
-            Message<String> message = MessageBuilder.withPayload("RESERVATION_SAVED" + ","
-                    + msgParts[1] + ","
-                    + msgParts[2] + ","
-                    + msgParts[3] + ","
-                    + msgParts[4])
-                    .build();
-            source.output().send(message);
-        }
-
-        // For Rollback operation
-        if (msgParts[0].equalsIgnoreCase("RESERVATION_DELETE")) {
-            this.reservationRepository.delete(new Reservation(msgParts[1], msgParts[2], Integer.parseInt(msgParts[3])));
-        }
+            // Send a Message for Ticket Service, once the reservation is committed
+            outbox.add(new ReservationSavedEvent(r.getReservationName(), r.getReservationLocation(), r.getReservationCount(), r.getTransactionID()));
+        });
+    }
 
+    // For Rollback operation, from the Booking Service once the saga timed out
+    @StreamListener(ReservationChannels.RESERVATION_DELETES)
+    public void rejectReservation(ReservationDeleteEvent r) throws InterruptedException {
+        // on the lane of the reservation's own insert, by location, and run after it even in the same flush
+        writeBehind.write(r.getPartitionKey(), batch -> {
+            if (processedEvents.markProcessed(r)) {
+                batch.add(DELETE_RESERVATION, r.getTransactionID());
+            }
+        });
+    }
 
+    private void insert(WriteBatch batch, Reservation reservation) {
+        batch.add(INSERT_RESERVATION, reservationIds.next(), reservation.getReservationName(),
+                reservation.getReservationLocation(), reservation.getReservationCount(),
+                reservation.getReservationTransactionID());
     }
 
 }
@@ -105,6 +181,58 @@ interface ReservationRepository extends JpaRepository<Reservation, Long> {
     @RestResource(path = "by-name")
     Collection<Reservation> findByReservationName(@Param("pn") String reservationName);
 
+    // Slim listings, see ReservationListingController
+
+    @RestResource(exported = false)
+    Page<ReservationRow> findAllProjectedBy(Pageable pageable);
+
+    @RestResource(exported = false)
+    List<ReservationRow> findByIdGreaterThanOrderByIdAsc(long id, Pageable pageable);
+
+}
+
+// Projection of a Reservation for listings, without HAL links
+interface ReservationRow {
+
+    long getId();
+
+    String getReservationName();
+
+    String getReservationLocation();
+
+    int getReservationCount();
+
+    String getReservationTransactionID();
+}
+
+// Lists reservations a page at a time as plain JSON, for clients that
+// cannot afford the whole HAL collection of /reservations
+@RestController
+@RequestMapping("/listing/reservations")
+class ReservationListingController {
+
+    @Autowired
+    private ReservationRepository reservationRepository;
+
+    @Value("${listing.max-page-size:1000}")
+    private int maxPageSize;
+
+    // Rows with an ID above the cursor; pass the ID of the last row to get the next ones
+    @GetMapping
+    public List<ReservationRow> after(@RequestParam(defaultValue = "0") long after,
+                                      @RequestParam(defaultValue = "500") int size) {
+        return reservationRepository.findByIdGreaterThanOrderByIdAsc(after, new PageRequest(0, pageSize(size)));
+    }
+
+    @GetMapping("/pages")
+    public Page<ReservationRow> page(@RequestParam(defaultValue = "0") int page,
+                                     @RequestParam(defaultValue = "500") int size) {
+        return reservationRepository.findAllProjectedBy(new PageRequest(page, pageSize(size)));
+    }
+
+    private int pageSize(int size) {
+        return Math.max(1, Math.min(size, maxPageSize));
+    }
 }
 
 @RefreshScope
@@ -142,10 +270,16 @@ class MessageRestController {
 }
 
 @Entity
+@Table(indexes = @Index(name = "reservation_transaction_id_idx", columnList = "reservationTransactionID"))
 class Reservation {
 
+    // IDs come in blocks, see IdBlocks, so inserts need no round trip to the sequence and can be batched
+    static final String ID_SEQUENCE = "reservation_ids";
+    static final int ID_BLOCK_SIZE = 50;
+
     @Id
-    @GeneratedValue
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = ID_SEQUENCE)
+    @SequenceGenerator(name = ID_SEQUENCE, sequenceName = ID_SEQUENCE, allocationSize = ID_BLOCK_SIZE)
     private long id;
 
     private String reservationName;
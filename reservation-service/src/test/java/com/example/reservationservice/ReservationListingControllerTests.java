@@ -0,0 +1,46 @@
+package com.example.reservationservice;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {"reservationCount=30", "message=Reservations"})
+public class ReservationListingControllerTests {
+
+	@Autowired
+	private ReservationListingController listing;
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	@Test
+	public void walksAllReservationsByCursor() throws Exception {
+		List<ReservationRow> first = listing.after(0, 3);
+		assertThat(first).hasSize(3);
+
+		List<ReservationRow> rest = listing.after(first.get(2).getId(), 3);
+		assertThat(rest).hasSize(1);
+		assertThat(rest.get(0).getId()).isGreaterThan(first.get(2).getId());
+		assertThat(listing.after(rest.get(0).getId(), 3)).isEmpty();
+
+		String json = objectMapper.writeValueAsString(rest.get(0));
+		assertThat(json).contains("\"reservationName\"").doesNotContain("_links");
+	}
+
+	@Test
+	public void pagesAreBoundedByMaxPageSize() {
+		Page<ReservationRow> page = listing.page(0, 100000);
+		assertThat(page.getTotalElements()).isEqualTo(4);
+		assertThat(page.getSize()).isEqualTo(1000);
+	}
+
+}
@@ -0,0 +1,52 @@
+package com.example.reservationservice;
+
+import com.example.reservationevents.ReservationSaveEvent;
+import com.example.reservationevents.TicketReserveEvent;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {"reservationCount=30", "message=Reservations"})
+public class ReservationNameViewTests {
+
+	@Autowired
+	private ReservationNameView view;
+
+	@Autowired
+	private ReservationNameViewController controller;
+
+	@Test
+	public void seededReservationsAreBackfilled() {
+		List<ReservationSummaryRow> rows = controller.byName("Ashish");
+
+		assertThat(rows).hasSize(1);
+		assertThat(rows.get(0).getStatus()).isEqualTo(ReservationNameView.COMPLETED);
+	}
+
+	@Test
+	public void statusOnlyMovesForwardWhateverTheEventOrder() {
+		view.reservationSaved(new ReservationSaveEvent("Kiran", "Pune", 2, "tx-view-1"));
+		assertThat(controller.byName("Kiran")).extracting(ReservationSummaryRow::getStatus)
+				.containsExactly(ReservationNameView.PENDING);
+
+		view.ticketsReserved(new TicketReserveEvent("Kiran", "Pune", 2, "tx-view-1"));
+		// the reply overtook the save of this one
+		view.ticketsReserved(new TicketReserveEvent("Kiran", "Agra", 1, "tx-view-2"));
+		view.reservationSaved(new ReservationSaveEvent("Kiran", "Agra", 1, "tx-view-2"));
+		// a redelivery
+		view.reservationSaved(new ReservationSaveEvent("Kiran", "Pune", 2, "tx-view-1"));
+
+		List<ReservationSummaryRow> rows = controller.byName("Kiran");
+		assertThat(rows).extracting(ReservationSummaryRow::getTransactionID).containsExactly("tx-view-1", "tx-view-2");
+		assertThat(rows).extracting(ReservationSummaryRow::getStatus)
+				.containsOnly(ReservationNameView.COMPLETED);
+	}
+
+}
@@ -0,0 +1,83 @@
+package com.example.revservationclient;
+
+import com.example.reservationevents.InventoryEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.cloud.stream.annotation.StreamListener;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The gateway's copy of the tickets still available per location, kept from the
+ * INVENTORY events of the Ticket Service. Every gateway instance reads them
+ * without a consumer group and keeps its own copy.
+ * <p>
+ * Bookings the copy says cannot be satisfied are turned away before any event is
+ * sent. The copy is only trusted while it is at most
+ * {@code gateway.availability.max-staleness-ms} old; older, or for a location it
+ * has not heard of, the booking goes through and the Ticket Service decides.
+ */
+@Component
+class AvailabilityView implements PublicMetrics {
+
+    private final long maxStalenessMillis;
+
+    private final ConcurrentHashMap<String, Availability> locations = new ConcurrentHashMap<>();
+    private final LongAdder rejections = new LongAdder();
+
+    AvailabilityView(@Value("${gateway.availability.max-staleness-ms:2000}") long maxStalenessMillis) {
+        this.maxStalenessMillis = maxStalenessMillis;
+    }
+
+    @StreamListener(GatewayChannels.INVENTORY)
+    public void inventoryChanged(InventoryEvent inventory) {
+        Availability update = new Availability(inventory.getAvailableTickets(), inventory.getTimestamp());
+        // events of a location can overtake each other, keep the newest
+        locations.merge(inventory.getPartitionKey(), update,
+                (current, next) -> next.asOf >= current.asOf ? next : current);
+    }
+
+    /**
+     * Whether a fresh enough copy says the location cannot give out the seats,
+     * on the Ticket Service's rule that a booking never takes the last ticket.
+     * Counts the booking as rejected if so.
+     */
+    public boolean clearlyUnavailable(String location, int seats) {
+        if (location == null || maxStalenessMillis <= 0) {
+            return false;
+        }
+        Availability availability = locations.get(location.trim());
+        if (availability == null || System.currentTimeMillis() - availability.asOf > maxStalenessMillis) {
+            return false;
+        }
+        if (availability.tickets - seats > 0) {
+            return false;
+        }
+        rejections.increment();
+        return true;
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        return Arrays.<Metric<?>>asList(
+                new Metric<>("gateway.availability.locations", locations.size()),
+                new Metric<>("gateway.availability.rejections", rejections.sum()));
+    }
+
+    private static final class Availability {
+
+        private final int tickets;
+        // when the Ticket Service counted them, in epoch milliseconds
+        private final long asOf;
+
+        private Availability(int tickets, long asOf) {
+            this.tickets = tickets;
+            this.asOf = asOf;
+        }
+    }
+}
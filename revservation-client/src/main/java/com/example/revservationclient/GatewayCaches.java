@@ -0,0 +1,107 @@
+package com.example.revservationclient;
+
+import com.example.reservationevents.ReservationDeleteEvent;
+import com.example.reservationevents.ReservationMasterSaveEvent;
+import com.example.reservationevents.ReservationSavedEvent;
+import com.example.reservationevents.TicketConfirmEvent;
+import com.example.reservationevents.TicketReleaseEvent;
+import com.example.reservationevents.TicketSaveEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.cloud.stream.annotation.StreamListener;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The gateway's caches of the ticket and reservation lists, invalidated by the
+ * events that change them. Every gateway instance reads those events without a
+ * consumer group, so each one invalidates its own caches.
+ * <p>
+ * The stored ticket counts the list shows change when a location is saved and
+ * when the Ticket Service sells held seats on TICKET_CONFIRM; TICKET_RELEASE
+ * gives seats back to a location. Holding seats, on TICKET_RESERVE, or a hold
+ * expiring leaves the stored counts as they are.
+ */
+@Component
+class GatewayCaches implements PublicMetrics {
+
+    // cache key of the full lists
+    static final String ALL = "all";
+
+    private final ReadThroughCache<Collection<Ticket>> tickets;
+    private final ReadThroughCache<Collection<Reservation>> reservations;
+    private final LongAdder fallbacks = new LongAdder();
+
+    GatewayCaches(@Value("${gateway.cache.ttl-ms:5000}") long ttlMillis,
+                  @Value("${gateway.cache.max-entries:100}") int maxEntries) {
+        this.tickets = new ReadThroughCache<>(ttlMillis, maxEntries);
+        this.reservations = new ReadThroughCache<>(ttlMillis, maxEntries);
+    }
+
+    public ReadThroughCache<Collection<Ticket>> tickets() {
+        return tickets;
+    }
+
+    public ReadThroughCache<Collection<Reservation>> reservations() {
+        return reservations;
+    }
+
+    /**
+     * The last list loaded into the cache, however old, for the Hystrix fallbacks;
+     * empty if there never was one.
+     */
+    public <T> Collection<T> lastKnownGood(ReadThroughCache<Collection<T>> cache) {
+        Collection<T> snapshot = cache.lastKnownGood(ALL);
+        if (snapshot == null) {
+            return Collections.emptyList();
+        }
+        fallbacks.increment();
+        return snapshot;
+    }
+
+    @StreamListener(GatewayChannels.TICKET_SAVES)
+    public void ticketSaved(TicketSaveEvent saved) {
+        tickets.invalidateAll();
+    }
+
+    @StreamListener(GatewayChannels.TICKET_CONFIRMATIONS)
+    public void ticketConfirmed(TicketConfirmEvent confirmed) {
+        tickets.invalidateAll();
+    }
+
+    @StreamListener(GatewayChannels.TICKET_RELEASES)
+    public void ticketReleased(TicketReleaseEvent released) {
+        tickets.invalidateAll();
+    }
+
+    @StreamListener(GatewayChannels.SAVED_RESERVATIONS)
+    public void reservationSaved(ReservationSavedEvent saved) {
+        reservations.invalidateAll();
+    }
+
+    // a compensated booking's reservation
+    @StreamListener(GatewayChannels.DELETED_RESERVATIONS)
+    public void reservationDeleted(ReservationDeleteEvent deleted) {
+        reservations.invalidateAll();
+    }
+
+    @StreamListener(GatewayChannels.MASTER_RESERVATION_SAVES)
+    public void masterReservationSaved(ReservationMasterSaveEvent saved) {
+        reservations.invalidateAll();
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        return Arrays.<Metric<?>>asList(
+                new Metric<>("gateway.cache.tickets.hits", tickets.hits()),
+                new Metric<>("gateway.cache.tickets.misses", tickets.misses()),
+                new Metric<>("gateway.cache.reservations.hits", reservations.hits()),
+                new Metric<>("gateway.cache.reservations.misses", reservations.misses()),
+                new Metric<>("gateway.cache.fallbacks", fallbacks.sum()));
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.revservationclient;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cloud.client.loadbalancer.LoadBalanced;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+/**
+ * Streams a /listing endpoint of the Reservation or Ticket Service to the client as
+ * newline-delimited JSON. The listing is walked by its ID cursor and each row is
+ * written as it comes, so that no more than a page is held in memory here or upstream.
+ */
+@Component
+class ListingStreamer {
+
+    // newline-delimited JSON, one object per line
+    static final String NDJSON = "application/x-ndjson";
+
+    private final RestTemplate restTemplate;
+    private final ObjectMapper objectMapper;
+
+    @Autowired
+    ListingStreamer(@LoadBalanced RestTemplate restTemplate, ObjectMapper objectMapper) {
+        this.restTemplate = restTemplate;
+        this.objectMapper = objectMapper;
+    }
+
+    public StreamingResponseBody stream(String listingUrl, int pageSize) {
+        String pageUrl = listingUrl + "?after={after}&size={size}";
+        return out -> {
+            JsonNode[] rows = restTemplate.getForObject(pageUrl, JsonNode[].class, 0, pageSize);
+            while (rows != null && rows.length > 0) {
+                for (JsonNode row : rows) {
+                    out.write(objectMapper.writeValueAsBytes(row));
+                    out.write('\n');
+                }
+                out.flush();
+                long after = rows[rows.length - 1].get("id").asLong();
+                rows = restTemplate.getForObject(pageUrl, JsonNode[].class, after, pageSize);
+            }
+        };
+    }
+}
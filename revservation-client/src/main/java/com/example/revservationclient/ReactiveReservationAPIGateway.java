@@ -0,0 +1,253 @@
+package com.example.revservationclient;
+
+import com.example.reservationevents.DoBookingEvent;
+import com.example.reservationevents.ReservationMasterSaveEvent;
+import com.example.reservationevents.SagaEvent;
+import com.example.reservationevents.SagaEventPublisher;
+import com.example.reservationevents.TicketSaveEvent;
+import com.netflix.hystrix.contrib.javanica.annotation.HystrixCommand;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cloud.client.loadbalancer.LoadBalanced;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.hateoas.Resources;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.util.concurrent.ListenableFuture;
+import org.springframework.util.concurrent.SettableListenableFuture;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.client.AsyncRestTemplate;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import rx.Observable;
+
+import javax.annotation.PreDestroy;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+/**
+ * The API gateway for gateway.mode=reactive: the same /api as ReservationAPIGateway,
+ * but no servlet thread waits on the Reservation, Ticket or Booking Service or on
+ * the message broker.
+ * <p>
+ * Reads go out on the non-blocking AsyncRestTemplate through semaphore-isolated
+ * Hystrix observable commands (see ReactiveUpstream), events are sent by the small
+ * pool of AsyncEventPublisher, and every answer is given through a DeferredResult.
+ */
+@RestController
+@RequestMapping("api")
+@ConditionalOnProperty(name = "gateway.mode", havingValue = "reactive")
+class ReactiveReservationAPIGateway {
+
+    @Autowired
+    private ReactiveUpstream upstream;
+
+    @Autowired
+    private AsyncEventPublisher publisher;
+
+    @Autowired
+    private GatewayCaches caches;
+
+    @Autowired
+    private ListingStreamer listingStreamer;
+
+    @Autowired
+    private AvailabilityView availability;
+
+    @Autowired
+    @LoadBalanced
+    private AsyncRestTemplate asyncRestTemplate;
+
+    @PostMapping("/reservations")
+    public DeferredResult<ResponseEntity<Void>> writeReservation(@RequestBody Reservation r) {
+        return published(publisher.publish(new ReservationMasterSaveEvent(r.getReservationName(),
+                r.getReservationLocation(), r.getReservationCount(), null)), () -> ResponseEntity.ok().build());
+    }
+
+    @GetMapping("/reservations")
+    public DeferredResult<Collection<Reservation>> getPassangerList() {
+        return cachedOrLoaded(caches.reservations(), upstream::reservations);
+    }
+
+    @GetMapping(value = "/reservations/stream", produces = ListingStreamer.NDJSON)
+    public StreamingResponseBody streamPassangerList(@RequestParam(defaultValue = "500") int pageSize) {
+        return listingStreamer.stream("http://reservation-service/listing/reservations", pageSize);
+    }
+
+    @PostMapping("/tickets")
+    public DeferredResult<ResponseEntity<Void>> addLocation(@RequestBody Ticket ticket) {
+        return published(publisher.publish(new TicketSaveEvent(ticket.getTicketLocation(), ticket.getTicketCounts())),
+                () -> ResponseEntity.ok().build());
+    }
+
+    @GetMapping("/tickets")
+    public DeferredResult<Collection<Ticket>> getTicketList() {
+        return cachedOrLoaded(caches.tickets(), upstream::tickets);
+    }
+
+    @GetMapping(value = "/tickets/stream", produces = ListingStreamer.NDJSON)
+    public StreamingResponseBody streamTicketList(@RequestParam(defaultValue = "500") int pageSize) {
+        return listingStreamer.stream("http://ticket-service/listing/tickets", pageSize);
+    }
+
+    @PostMapping("/dobooking")
+    public DeferredResult<ResponseEntity<String>> addBooking(@RequestBody Reservation r) {
+        if (availability.clearlyUnavailable(r.getReservationLocation(), r.getReservationCount())) {
+            DeferredResult<ResponseEntity<String>> soldOut = new DeferredResult<>();
+            soldOut.setResult(ResponseEntity.status(HttpStatus.CONFLICT).build());
+            return soldOut;
+        }
+        final String transID = UUID.randomUUID().toString();
+        return published(publisher.publish(new DoBookingEvent(r.getReservationName(),
+                r.getReservationLocation(), r.getReservationCount(), transID)), () -> ResponseEntity.ok(transID));
+    }
+
+    @PostMapping("/dobooking/bulk")
+    public ListenableFuture<ResponseEntity<List<BookingResult>>> addBookings(@RequestBody List<Reservation> reservations) {
+        return this.asyncRestTemplate.exchange("http://booking-service/booking/tickets", HttpMethod.POST,
+                new HttpEntity<>(reservations), BookingResult.LIST);
+    }
+
+    @GetMapping("/bookings/{transactionID}/status")
+    public ListenableFuture<ResponseEntity<String>> waitForBooking(@PathVariable String transactionID) {
+        return this.asyncRestTemplate.getForEntity("http://booking-service/booking/waitstatus/{transactionID}",
+                String.class, transactionID);
+    }
+
+    private static <T> DeferredResult<Collection<T>> cachedOrLoaded(ReadThroughCache<Collection<T>> cache,
+                                                                   Supplier<Observable<Collection<T>>> loader) {
+        DeferredResult<Collection<T>> result = new DeferredResult<>();
+        long loadGeneration = cache.generation();
+        Collection<T> cached = cache.getIfFresh(GatewayCaches.ALL);
+        if (cached != null) {
+            result.setResult(cached);
+            return result;
+        }
+        loader.get().subscribe(loaded -> {
+            cache.put(GatewayCaches.ALL, loaded, loadGeneration);
+            result.setResult(loaded);
+        }, result::setErrorResult);
+        return result;
+    }
+
+    // Answers once the event is handed to the broker, or with 503 while the publishing pool is full
+    private static <T> DeferredResult<ResponseEntity<T>> published(ListenableFuture<?> sending,
+                                                                   Supplier<ResponseEntity<T>> answer) {
+        DeferredResult<ResponseEntity<T>> result = new DeferredResult<>();
+        sending.addCallback(sent -> result.setResult(answer.get()), failure -> {
+            if (failure instanceof TaskRejectedException) {
+                result.setResult(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build());
+            } else {
+                result.setErrorResult(failure);
+            }
+        });
+        return result;
+    }
+}
+
+/**
+ * The reads of the reactive gateway. The Hystrix commands return Observables, so
+ * Hystrix runs them semaphore-isolated on the caller's thread instead of hopping to
+ * its thread pool, and the HTTP calls they wrap do not block any thread.
+ */
+@Component
+@ConditionalOnProperty(name = "gateway.mode", havingValue = "reactive")
+class ReactiveUpstream {
+
+    private static final ParameterizedTypeReference<Resources<Reservation>> RESERVATIONS =
+            new ParameterizedTypeReference<Resources<Reservation>>() {
+            };
+
+    private static final ParameterizedTypeReference<Resources<Ticket>> TICKETS =
+            new ParameterizedTypeReference<Resources<Ticket>>() {
+            };
+
+    private final AsyncRestTemplate asyncRestTemplate;
+    private final GatewayCaches caches;
+
+    @Autowired
+    ReactiveUpstream(@LoadBalanced AsyncRestTemplate asyncRestTemplate, GatewayCaches caches) {
+        this.asyncRestTemplate = asyncRestTemplate;
+        this.caches = caches;
+    }
+
+    @HystrixCommand(fallbackMethod = "reservationsFallBack")
+    public Observable<Collection<Reservation>> reservations() {
+        return Observable.defer(() -> observe(asyncRestTemplate.exchange("http://reservation-service/reservations",
+                HttpMethod.GET, null, RESERVATIONS))).map(response -> response.getBody().getContent());
+    }
+
+    // Serves the last list the ReservationService returned, however old
+    public Observable<Collection<Reservation>> reservationsFallBack() {
+        return Observable.just(caches.lastKnownGood(caches.reservations()));
+    }
+
+    @HystrixCommand(fallbackMethod = "ticketsFallBack")
+    public Observable<Collection<Ticket>> tickets() {
+        return Observable.defer(() -> observe(asyncRestTemplate.exchange("http://ticket-service/tickets",
+                HttpMethod.GET, null, TICKETS))).map(response -> response.getBody().getContent());
+    }
+
+    // Serves the last list the TicketService returned, however old
+    public Observable<Collection<Ticket>> ticketsFallBack() {
+        return Observable.just(caches.lastKnownGood(caches.tickets()));
+    }
+
+    static <T> Observable<T> observe(ListenableFuture<T> future) {
+        return Observable.create(subscriber -> future.addCallback(value -> {
+            subscriber.onNext(value);
+            subscriber.onCompleted();
+        }, subscriber::onError));
+    }
+}
+
+/**
+ * Sends events from a small, bounded pool, so that request threads never wait on
+ * the message broker. When the queue is full the send is rejected rather than
+ * queued without bound.
+ */
+@Component
+@ConditionalOnProperty(name = "gateway.mode", havingValue = "reactive")
+class AsyncEventPublisher {
+
+    private final SagaEventPublisher publisher;
+    private final ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+
+    @Autowired
+    AsyncEventPublisher(SagaEventPublisher publisher,
+                        @Value("${gateway.publish.threads:2}") int threads,
+                        @Value("${gateway.publish.queue-capacity:10000}") int queueCapacity) {
+        this.publisher = publisher;
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("event-publisher-");
+        executor.initialize();
+    }
+
+    /**
+     * Queues the event for sending; the future completes once it is sent.
+     */
+    public ListenableFuture<?> publish(SagaEvent event) {
+        try {
+            return executor.submitListenable(() -> publisher.publish(event));
+        } catch (TaskRejectedException e) {
+            SettableListenableFuture<Object> rejected = new SettableListenableFuture<>();
+            rejected.setException(e);
+            return rejected;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.revservationclient;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Read-through cache of upstream responses, by key, for the API gateway.
+ * <p>
+ * An entry is served until it is older than the TTL or until {@link #invalidateAll()}
+ * is called for an event that changed the upstream data. Invalidated and expired
+ * entries are kept as the last known good value for the Hystrix fallbacks. At most
+ * {@code maxEntries} keys are held; the oldest key is evicted first.
+ */
+class ReadThroughCache<V> {
+
+    private final long ttlMillis;
+    private final int maxEntries;
+    private final LongSupplier clock;
+
+    private final ConcurrentHashMap<String, Entry<V>> entries = new ConcurrentHashMap<>();
+    private final Queue<String> insertionOrder = new ConcurrentLinkedQueue<>();
+    private final AtomicLong generation = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    ReadThroughCache(long ttlMillis, int maxEntries) {
+        this(ttlMillis, maxEntries, System::currentTimeMillis);
+    }
+
+    ReadThroughCache(long ttlMillis, int maxEntries, LongSupplier clock) {
+        this.ttlMillis = ttlMillis;
+        this.maxEntries = maxEntries;
+        this.clock = clock;
+    }
+
+    /**
+     * The cached value of the key while it is fresh, or else the value of the loader,
+     * which is then cached. Loader failures propagate and leave the cache as it was.
+     */
+    public V get(String key, Supplier<V> loader) {
+        long loadGeneration = generation();
+        V value = getIfFresh(key);
+        if (value == null) {
+            value = loader.get();
+            put(key, value, loadGeneration);
+        }
+        return value;
+    }
+
+    /**
+     * The cached value of the key while it is fresh, or else null. For callers that
+     * load asynchronously and {@link #put} the value once it arrives.
+     */
+    public V getIfFresh(String key) {
+        Entry<V> entry = entries.get(key);
+        if (entry != null && entry.generation == generation.get()
+                && clock.getAsLong() - entry.loadedAt < ttlMillis) {
+            hits.increment();
+            return entry.value;
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * The current generation, to be taken before loading and passed to {@link #put}.
+     */
+    public long generation() {
+        return generation.get();
+    }
+
+    /**
+     * Caches a loaded value. A value loaded across an invalidation, that is from
+     * an older generation, is only good as a fallback.
+     */
+    public void put(String key, V value, long loadGeneration) {
+        if (entries.put(key, new Entry<>(value, clock.getAsLong(), loadGeneration)) == null) {
+            trackInsertion(key);
+        }
+    }
+
+    /**
+     * The last value loaded for the key, however old, or null if there never was one.
+     */
+    public V lastKnownGood(String key) {
+        Entry<V> entry = entries.get(key);
+        return entry != null ? entry.value : null;
+    }
+
+    /**
+     * Makes every entry stale; the next read of each key goes upstream.
+     */
+    public void invalidateAll() {
+        generation.incrementAndGet();
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private void trackInsertion(String key) {
+        insertionOrder.add(key);
+        while (entries.size() > maxEntries) {
+            String eldest = insertionOrder.poll();
+            if (eldest == null) {
+                break;
+            }
+            entries.remove(eldest);
+        }
+    }
+
+    private static final class Entry<V> {
+
+        private final V value;
+        private final long loadedAt;
+        private final long generation;
+
+        Entry(V value, long loadedAt, long generation) {
+            this.value = value;
+            this.loadedAt = loadedAt;
+            this.generation = generation;
+        }
+    }
+}
@@ -1,32 +1,43 @@
 package com.example.revservationclient;
 
+import com.example.reservationevents.DoBookingEvent;
+import com.example.reservationevents.ReservationMasterSaveEvent;
+import com.example.reservationevents.SagaEventPublisher;
+import com.example.reservationevents.TicketSaveEvent;
 import com.netflix.hystrix.contrib.javanica.annotation.HystrixCommand;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.cloud.client.circuitbreaker.EnableCircuitBreaker;
 import org.springframework.cloud.client.discovery.EnableDiscoveryClient;
 import org.springframework.cloud.client.loadbalancer.LoadBalanced;
 import org.springframework.cloud.netflix.zuul.EnableZuulProxy;
 import org.springframework.cloud.stream.annotation.EnableBinding;
-import org.springframework.cloud.stream.messaging.Source;
+import org.springframework.cloud.stream.annotation.Input;
 import org.springframework.context.annotation.Bean;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.hateoas.Resources;
+import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.Netty4ClientHttpRequestFactory;
 import org.springframework.integration.annotation.MessageEndpoint;
-import org.springframework.messaging.Message;
-import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.SubscribableChannel;
+import org.springframework.util.concurrent.ListenableFuture;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.client.AsyncRestTemplate;
+import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
-@EnableBinding(Source.class)
+@EnableBinding(GatewayChannels.class)
 @EnableCircuitBreaker
 @EnableZuulProxy
 @EnableDiscoveryClient
@@ -43,81 +54,131 @@ public class RevservationClientApplication {
     RestTemplate restTemplate() {
         return new RestTemplate();
     }
+
+    // Non-blocking HTTP client: requests are written and answered on a few Netty
+    // event loop threads rather than a thread per outstanding request
+    @Bean
+    Netty4ClientHttpRequestFactory nettyRequestFactory(@Value("${gateway.http.connect-timeout-ms:2000}") int connectTimeout) {
+        Netty4ClientHttpRequestFactory requestFactory = new Netty4ClientHttpRequestFactory();
+        requestFactory.setConnectTimeout(connectTimeout);
+        return requestFactory;
+    }
+
+    @Bean
+    @LoadBalanced
+    AsyncRestTemplate asyncRestTemplate(Netty4ClientHttpRequestFactory nettyRequestFactory) {
+        return new AsyncRestTemplate(nettyRequestFactory);
+    }
 }
 
+interface GatewayChannels {
+
+    String TICKET_SAVES = "ticketSaves";
+    String TICKET_CONFIRMATIONS = "ticketConfirmations";
+    String TICKET_RELEASES = "ticketReleases";
+    String SAVED_RESERVATIONS = "savedReservations";
+    String DELETED_RESERVATIONS = "deletedReservations";
+    String MASTER_RESERVATION_SAVES = "masterReservationSaves";
+    String INVENTORY = "inventory";
+
+    // read without a consumer group, so that every instance sees them (see GatewayCaches)
+    @Input(TICKET_SAVES)
+    SubscribableChannel ticketSaves();
+
+    @Input(TICKET_CONFIRMATIONS)
+    SubscribableChannel ticketConfirmations();
+
+    @Input(TICKET_RELEASES)
+    SubscribableChannel ticketReleases();
+
+    @Input(SAVED_RESERVATIONS)
+    SubscribableChannel savedReservations();
+
+    @Input(DELETED_RESERVATIONS)
+    SubscribableChannel deletedReservations();
 
+    @Input(MASTER_RESERVATION_SAVES)
+    SubscribableChannel masterReservationSaves();
+
+    // also without a group, every instance keeps its own copy (see AvailabilityView)
+    @Input(INVENTORY)
+    SubscribableChannel inventory();
+}
+
+
+// The default, thread-per-request gateway; see ReactiveReservationAPIGateway for gateway.mode=reactive
 @RestController
 @RequestMapping("api")
 @MessageEndpoint
+@ConditionalOnProperty(name = "gateway.mode", havingValue = "blocking", matchIfMissing = true)
 class ReservationAPIGateway {
 
-
     private final RestTemplate restTemplate;
 
+    private final AsyncRestTemplate asyncRestTemplate;
+
     @Autowired
-    public ReservationAPIGateway(@LoadBalanced RestTemplate restTemplate) {
+    public ReservationAPIGateway(@LoadBalanced RestTemplate restTemplate, @LoadBalanced AsyncRestTemplate asyncRestTemplate) {
         this.restTemplate = restTemplate;
+        this.asyncRestTemplate = asyncRestTemplate;
     }
 
     @Autowired
-    private Source source;
+    private SagaEventPublisher publisher;
+
+    @Autowired
+    private GatewayCaches caches;
+
+    @Autowired
+    private ListingStreamer listingStreamer;
+
+    @Autowired
+    private AvailabilityView availability;
 
     @PostMapping("/reservations")
     public void writeReservation(@RequestBody Reservation r) {
         // Event Name is RESERVATION_MASTER_SAVE
-        // Msg format is RESERVATION_MASTER_SAVE,<Reservation_Name>,<Reservation_Location>,<Reservation_Count>
         // Msg for ReservationService
-        Message<String> message = MessageBuilder.withPayload("RESERVATION_MASTER_SAVE" + ","
-                + r.getReservationName() + ","
-                + r.getReservationLocation() + ","
-                + r.getReservationCount())
-                .build();
-        source.output().send(message);
+        publisher.publish(new ReservationMasterSaveEvent(r.getReservationName(),
+                r.getReservationLocation(), r.getReservationCount(), null));
     }
 
+    // Serves the last list the ReservationService returned, however old
     public Collection<Reservation> getPassangerListFallBack() {
-        List<Reservation> defaultReservations = new ArrayList<>();
-        defaultReservations.add(new Reservation("SureshaAent", "Pune", 5, UUID.randomUUID().toString()));
-        defaultReservations.add(new Reservation("NeerajAgent", "Banaglore", 5, UUID.randomUUID().toString()));
-        return defaultReservations;
-
-        // here one can implement the user specific cache requierments
-
+        return caches.lastKnownGood(caches.reservations());
     }
 
     @HystrixCommand(fallbackMethod = "getPassangerListFallBack")
     @GetMapping("/reservations")
     public Collection<Reservation> getPassangerList() {
 
-        ParameterizedTypeReference<Resources<Reservation>> ptr = new ParameterizedTypeReference<Resources<Reservation>>() {
-        };
-        ResponseEntity<Resources<Reservation>> responseEntity =
-                this.restTemplate.exchange("http://reservation-service/reservations", HttpMethod.GET, null, ptr);
-        Collection<Reservation> data = responseEntity.getBody().getContent();
-        return data;
+        return caches.reservations().get(GatewayCaches.ALL, () -> {
+            ParameterizedTypeReference<Resources<Reservation>> ptr = new ParameterizedTypeReference<Resources<Reservation>>() {
+            };
+            ResponseEntity<Resources<Reservation>> responseEntity =
+                    this.restTemplate.exchange("http://reservation-service/reservations", HttpMethod.GET, null, ptr);
+            return responseEntity.getBody().getContent();
+        });
+
+    }
 
+    // Streams every reservation, a page at a time from the ReservationService
+    @GetMapping(value = "/reservations/stream", produces = ListingStreamer.NDJSON)
+    public StreamingResponseBody streamPassangerList(@RequestParam(defaultValue = "500") int pageSize) {
+        return listingStreamer.stream("http://reservation-service/listing/reservations", pageSize);
     }
 
     @PostMapping("/tickets")
     public void addLocation(@RequestBody Ticket ticket) {
         // Event Name is TICKET_SAVE
-        // Msg is TICKET_SAVE,<Ticket_Location>,<Ticket_Counts>
         // Msg for TickerService
-        Message<String> message = MessageBuilder.withPayload("TICKET_SAVE" + ","
-                + ticket.getTicketLocation() + ","
-                + ticket.getTicketCounts())
-                .build();
-        source.output().send(message);
+        publisher.publish(new TicketSaveEvent(ticket.getTicketLocation(), ticket.getTicketCounts()));
     }
 
 
+    // Serves the last list the TicketService returned, however old
     public Collection<Ticket> getTicketListFallBack() {
-        List<Ticket> defaultLocations = new ArrayList<>();
-        defaultLocations.add(new Ticket("Mumbai", 30));
-        defaultLocations.add(new Ticket("Delhi", 30));
-        return defaultLocations;
-
-        // here one can implement the user specific cache requierments
+        return caches.lastKnownGood(caches.tickets());
     }
 
 
@@ -125,30 +186,54 @@ class ReservationAPIGateway {
     @GetMapping("/tickets")
     public Collection<Ticket> getTicketList() {
 
-        ParameterizedTypeReference<Resources<Ticket>> ptr = new ParameterizedTypeReference<Resources<Ticket>>() {
-        };
-        ResponseEntity<Resources<Ticket>> responseEntity =
-                this.restTemplate.exchange("http://ticket-service/tickets", HttpMethod.GET, null, ptr);
-        Collection<Ticket> data = responseEntity.getBody().getContent();
-        return data;
+        return caches.tickets().get(GatewayCaches.ALL, () -> {
+            ParameterizedTypeReference<Resources<Ticket>> ptr = new ParameterizedTypeReference<Resources<Ticket>>() {
+            };
+            ResponseEntity<Resources<Ticket>> responseEntity =
+                    this.restTemplate.exchange("http://ticket-service/tickets", HttpMethod.GET, null, ptr);
+            return responseEntity.getBody().getContent();
+        });
 
     }
 
 
+    // Streams every ticket location, a page at a time from the TicketService
+    @GetMapping(value = "/tickets/stream", produces = ListingStreamer.NDJSON)
+    public StreamingResponseBody streamTicketList(@RequestParam(defaultValue = "500") int pageSize) {
+        return listingStreamer.stream("http://ticket-service/listing/tickets", pageSize);
+    }
+
     @PostMapping("/dobooking")
-    public String addBooking(@RequestBody Reservation r) {
+    public ResponseEntity<String> addBooking(@RequestBody Reservation r) {
+        // sold out: answered here rather than by a saga through three services
+        if (availability.clearlyUnavailable(r.getReservationLocation(), r.getReservationCount())) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
         // Event Name is DOBOOKING
-        // Msg format is DOBOOKING,<Reservation_Name>,<Reservation_Location>,<Reservation_Count>
         // Msg for BookingService
         final String transID = UUID.randomUUID().toString();
-        Message<String> message = MessageBuilder.withPayload("DOBOOKING" + ","
-                + r.getReservationName() + ","
-                + r.getReservationLocation() + ","
-                + r.getReservationCount() + ","
-                + transID)
-                .build();
-        source.output().send(message);
-        return transID;
+        publisher.publish(new DoBookingEvent(r.getReservationName(),
+                r.getReservationLocation(), r.getReservationCount(), transID));
+        return ResponseEntity.ok(transID);
+    }
+
+    // Group bookings, booked by the BookingService in one go; one result per reservation, in order
+    @PostMapping("/dobooking/bulk")
+    public ResponseEntity<List<BookingResult>> addBookings(@RequestBody List<Reservation> reservations) {
+        try {
+            return this.restTemplate.exchange("http://booking-service/booking/tickets", HttpMethod.POST,
+                    new HttpEntity<>(reservations), BookingResult.LIST);
+        } catch (HttpClientErrorException e) {
+            return ResponseEntity.status(e.getStatusCode()).build();
+        }
+    }
+
+    // Answers once the booking is finished, instead of polling for its status
+    // The request is held open asynchronously, here and in the BookingService
+    @GetMapping("/bookings/{transactionID}/status")
+    public ListenableFuture<ResponseEntity<String>> waitForBooking(@PathVariable String transactionID) {
+        return this.asyncRestTemplate.getForEntity("http://booking-service/booking/waitstatus/{transactionID}",
+                String.class, transactionID);
     }
 
 }
@@ -211,4 +296,31 @@ class Reservation {
     public String getReservationTransactionID() {
         return reservationTransactionID;
     }
-}
\ No newline at end of file
+}
+
+// Data Transfer Object DTO for the outcome of one reservation of a group booking
+class BookingResult {
+
+    static final ParameterizedTypeReference<List<BookingResult>> LIST = new ParameterizedTypeReference<List<BookingResult>>() {
+    };
+
+    private String transactionID;
+    private String outcome;
+    private String error;
+
+    public BookingResult() {
+
+    }
+
+    public String getTransactionID() {
+        return transactionID;
+    }
+
+    public String getOutcome() {
+        return outcome;
+    }
+
+    public String getError() {
+        return error;
+    }
+}
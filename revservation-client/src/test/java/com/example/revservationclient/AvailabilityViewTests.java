@@ -0,0 +1,38 @@
+package com.example.revservationclient;
+
+import com.example.reservationevents.InventoryEvent;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AvailabilityViewTests {
+
+	private final AvailabilityView view = new AvailabilityView(1000);
+
+	@Test
+	public void turnsAwayBookingsAFreshCountCannotSatisfy() {
+		view.inventoryChanged(new InventoryEvent("Pune", 3));
+
+		assertThat(view.clearlyUnavailable("Pune", 2)).isFalse();
+		// would take the last ticket
+		assertThat(view.clearlyUnavailable(" Pune ", 3)).isTrue();
+		// never heard of, the Ticket Service decides
+		assertThat(view.clearlyUnavailable("Agra", 100)).isFalse();
+	}
+
+	@Test
+	public void staleOrOvertakenCountsAreNotTrusted() {
+		InventoryEvent old = new InventoryEvent("Pune", 0);
+		old.setTimestamp(System.currentTimeMillis() - 5000);
+		view.inventoryChanged(old);
+		assertThat(view.clearlyUnavailable("Pune", 1)).isFalse();
+
+		InventoryEvent newer = new InventoryEvent("Pune", 50);
+		view.inventoryChanged(newer);
+		InventoryEvent overtaken = new InventoryEvent("Pune", 0);
+		overtaken.setTimestamp(newer.getTimestamp() - 1);
+		view.inventoryChanged(overtaken);
+		assertThat(view.clearlyUnavailable("Pune", 1)).isFalse();
+	}
+
+}
@@ -0,0 +1,41 @@
+package com.example.revservationclient;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = "gateway.mode=reactive")
+public class ReactiveReservationAPIGatewayTests {
+
+	@Autowired
+	private ReactiveReservationAPIGateway gateway;
+
+	@Autowired
+	private GatewayCaches caches;
+
+	@Test
+	public void servesLastKnownGoodWhenTicketServiceIsUnreachable() throws InterruptedException {
+		Collection<Ticket> snapshot = Collections.singletonList(new Ticket("Pune", 12));
+		caches.tickets().put(GatewayCaches.ALL, snapshot, caches.tickets().generation());
+		caches.tickets().invalidateAll();
+
+		DeferredResult<Collection<Ticket>> result = gateway.getTicketList();
+
+		CountDownLatch answered = new CountDownLatch(1);
+		result.setResultHandler(value -> answered.countDown());
+		assertThat(answered.await(10, TimeUnit.SECONDS)).isTrue();
+		assertThat(result.getResult()).isSameAs(snapshot);
+	}
+
+}
@@ -0,0 +1,55 @@
+package com.example.revservationclient;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ReadThroughCacheTests {
+
+	private final AtomicLong now = new AtomicLong();
+	private final AtomicInteger loads = new AtomicInteger();
+	private final ReadThroughCache<Integer> cache = new ReadThroughCache<>(1000, 2, now::get);
+
+	@Test
+	public void servesFromCacheUntilExpiredOrInvalidated() {
+		assertThat(cache.get("all", loads::incrementAndGet)).isEqualTo(1);
+		now.set(999);
+		assertThat(cache.get("all", loads::incrementAndGet)).isEqualTo(1);
+
+		now.set(1000);
+		assertThat(cache.get("all", loads::incrementAndGet)).isEqualTo(2);
+
+		cache.invalidateAll();
+		assertThat(cache.get("all", loads::incrementAndGet)).isEqualTo(3);
+		assertThat(cache.hits()).isEqualTo(1);
+		assertThat(cache.misses()).isEqualTo(3);
+	}
+
+	@Test
+	public void keepsLastKnownGoodWhenUpstreamFails() {
+		cache.get("all", () -> 7);
+		cache.invalidateAll();
+
+		assertThatThrownBy(() -> cache.get("all", () -> {
+			throw new IllegalStateException("upstream down");
+		})).isInstanceOf(IllegalStateException.class);
+		assertThat(cache.lastKnownGood("all")).isEqualTo(7);
+		assertThat(cache.lastKnownGood("other")).isNull();
+	}
+
+	@Test
+	public void evictsOldestKeyOverMaxEntries() {
+		cache.get("a", () -> 1);
+		cache.get("b", () -> 2);
+		cache.get("c", () -> 3);
+
+		assertThat(cache.size()).isEqualTo(2);
+		assertThat(cache.lastKnownGood("a")).isNull();
+		assertThat(cache.lastKnownGood("c")).isEqualTo(3);
+	}
+
+}
@@ -0,0 +1,263 @@
+package com.example.ticketservice;
+
+import com.example.reservationevents.JournalSegments;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.IntSupplier;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Journal of the inventory state that lives only in memory: the counts not yet
+ * written to the database and the seats held. Every change is appended to a
+ * memory-mapped {@link JournalSegments segment file}, which costs no system
+ * call and survives the process; a snapshot of the whole state, compressed,
+ * replaces the segments before it now and then. After a restart
+ * {@link #recover} reads the latest snapshot and the segments written since.
+ * <p>
+ * Recording is idempotent on replay: a count is overwritten by a later one, a
+ * hold recorded twice is held once and a settled hold is gone. Without
+ * {@code ticket.journal.dir} nothing is recorded.
+ */
+@Component
+class InventoryJournal implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(InventoryJournal.class);
+
+    private static final byte STORED = 1;
+    private static final byte HOLD = 2;
+    private static final byte SETTLE = 3;
+    private static final int SNAPSHOT_VERSION = 1;
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+
+    private final Path dir;
+    private final JournalSegments segments;
+
+    @Autowired
+    InventoryJournal(@Value("${ticket.journal.dir:}") String dir,
+                     @Value("${ticket.journal.segment-bytes:16777216}") int segmentBytes) throws IOException {
+        this.dir = dir.isEmpty() ? null : Paths.get(dir);
+        this.segments = this.dir == null ? null
+                : new JournalSegments(this.dir, SEGMENT_PREFIX, segmentBytes, latestSnapshot(this.dir));
+    }
+
+    static InventoryJournal disabled() {
+        try {
+            return new InventoryJournal("", 0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public boolean isEnabled() {
+        return dir != null;
+    }
+
+    /**
+     * Records the stored count of the location, read under the journal's lock so
+     * that the last record of a location has its latest count.
+     */
+    public void stored(String location, IntSupplier stored) {
+        if (dir == null) {
+            return;
+        }
+        synchronized (this) {
+            segments.append(record(STORED, location, null, stored.getAsInt(), 0));
+        }
+    }
+
+    public void hold(String transactionID, String location, int seats, long deadline) {
+        if (dir != null) {
+            segments.append(record(HOLD, transactionID, location, seats, deadline));
+        }
+    }
+
+    public void settle(String transactionID) {
+        if (dir != null) {
+            segments.append(record(SETTLE, transactionID, null, 0, 0));
+        }
+    }
+
+    /**
+     * Writes the state the reader fills in as a snapshot and deletes the segments
+     * and snapshots it replaces. Changes recorded while the state is read go to a
+     * new segment, which is replayed after the snapshot.
+     */
+    public void snapshot(Consumer<State> reader) throws IOException {
+        if (dir == null) {
+            return;
+        }
+        long covered = segments.rotate();
+        State state = new State();
+        reader.accept(state);
+        Path file = dir.resolve(JournalSegments.nameOf(SNAPSHOT_PREFIX, covered) + ".gz");
+        Path temporary = dir.resolve(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new GZIPOutputStream(Files.newOutputStream(temporary))))) {
+            out.writeInt(SNAPSHOT_VERSION);
+            out.writeInt(state.stored.size());
+            for (Map.Entry<String, Integer> stored : state.stored.entrySet()) {
+                out.writeUTF(stored.getKey());
+                out.writeInt(stored.getValue());
+            }
+            out.writeInt(state.holds.size());
+            for (Map.Entry<String, HeldSeats> hold : state.holds.entrySet()) {
+                out.writeUTF(hold.getKey());
+                out.writeUTF(hold.getValue().location);
+                out.writeInt(hold.getValue().seats);
+                out.writeLong(hold.getValue().deadline);
+            }
+        }
+        Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE);
+        segments.deleteThrough(covered);
+        for (Path snapshot : snapshots(dir)) {
+            if (JournalSegments.numberOf(snapshot) < covered) {
+                Files.delete(snapshot);
+            }
+        }
+    }
+
+    /**
+     * The state as of the last record: the latest snapshot with the segments
+     * after it replayed over it.
+     */
+    public State recover() throws IOException {
+        State state = new State();
+        if (dir == null) {
+            return state;
+        }
+        long snapshot = latestSnapshot(dir);
+        if (snapshot > 0) {
+            readSnapshot(dir.resolve(JournalSegments.nameOf(SNAPSHOT_PREFIX, snapshot) + ".gz"), state);
+        }
+        for (Path segment : segments.segments()) {
+            if (JournalSegments.numberOf(segment) > snapshot) {
+                JournalSegments.read(segment, record -> replay(record, state));
+            }
+        }
+        return state;
+    }
+
+    @Override
+    public void close() {
+        if (segments != null) {
+            segments.close();
+        }
+    }
+
+    private static byte[] record(byte type, String key, String location, int count, long deadline) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        byte[] locationBytes = location == null ? new byte[0] : location.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer record = ByteBuffer.allocate(1 + 2 + keyBytes.length + 2 + locationBytes.length + 4 + 8);
+        record.put(type);
+        record.putShort((short) keyBytes.length).put(keyBytes);
+        record.putShort((short) locationBytes.length).put(locationBytes);
+        record.putInt(count).putLong(deadline);
+        return record.array();
+    }
+
+    private static void replay(ByteBuffer record, State state) {
+        byte type = record.get();
+        String key = string(record);
+        String location = string(record);
+        int count = record.getInt();
+        long deadline = record.getLong();
+        switch (type) {
+            case STORED:
+                state.stored.put(key, count);
+                break;
+            case HOLD:
+                state.holds.putIfAbsent(key, new HeldSeats(location, count, deadline));
+                break;
+            case SETTLE:
+                state.holds.remove(key);
+                break;
+            default:
+                log.warn("Unknown inventory journal record type {}, skipped", type);
+        }
+    }
+
+    private static void readSnapshot(Path file, State state) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(Files.newInputStream(file))))) {
+            int version = in.readInt();
+            if (version != SNAPSHOT_VERSION) {
+                throw new IOException("Unknown snapshot version " + version + " in " + file);
+            }
+            for (int i = in.readInt(); i > 0; i--) {
+                state.stored.put(in.readUTF(), in.readInt());
+            }
+            for (int i = in.readInt(); i > 0; i--) {
+                state.holds.put(in.readUTF(), new HeldSeats(in.readUTF(), in.readInt(), in.readLong()));
+            }
+        }
+    }
+
+    private static String string(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static long latestSnapshot(Path dir) throws IOException {
+        long latest = 0;
+        for (Path snapshot : snapshots(dir)) {
+            latest = Math.max(latest, JournalSegments.numberOf(snapshot));
+        }
+        return latest;
+    }
+
+    private static List<Path> snapshots(Path dir) throws IOException {
+        List<Path> snapshots = new ArrayList<>();
+        if (Files.isDirectory(dir)) {
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, SNAPSHOT_PREFIX + "*.gz")) {
+                stream.forEach(snapshots::add);
+            }
+        }
+        return snapshots;
+    }
+
+    // Stored counts by location and holds by transaction ID
+    static final class State {
+
+        final Map<String, Integer> stored = new HashMap<>();
+        final Map<String, HeldSeats> holds = new LinkedHashMap<>();
+    }
+
+    static final class HeldSeats {
+
+        final String location;
+        final int seats;
+        final long deadline;
+
+        HeldSeats(String location, int seats, long deadline) {
+            this.location = location;
+            this.seats = seats;
+            this.deadline = deadline;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.ticketservice;
+
+import com.example.reservationevents.InventoryEvent;
+import com.example.reservationevents.SagaEventPublisher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes the available tickets of each location as INVENTORY events, for the
+ * gateways' copies of the inventory (see AvailabilityView in the gateway).
+ * <p>
+ * Every {@code ticket.inventory.publish-ms} the locations whose count changed
+ * since the last look are sent, once each with their latest count, so a busy
+ * location costs one event per period however many bookings it takes. Every
+ * {@code ticket.inventory.refresh-ms} all locations are sent, which bounds how
+ * stale a copy that missed an event can get.
+ */
+@Component
+class InventoryPublisher {
+
+    private static final Logger log = LoggerFactory.getLogger(InventoryPublisher.class);
+
+    private final TicketInventory inventory;
+    private final SagaEventPublisher publisher;
+    private final long publishMillis;
+    private final long refreshMillis;
+
+    // the counts last sent, only touched by the publishing thread
+    private final Map<String, Integer> published = new HashMap<>();
+    private long lastRefresh;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "ticket-inventory-publisher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Autowired
+    InventoryPublisher(TicketInventory inventory, SagaEventPublisher publisher,
+                       @Value("${ticket.inventory.publish-ms:200}") long publishMillis,
+                       @Value("${ticket.inventory.refresh-ms:5000}") long refreshMillis) {
+        this.inventory = inventory;
+        this.publisher = publisher;
+        this.publishMillis = publishMillis;
+        this.refreshMillis = refreshMillis;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        scheduler.scheduleWithFixedDelay(this::publishChanges, publishMillis, publishMillis, TimeUnit.MILLISECONDS);
+    }
+
+    void publishChanges() {
+        long now = System.currentTimeMillis();
+        boolean refresh = now - lastRefresh >= refreshMillis;
+        if (refresh) {
+            lastRefresh = now;
+        }
+        inventory.forEachAvailable((location, available) -> {
+            if (!refresh && available.equals(published.get(location))) {
+                return;
+            }
+            try {
+                publisher.publish(new InventoryEvent(location, available));
+                published.put(location, available);
+            } catch (RuntimeException e) {
+                // sent again on the next look, the count still differs from the last one sent
+                log.warn("Could not publish the inventory of {}", location, e);
+            }
+        });
+    }
+
+    // before the bindings stop, so nothing is sent to an unbound destination
+    @EventListener(ContextClosedEvent.class)
+    public void close() {
+        scheduler.shutdownNow();
+    }
+}
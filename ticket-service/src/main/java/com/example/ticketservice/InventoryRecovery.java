@@ -0,0 +1,89 @@
+package com.example.ticketservice;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Brings the inventory back to where it was before a restart, from the
+ * {@link InventoryJournal}: the stored counts the writer had not written yet, and
+ * the seats held. Every {@code ticket.journal.snapshot-ms}, and on shutdown, the
+ * whole state is written as a snapshot, so recovery replays the journal since
+ * then only.
+ */
+@Component
+class InventoryRecovery {
+
+    private static final Logger log = LoggerFactory.getLogger(InventoryRecovery.class);
+
+    private final InventoryJournal journal;
+    private final TicketInventory inventory;
+    private final SeatHolds holds;
+    private final long snapshotMillis;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "ticket-inventory-snapshot");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Autowired
+    InventoryRecovery(InventoryJournal journal, TicketInventory inventory, SeatHolds holds,
+                      @Value("${ticket.journal.snapshot-ms:60000}") long snapshotMillis) {
+        this.journal = journal;
+        this.inventory = inventory;
+        this.holds = holds;
+        this.snapshotMillis = snapshotMillis;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void recover() throws IOException {
+        if (!journal.isEnabled()) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        InventoryJournal.State state = journal.recover();
+        state.stored.forEach(inventory::restore);
+        int restored = 0;
+        for (Map.Entry<String, InventoryJournal.HeldSeats> hold : state.holds.entrySet()) {
+            InventoryJournal.HeldSeats seats = hold.getValue();
+            if (holds.restore(hold.getKey(), seats.location, seats.seats, seats.deadline)) {
+                restored++;
+            }
+        }
+        log.info("Recovered the counts of {} locations and {} of {} holds from the journal in {} ms",
+                state.stored.size(), restored, state.holds.size(), System.currentTimeMillis() - start);
+        scheduler.scheduleWithFixedDelay(this::snapshot, snapshotMillis, snapshotMillis, TimeUnit.MILLISECONDS);
+    }
+
+    void snapshot() {
+        try {
+            journal.snapshot(state -> {
+                inventory.forEachStored(state.stored::put);
+                holds.forEachHold(state.holds::put);
+            });
+        } catch (IOException | RuntimeException e) {
+            // the journal still has everything, it is only longer to replay
+            log.warn("Could not write an inventory snapshot", e);
+        }
+    }
+
+    @PreDestroy
+    public void close() throws InterruptedException {
+        scheduler.shutdown();
+        scheduler.awaitTermination(10, TimeUnit.SECONDS);
+        snapshot();
+        journal.close();
+    }
+}
@@ -0,0 +1,242 @@
+package com.example.ticketservice;
+
+import com.example.reservationevents.KeyAffinity;
+import com.example.reservationevents.ProcessedEvents;
+import com.example.reservationevents.ReservationEvent;
+import com.example.reservationevents.ReservationSavedEvent;
+import com.example.reservationevents.SagaEventPublisher;
+import com.example.reservationevents.SagaMetrics;
+import com.example.reservationevents.TicketRejectEvent;
+import com.example.reservationevents.TicketReserveEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects the RESERVATION_SAVED events queued while the last batch was
+ * decided, waiting at most {@code ticket.batch.window-ms} for more, and handles
+ * them together. Each reservation is decided on its own, in arrival order, by
+ * holding its seats (see {@link SeatHolds}) until the Booking Service confirms
+ * or releases them, and the replies go out once the batch is decided:
+ * TICKET_RESERVE for the reservations whose seats are held, TICKET_REJECT for
+ * those the location had not enough seats left for.
+ * <p>
+ * The handler {@link #decide waits} for its reservation's batch, so the message
+ * is acknowledged only once the batch is answered. The reservations are marked
+ * processed in one transaction per batch, committed after their holds are
+ * journalled and before the replies go out. A redelivery after a crash in
+ * between is held again, which finds the hold restored and only answers again;
+ * a redelivery of a reservation marked processed is dropped, or answered again
+ * if its seats are still held, as the first answer may not have gone out.
+ * <p>
+ * No count is written while holding: the stored counts only change when the
+ * Booking Service confirms a hold, and reach the database through the inventory
+ * writer, one UPDATE per location for whatever it confirmed meanwhile, rather
+ * than one per batch.
+ * <p>
+ * With {@code reservation.events.workers} above 1 the reservations are split
+ * into that many lanes by location, each batched by its own thread, so that
+ * locations are decided in parallel and each location still in arrival order.
+ */
+@Component
+class ReservationBatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(ReservationBatcher.class);
+
+    private final SeatHolds holds;
+    private final SagaEventPublisher publisher;
+    private final SagaMetrics metrics;
+    private final ProcessedEvents processedEvents;
+    private final TransactionTemplate transactionTemplate;
+
+    private final int batchSize;
+    private final long windowNanos;
+    private final BlockingQueue<Pending>[] lanes;
+
+    private volatile boolean running;
+    private Thread[] drainers;
+
+    @Autowired
+    ReservationBatcher(SeatHolds holds, SagaEventPublisher publisher, SagaMetrics metrics,
+                       ProcessedEvents processedEvents, TransactionTemplate transactionTemplate,
+                       @Value("${ticket.batch.size:100}") int batchSize,
+                       @Value("${ticket.batch.window-ms:0}") long windowMillis,
+                       @Value("${ticket.batch.queue-capacity:10000}") int queueCapacity,
+                       @Value("${reservation.events.workers:1}") int lanes) {
+        this.holds = holds;
+        this.publisher = publisher;
+        this.metrics = metrics;
+        this.processedEvents = processedEvents;
+        this.transactionTemplate = transactionTemplate;
+        this.batchSize = batchSize;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+        this.lanes = newLanes(Math.max(1, lanes), queueCapacity);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static BlockingQueue<Pending>[] newLanes(int count, int queueCapacity) {
+        BlockingQueue<Pending>[] lanes = new BlockingQueue[count];
+        for (int i = 0; i < count; i++) {
+            lanes[i] = new ArrayBlockingQueue<>(queueCapacity);
+        }
+        return lanes;
+    }
+
+    /**
+     * Queues the reservation for the next batch of its location's lane, blocking
+     * the consumer while the lane is full.
+     *
+     * @return completed once the batch is committed and answered, or
+     * exceptionally if it failed
+     */
+    public CompletableFuture<Void> submit(ReservationSavedEvent reservation) throws InterruptedException {
+        Pending pending = new Pending(reservation);
+        lanes[KeyAffinity.workerOf(reservation.getPartitionKey(), lanes.length)].put(pending);
+        return pending.done;
+    }
+
+    /**
+     * Queues the reservation and waits until its batch is answered.
+     *
+     * @throws RuntimeException what the batch failed with
+     */
+    public void decide(ReservationSavedEvent reservation) throws InterruptedException {
+        try {
+            submit(reservation).get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        drainers = new Thread[lanes.length];
+        for (int i = 0; i < lanes.length; i++) {
+            BlockingQueue<Pending> lane = lanes[i];
+            drainers[i] = new Thread(() -> drain(lane), "reservation-batcher-" + i);
+            drainers[i].setDaemon(true);
+            drainers[i].start();
+        }
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        for (Thread drainer : drainers) {
+            drainer.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+        }
+    }
+
+    private void drain(BlockingQueue<Pending> queue) {
+        List<Pending> pending = new ArrayList<>(batchSize);
+        List<ReservationSavedEvent> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Pending first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                pending.add(first);
+                long deadline = System.nanoTime() + windowNanos;
+                while (pending.size() < batchSize) {
+                    queue.drainTo(pending, batchSize - pending.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (pending.size() >= batchSize || remaining <= 0) {
+                        break;
+                    }
+                    Pending next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    pending.add(next);
+                }
+                pending.forEach(p -> batch.add(p.reservation));
+                process(batch);
+                pending.forEach(p -> p.done.complete(null));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                // the handlers fail and their messages are redelivered
+                log.error("Could not process a batch of {} reservations", pending.size(), e);
+                pending.forEach(p -> p.done.completeExceptionally(e));
+            } finally {
+                pending.clear();
+                batch.clear();
+            }
+        }
+    }
+
+    void process(List<ReservationSavedEvent> batch) {
+        long start = System.nanoTime();
+        // marked processed once the holds are journalled, answered once that is committed
+        List<ReservationEvent> replies = transactionTemplate.execute(status -> {
+            List<ReservationEvent> decided = new ArrayList<>(batch.size());
+            for (ReservationSavedEvent reservation : batch) {
+                String transactionID = reservation.getTransactionID();
+                if (!processedEvents.markProcessed(reservation)) {
+                    // a redelivery, holding again would take the seats of a settled hold twice
+                    if (holds.isHeld(transactionID)) {
+                        decided.add(reserved(reservation));
+                    }
+                    continue;
+                }
+                String location = reservation.getReservationLocation().trim();
+                if (holds.hold(transactionID, location, reservation.getReservationCount())) {
+                    decided.add(reserved(reservation));
+                } else {
+                    // Tell the Booking Service there are not enough tickets left
+                    // Event Name is TICKET_REJECT
+                    decided.add(new TicketRejectEvent(reservation.getReservationName(),
+                            reservation.getReservationLocation(), reservation.getReservationCount(),
+                            transactionID));
+                }
+            }
+            return decided;
+        });
+
+        log.debug("Batch of {} reservations answered with {} replies", batch.size(), replies.size());
+
+        replies.forEach(publisher::publish);
+        metrics.record("saga.ticket.batch", System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    // Tell the Booking Service the tickets are reserved
+    // Event Name is TICKET_RESERVE
+    private static TicketReserveEvent reserved(ReservationSavedEvent reservation) {
+        return new TicketReserveEvent(reservation.getReservationName(), reservation.getReservationLocation(),
+                reservation.getReservationCount(), reservation.getTransactionID());
+    }
+
+    private static final class Pending {
+
+        private final ReservationSavedEvent reservation;
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        private Pending(ReservationSavedEvent reservation) {
+            this.reservation = reservation;
+        }
+    }
+}
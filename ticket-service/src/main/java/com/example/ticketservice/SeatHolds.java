@@ -0,0 +1,231 @@
+package com.example.ticketservice;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+/**
+ * Seats held for a transaction until it is confirmed, released or the hold
+ * times out. Holding takes the seats out of {@link TicketInventory#available}
+ * without touching the stored count; confirming sells them, releasing or
+ * expiring gives them back.
+ * <p>
+ * Holds live in memory only, and expire on a {@link TimingWheel}, so an
+ * outstanding hold costs a map entry and a wheel entry whatever its TTL.
+ * Holds are recorded in the {@link InventoryJournal}, and those that have not
+ * timed out are {@link #restore restored} after a restart.
+ * <p>
+ * The TTL outlasts the Booking Service's saga timeout, so a booking completes
+ * before its hold expires. A confirm that arrives after the hold expired all
+ * the same takes the seats again, if the location still has them.
+ */
+@Component
+class SeatHolds implements PublicMetrics {
+
+    private static final Logger log = LoggerFactory.getLogger(SeatHolds.class);
+
+    private final TicketInventory inventory;
+    private final InventoryJournal journal;
+    private final long defaultTtlMillis;
+    private final TimingWheel wheel;
+
+    private final ConcurrentHashMap<String, Hold> holds = new ConcurrentHashMap<>();
+    // for another TTL, or until the booking settles them, as a confirm still takes their seats
+    private final ConcurrentHashMap<String, Hold> expiredHolds = new ConcurrentHashMap<>();
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder retaken = new LongAdder();
+    private final LongAdder unmatchedConfirms = new LongAdder();
+
+    @Autowired
+    SeatHolds(TicketInventory inventory, InventoryJournal journal,
+              @Value("${ticket.hold.ttl-ms:900000}") long defaultTtlMillis,
+              @Value("${ticket.hold.wheel.tick-ms:100}") long tickMillis,
+              @Value("${ticket.hold.wheel.slots:512}") int slots) {
+        this.inventory = inventory;
+        this.journal = journal;
+        this.defaultTtlMillis = defaultTtlMillis;
+        this.wheel = new TimingWheel("seat-hold-expiry", tickMillis, TimeUnit.MILLISECONDS, slots);
+    }
+
+    public boolean hold(String transactionID, String location, int seats) {
+        return hold(transactionID, location, seats, defaultTtlMillis);
+    }
+
+    /**
+     * Holds the seats for the transaction for {@code ttlMillis}, if the location
+     * has them. Holding again for a transaction that holds seats already only
+     * tells whether it does.
+     *
+     * @return whether the transaction holds seats
+     */
+    public boolean hold(String transactionID, String location, int seats, long ttlMillis) {
+        if (holds.containsKey(transactionID)) {
+            return true;
+        }
+        if (!inventory.tryHold(location, seats)) {
+            return false;
+        }
+        Hold hold = new Hold(location, seats, System.currentTimeMillis() + ttlMillis);
+        // recorded first, a hold recorded twice for the transaction is restored once
+        journal.hold(transactionID, location, seats, hold.deadline);
+        if (holds.putIfAbsent(transactionID, hold) != null) {
+            // a concurrent hold for the same transaction got there first
+            inventory.release(location, seats);
+            return true;
+        }
+        hold.timeout = wheel.schedule(() -> expire(transactionID, hold), ttlMillis, TimeUnit.MILLISECONDS);
+        return true;
+    }
+
+    /**
+     * Holds the seats again for a hold recorded before a restart, until its
+     * original deadline.
+     *
+     * @return false if the hold has timed out meanwhile, its seats are free again
+     */
+    boolean restore(String transactionID, String location, int seats, long deadline) {
+        long ttlMillis = deadline - System.currentTimeMillis();
+        Hold hold = new Hold(location, seats, deadline);
+        if (ttlMillis <= 0) {
+            expiredHolds.put(transactionID, hold);
+            forgetLater(transactionID, hold);
+            expired.increment();
+            return false;
+        }
+        if (holds.putIfAbsent(transactionID, hold) != null) {
+            return true;
+        }
+        inventory.restoreHeld(location, seats);
+        hold.timeout = wheel.schedule(() -> expire(transactionID, hold), ttlMillis, TimeUnit.MILLISECONDS);
+        return true;
+    }
+
+    /**
+     * Hands every outstanding hold to the consumer, with its transaction ID.
+     */
+    void forEachHold(BiConsumer<String, InventoryJournal.HeldSeats> consumer) {
+        holds.forEach((transactionID, hold) ->
+                consumer.accept(transactionID, new InventoryJournal.HeldSeats(hold.location, hold.seats, hold.deadline)));
+    }
+
+    /**
+     * Sells the seats held for the transaction, or, if its hold has expired, the
+     * same number of seats of the location again, if it still has them.
+     *
+     * @return false if no seats were sold, because they were never available,
+     * the hold was released, or it expired and the location has sold out since
+     */
+    public boolean confirm(String transactionID) {
+        Hold hold = settle(transactionID);
+        if (hold != null) {
+            inventory.confirm(hold.location, hold.seats);
+            return true;
+        }
+        Hold expiredHold = expiredHolds.remove(transactionID);
+        if (expiredHold != null && inventory.tryReserve(expiredHold.location, expiredHold.seats)) {
+            retaken.increment();
+            return true;
+        }
+        unmatchedConfirms.increment();
+        if (expiredHold != null) {
+            log.warn("The hold of transaction {} expired and {} has not {} seats left, nothing sold",
+                    transactionID, expiredHold.location, expiredHold.seats);
+        } else {
+            log.debug("No seats held for transaction {}, nothing to confirm", transactionID);
+        }
+        return false;
+    }
+
+    /**
+     * Gives back the seats held for the transaction.
+     *
+     * @return false if the transaction holds nothing
+     */
+    public boolean release(String transactionID) {
+        expiredHolds.remove(transactionID);
+        Hold hold = settle(transactionID);
+        if (hold == null) {
+            return false;
+        }
+        inventory.release(hold.location, hold.seats);
+        return true;
+    }
+
+    public boolean isHeld(String transactionID) {
+        return holds.containsKey(transactionID);
+    }
+
+    public int active() {
+        return holds.size();
+    }
+
+    // Whichever of confirm, release and expire removes the hold settles it
+    private Hold settle(String transactionID) {
+        Hold hold = holds.remove(transactionID);
+        if (hold != null) {
+            journal.settle(transactionID);
+            if (hold.timeout != null) {
+                hold.timeout.cancel();
+            }
+        }
+        return hold;
+    }
+
+    private void expire(String transactionID, Hold hold) {
+        // remembered first, so that a confirm that finds the hold gone finds it expired
+        expiredHolds.put(transactionID, hold);
+        if (holds.remove(transactionID, hold)) {
+            journal.settle(transactionID);
+            inventory.release(hold.location, hold.seats);
+            forgetLater(transactionID, hold);
+            expired.increment();
+        } else {
+            expiredHolds.remove(transactionID, hold);
+        }
+    }
+
+    private void forgetLater(String transactionID, Hold hold) {
+        wheel.schedule(() -> expiredHolds.remove(transactionID, hold), defaultTtlMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        return Arrays.<Metric<?>>asList(
+                new Metric<>("ticket.holds.active", holds.size()),
+                new Metric<>("ticket.holds.expired", expired.sum()),
+                new Metric<>("ticket.holds.retaken", retaken.sum()),
+                new Metric<>("ticket.holds.unmatched-confirms", unmatchedConfirms.sum()));
+    }
+
+    @PreDestroy
+    public void close() throws InterruptedException {
+        wheel.close();
+    }
+
+    private static final class Hold {
+
+        private final String location;
+        private final int seats;
+        private final long deadline;
+        // set right after the hold is published; a settle in between leaves the timeout to find it gone
+        private volatile TimingWheel.Timeout timeout;
+
+        private Hold(String location, int seats, long deadline) {
+            this.location = location;
+            this.seats = seats;
+            this.deadline = deadline;
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package com.example.ticketservice;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+/**
+ * Ticket counts per location, held in memory so that reserving tickets is a
+ * compare-and-set on a counter instead of a read-modify-write against H2.
+ * <p>
+ * Changed counts are written through to the {@link TicketRepository} by a
+ * single background writer. A location that changes many times before the
+ * writer gets to it is written once, with its latest count.
+ * <p>
+ * Seats can also be held (see {@link SeatHolds}): a held seat is no longer
+ * available, but stays in the stored count until the hold is confirmed.
+ * <p>
+ * Every change to a stored count is recorded in the {@link InventoryJournal}
+ * before the writer gets to it, so a crash loses none.
+ */
+@Component
+class TicketInventory {
+
+    private static final Logger log = LoggerFactory.getLogger(TicketInventory.class);
+
+    private final TicketRepository ticketRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final InventoryJournal journal;
+
+    private final ConcurrentHashMap<String, Stock> counts = new ConcurrentHashMap<>();
+    private final Set<String> dirty = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean writeScheduled = new AtomicBoolean();
+    private final ScheduledExecutorService writer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "ticket-inventory-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Autowired
+    TicketInventory(TicketRepository ticketRepository, PlatformTransactionManager transactionManager,
+                    InventoryJournal journal) {
+        this.ticketRepository = ticketRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.journal = journal;
+    }
+
+    // before the journal is replayed over the counts, see InventoryRecovery
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        for (Ticket ticket : ticketRepository.findAll()) {
+            counts.putIfAbsent(ticket.getTicketLocation(), new Stock(ticket.getTicketCounts()));
+        }
+        log.info("Loaded ticket inventory for {} locations", counts.size());
+    }
+
+    /**
+     * Takes {@code tickets} from the location if that still leaves tickets behind,
+     * the same rule the service has always applied, and writes the new count
+     * through to the database in the background.
+     *
+     * @return whether the tickets were taken
+     */
+    public boolean tryReserve(String location, int tickets) {
+        Stock stock = counter(location);
+        if (stock != null && stock.take(tickets, 0)) {
+            markDirty(location);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Moves {@code tickets} from available to held, on the same rule as
+     * {@link #tryReserve}. Nothing is written: the stored count includes the
+     * held tickets until they are {@link #confirm confirmed}.
+     */
+    public boolean tryHold(String location, int tickets) {
+        Stock stock = counter(location);
+        return stock != null && stock.take(tickets, tickets);
+    }
+
+    /**
+     * Sells held tickets, writing the lower count through in the background.
+     */
+    public void confirm(String location, int tickets) {
+        Stock stock = counts.get(location);
+        if (stock != null) {
+            stock.add(0, -tickets);
+            markDirty(location);
+        }
+    }
+
+    /**
+     * Makes held tickets available again.
+     */
+    public void release(String location, int tickets) {
+        Stock stock = counts.get(location);
+        if (stock != null) {
+            stock.add(tickets, -tickets);
+        }
+    }
+
+    /**
+     * Tickets of the location neither sold nor held, or -1 if the location is unknown.
+     */
+    public int available(String location) {
+        Stock stock = counter(location);
+        return stock == null ? -1 : Stock.available(stock.get());
+    }
+
+    /**
+     * Hands every known location and its available tickets to the consumer.
+     */
+    public void forEachAvailable(BiConsumer<String, Integer> consumer) {
+        counts.forEach((location, stock) -> consumer.accept(location, Stock.available(stock.get())));
+    }
+
+    /**
+     * Hands every known location and its stored count to the consumer.
+     */
+    public void forEachStored(BiConsumer<String, Integer> consumer) {
+        counts.forEach((location, stock) -> consumer.accept(location, Stock.stored(stock.get())));
+    }
+
+    /**
+     * Tickets of the location held and not yet confirmed or released.
+     */
+    public int held(String location) {
+        Stock stock = counts.get(location);
+        return stock == null ? 0 : Stock.held(stock.get());
+    }
+
+    /**
+     * Sets the ticket count of a location, creating it if needed. Master data is
+     * written synchronously, there is one row per location. Tickets held stay
+     * held, out of the new count.
+     */
+    public synchronized Ticket save(String location, int tickets) {
+        Ticket ticket = ticketRepository.findByTicketLocation(location);
+        if (ticket == null) {
+            ticket = new Ticket(location, tickets);
+        } else {
+            ticket.setTicketCounts(tickets);
+        }
+        ticket = ticketRepository.save(ticket);
+        Stock stock = counts.putIfAbsent(location, new Stock(tickets));
+        if (stock != null) {
+            stock.setStored(tickets);
+        }
+        journal.stored(location, () -> tickets);
+        return ticket;
+    }
+
+    /**
+     * Sets the stored count a crash left unwritten, and writes it through.
+     */
+    void restore(String location, int stored) {
+        Stock stock = counts.putIfAbsent(location, new Stock(stored));
+        if (stock != null) {
+            stock.setStored(stored);
+        }
+        markDirty(location);
+    }
+
+    /**
+     * Holds the tickets of a hold that outlived a restart, whether they are
+     * available or not: they were when it was taken.
+     */
+    void restoreHeld(String location, int tickets) {
+        Stock stock = counts.get(location);
+        if (stock != null) {
+            stock.add(-tickets, tickets);
+        }
+    }
+
+    private Stock counter(String location) {
+        Stock stock = counts.get(location);
+        if (stock != null) {
+            return stock;
+        }
+        // not loaded yet, or added to the table behind our back
+        Ticket ticket = ticketRepository.findByTicketLocation(location);
+        if (ticket == null) {
+            return null;
+        }
+        stock = counts.putIfAbsent(location, new Stock(ticket.getTicketCounts()));
+        return stock != null ? stock : counts.get(location);
+    }
+
+    private void markDirty(String location) {
+        journal.stored(location, () -> Stock.stored(counts.get(location).get()));
+        dirty.add(location);
+        if (writeScheduled.compareAndSet(false, true)) {
+            writer.execute(this::writeDirty);
+        }
+    }
+
+    private void writeDirty() {
+        writeScheduled.set(false);
+        List<String> locations = new ArrayList<>(dirty);
+        if (locations.isEmpty()) {
+            return;
+        }
+        dirty.removeAll(locations);
+        try {
+            // one query for the rows, their updates sent in JDBC batches on commit
+            transactionTemplate.execute(status -> {
+                for (Ticket ticket : ticketRepository.findByTicketLocationIn(locations)) {
+                    ticket.setTicketCounts(Stock.stored(counts.get(ticket.getTicketLocation()).get()));
+                }
+                return null;
+            });
+        } catch (RuntimeException e) {
+            log.warn("Could not write ticket counts for {}, will retry", locations, e);
+            dirty.addAll(locations);
+            if (writeScheduled.compareAndSet(false, true)) {
+                writer.schedule(this::writeDirty, 1, TimeUnit.SECONDS);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void close() throws InterruptedException {
+        writer.execute(this::writeDirty);
+        writer.shutdown();
+        writer.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    /**
+     * The available and held tickets of a location in one word, available in the
+     * high half, so that a hold moves tickets between them in a single
+     * compare-and-set and the writer never sees a count in between.
+     */
+    static final class Stock extends AtomicLong {
+
+        Stock(int available) {
+            super(pack(available, 0));
+        }
+
+        boolean take(int tickets, int hold) {
+            if (tickets <= 0) {
+                return false;
+            }
+            while (true) {
+                long current = get();
+                int available = available(current);
+                if (available - tickets <= 0) {
+                    return false;
+                }
+                if (compareAndSet(current, pack(available - tickets, held(current) + hold))) {
+                    return true;
+                }
+            }
+        }
+
+        void add(int available, int held) {
+            long current;
+            do {
+                current = get();
+            } while (!compareAndSet(current, pack(available(current) + available, held(current) + held)));
+        }
+
+        void setStored(int tickets) {
+            long current;
+            do {
+                current = get();
+            } while (!compareAndSet(current, pack(tickets - held(current), held(current))));
+        }
+
+        static int available(long stock) {
+            return (int) (stock >> 32);
+        }
+
+        static int held(long stock) {
+            return (int) stock;
+        }
+
+        static int stored(long stock) {
+            return available(stock) + held(stock);
+        }
+
+        private static long pack(int available, int held) {
+            return ((long) available << 32) | (held & 0xFFFFFFFFL);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.ticketservice;
+
+import com.example.reservationevents.ReplayTarget;
+import com.example.reservationevents.ReservationEvent;
+import com.example.reservationevents.ReservationSavedEvent;
+import com.example.reservationevents.SagaEvent;
+import com.example.reservationevents.TicketConfirmEvent;
+import com.example.reservationevents.TicketReleaseEvent;
+import com.example.reservationevents.TicketSaveEvent;
+import com.example.reservationevents.WriteBatch;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Recomputes the ticket count of each location from the events the service
+ * handled (see EventReplay): the count of its last TICKET_SAVE, less the seats
+ * of every booking confirmed since. Holds are taken again on the service's
+ * rule, in journal order, and give their seats back when released.
+ * <p>
+ * A location without a TICKET_SAVE in the journal, loaded by a bulk import for
+ * instance, has no count to start from and is left as it is. The holds still
+ * outstanding after the replay replace those of the {@link InventoryJournal},
+ * until the TTL from their event, so the ones that timed out are dropped on
+ * restore; holds taken through /holds are not events and are lost.
+ */
+@Component
+class TicketReplay implements ReplayTarget<TicketReplay.Location> {
+
+    private static final String UPDATE_COUNT = "update ticket set ticket_counts = ? where ticket_location = ?";
+
+    private final InventoryJournal inventoryJournal;
+    private final long holdTtlMillis;
+
+    @Autowired
+    TicketReplay(InventoryJournal inventoryJournal, @Value("${ticket.hold.ttl-ms:900000}") long holdTtlMillis) {
+        this.inventoryJournal = inventoryJournal;
+        this.holdTtlMillis = holdTtlMillis;
+    }
+
+    @Override
+    public String getName() {
+        return "ticket";
+    }
+
+    @Override
+    public String keyOf(SagaEvent event) {
+        if (event instanceof TicketSaveEvent) {
+            return ((TicketSaveEvent) event).getTicketLocation();
+        }
+        if (event instanceof ReservationSavedEvent || event instanceof TicketConfirmEvent
+                || event instanceof TicketReleaseEvent) {
+            return ((ReservationEvent) event).getReservationLocation();
+        }
+        return null;
+    }
+
+    @Override
+    public Location apply(Location location, SagaEvent event) {
+        if (location == null) {
+            location = new Location();
+        }
+        if (event instanceof TicketSaveEvent) {
+            location.stored = ((TicketSaveEvent) event).getTicketCounts();
+        } else if (event instanceof ReservationSavedEvent) {
+            int seats = ((ReservationSavedEvent) event).getReservationCount();
+            // the rule of TicketInventory.tryHold
+            if (location.stored != null && seats > 0 && location.stored - location.held - seats > 0
+                    && location.holds.putIfAbsent(event.getTransactionID(), new Hold(seats, event.getTimestamp())) == null) {
+                location.held += seats;
+            }
+        } else {
+            Hold hold = location.holds.remove(event.getTransactionID());
+            if (hold != null) {
+                location.held -= hold.seats;
+                if (event instanceof TicketConfirmEvent) {
+                    location.stored -= hold.seats;
+                }
+            }
+        }
+        return location;
+    }
+
+    @Override
+    public void write(String key, Location location, WriteBatch batch) {
+        if (location.stored != null) {
+            batch.add(UPDATE_COUNT, location.stored, key);
+        }
+    }
+
+    @Override
+    public void replayed(Map<String, Location> locations) {
+        try {
+            // the counts of the other locations the writer had not written yet are kept
+            InventoryJournal.State recovered = inventoryJournal.recover();
+            inventoryJournal.snapshot(state -> {
+                state.stored.putAll(recovered.stored);
+                locations.forEach((key, location) -> {
+                    if (location.stored != null) {
+                        state.stored.put(key, location.stored);
+                    }
+                    location.holds.forEach((transactionID, hold) -> state.holds.put(transactionID,
+                            new InventoryJournal.HeldSeats(key, hold.seats, hold.heldAt + holdTtlMillis)));
+                });
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not replace the inventory journal with the replayed counts", e);
+        }
+    }
+
+    static final class Location {
+
+        private Integer stored;
+        private int held;
+        private final Map<String, Hold> holds = new LinkedHashMap<>();
+
+        // null if the journal has no count to start from
+        Integer getStored() {
+            return stored;
+        }
+
+        int getHeld() {
+            return held;
+        }
+    }
+
+    private static final class Hold {
+
+        private final int seats;
+        private final long heldAt;
+
+        private Hold(int seats, long heldAt) {
+            this.seats = seats;
+            this.heldAt = heldAt;
+        }
+    }
+}
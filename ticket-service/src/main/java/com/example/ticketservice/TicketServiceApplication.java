@@ -1,40 +1,87 @@
 package com.example.ticketservice;
 
+import com.example.reservationevents.BulkImporter;
+import com.example.reservationevents.EventJournal;
+import com.example.reservationevents.ImportTable;
+import com.example.reservationevents.ProcessedEvents;
+import com.example.reservationevents.ReservationSavedEvent;
+import com.example.reservationevents.TicketConfirmEvent;
+import com.example.reservationevents.TicketReleaseEvent;
+import com.example.reservationevents.TicketSaveEvent;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.cloud.stream.annotation.EnableBinding;
-import org.springframework.cloud.stream.messaging.Sink;
-import org.springframework.cloud.stream.messaging.Source;
+import org.springframework.cloud.stream.annotation.Input;
+import org.springframework.cloud.stream.annotation.StreamListener;
 import org.springframework.context.annotation.Bean;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.data.rest.core.annotation.RepositoryRestResource;
 import org.springframework.data.rest.core.annotation.RestResource;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.integration.annotation.IntegrationComponentScan;
 import org.springframework.integration.annotation.MessageEndpoint;
-import org.springframework.integration.annotation.ServiceActivator;
-import org.springframework.messaging.Message;
-import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.SubscribableChannel;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
 
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.List;
 import java.util.Random;
+import java.util.UUID;
 import java.util.stream.Stream;
 
 @IntegrationComponentScan
-@EnableBinding({Sink.class, Source.class})
+@EnableBinding(TicketChannels.class)
 @SpringBootApplication
 public class TicketServiceApplication {
 
     @Bean
-    public CommandLineRunner commandLineRunner(TicketRepository tr) {
+    public CommandLineRunner commandLineRunner(TicketInventory inventory, TicketRepository ticketRepository,
+                                               BulkImporter importer, EventJournal eventJournal,
+                                               @Value("${ticket.import.file:}") String importFile) {
         return args -> {
+            // a durable database has its tickets from the last run
+            if (ticketRepository.count() > 0) {
+                return;
+            }
+            if (!importFile.isEmpty()) {
+                // the catalogue is loaded in the background, the service is OUT_OF_SERVICE until it is in
+                importer.submit(Paths.get(importFile), new ImportTable("ticket")
+                        .column("ticketLocation", "ticket_location")
+                        .column("ticketCounts", "ticket_counts"))
+                        .thenRun(inventory::load);
+                return;
+            }
             final Random random = new Random(500);
             Stream.of("Delhi", "Mumbai", "Pune", "Bangalore", "Patna", "Lucknow", "Kanpur", "Agra").
-                    forEach(pname -> tr.save(new Ticket(pname, random.nextInt(500))));
+                    forEach(pname -> {
+                        int tickets = random.nextInt(500);
+                        inventory.save(pname, tickets);
+                        // master data like a TICKET_SAVE, the count TicketReplay starts the location from
+                        eventJournal.append(new TicketSaveEvent(pname, tickets));
+                    });
 
         };
     }
@@ -44,64 +91,73 @@ public class TicketServiceApplication {
     }
 }
 
+// Each event type the Ticket Service handles arrives on its own destination;
+// master data has its own lane so bulk loads do not hold up bookings
+interface TicketChannels {
+
+    String SAVED_RESERVATIONS = "savedReservations";
+    String MASTER_TICKETS = "masterTickets";
+    String TICKET_CONFIRMATIONS = "ticketConfirmations";
+    String TICKET_RELEASES = "ticketReleases";
+
+    @Input(SAVED_RESERVATIONS)
+    SubscribableChannel savedReservations();
+
+    @Input(MASTER_TICKETS)
+    SubscribableChannel masterTickets();
+
+    @Input(TICKET_CONFIRMATIONS)
+    SubscribableChannel ticketConfirmations();
+
+    @Input(TICKET_RELEASES)
+    SubscribableChannel ticketReleases();
+}
 
 @MessageEndpoint
 class TicketProcessor {
 
     @Autowired
-    private TicketRepository ticketRepository;
+    private TicketInventory inventory;
 
     @Autowired
-    private Source source;
-
-    @ServiceActivator(inputChannel = Sink.INPUT)
-    public void acceptTicketLocation(String msg) {
+    private ReservationBatcher batcher;
 
-        String msgParts[] = msg.trim().split(",");
+    @Autowired
+    private SeatHolds holds;
 
-        if (msgParts[0].equalsIgnoreCase("TICKET_SAVE")) {
-            this.ticketRepository.save(new Ticket(msgParts[1], Integer.parseInt(msgParts[2])));
-        }
+    @Autowired
+    private ProcessedEvents processedEvents;
 
-        // Send a Message for Ticket Service
-        // Msg format is RESERVATION_SAVED,<Reservation_Name>,<Reservation_Location>,<Reservation_Count>,<Reservation_TransactionID>
-        if (msgParts[0].trim().equalsIgnoreCase("RESERVATION_SAVED")) { //RESERVATION_SAVED
-            Ticket inboundTicket = new Ticket(msgParts[2], Integer.parseInt(msgParts[3]));
-            Ticket existingTicket = ticketRepository.findByTicketLocation(msgParts[2].trim());
+    @Autowired
+    private TransactionTemplate transactionTemplate;
 
-            System.out.println("-------------------------------------");
-            System.out.println("Inbound Ticket Details--->");
-            System.out.println("Location:: " + inboundTicket.getTicketLocation() + " Counts :: " + inboundTicket.getTicketCounts());
-            System.out.println("-------------------------------------");
+    // Message from APIGateway
+    @StreamListener(TicketChannels.MASTER_TICKETS)
+    public void saveLocation(TicketSaveEvent ticket) {
+        inventory.save(ticket.getTicketLocation(), ticket.getTicketCounts());
+    }
 
-            if (existingTicket != null) {
-                System.out.println("-------------------------------------");
-                System.out.println("Existing Ticket Details--->");
-                System.out.println("Location:: " + existingTicket.getTicketLocation() + " Counts :: " + existingTicket.getTicketCounts());
-                System.out.println("-------------------------------------");
-            }
+    // Message from Reservation Service
+    // decided and answered in batches, see ReservationBatcher; the seats are held until the booking settles
+    @StreamListener(TicketChannels.SAVED_RESERVATIONS)
+    public void acceptTicketLocation(ReservationSavedEvent reservation) throws InterruptedException {
+        // marked processed by the batcher, once the seats are held
+        batcher.decide(reservation);
+    }
 
-            if (existingTicket != null) {
-                if (inboundTicket.getTicketLocation().equalsIgnoreCase(existingTicket.getTicketLocation())) {
-                    inboundTicket.setId(existingTicket.getId());
-                    if (existingTicket.getTicketCounts() - inboundTicket.getTicketCounts() > 0) {
-                        inboundTicket.setTicketCounts(existingTicket.getTicketCounts() - inboundTicket.getTicketCounts());
-                        this.ticketRepository.save(inboundTicket);
-                    }
-                }
-            }
-            // Save Reservation
-            // Event Name is RESERVATION_SAVE
-            // Msg format is RESERVATION_SAVE,<Reservation_Name>,<Reservation_Location>,<Reservation_Count>,<TransID>
-            Message<String> message = MessageBuilder.withPayload("TICKET_RESERVE" + ","
-                    + msgParts[1] + ","
-                    + msgParts[2] + ","
-                    + msgParts[3] + ","
-                    + msgParts[4])
-                    .build();
-            source.output().send(message);
+    // Message from Booking Service, the booking is complete
+    // the mark commits after the settled hold is journalled; a redelivery in between finds nothing held
+    @StreamListener(TicketChannels.TICKET_CONFIRMATIONS)
+    public void confirmTickets(TicketConfirmEvent confirmed) {
+        transactionTemplate.execute(status ->
+                processedEvents.markProcessed(confirmed) && holds.confirm(confirmed.getTransactionID()));
+    }
 
-        }
+    // Message from Booking Service, the booking will not happen
+    @StreamListener(TicketChannels.TICKET_RELEASES)
+    public void releaseTickets(TicketReleaseEvent released) {
+        transactionTemplate.execute(status ->
+                processedEvents.markProcessed(released) && holds.release(released.getTransactionID()));
     }
 
 }
@@ -112,10 +168,133 @@ interface TicketRepository extends JpaRepository<Ticket, Long> {
 
     @RestResource(path = "by-location")
     Ticket findByTicketLocation(@Param("location") String ticketLocation);
+
+    @RestResource(exported = false)
+    List<Ticket> findByTicketLocationIn(Collection<String> ticketLocations);
+
+    @Modifying
+    @Query("update Ticket t set t.ticketCounts = t.ticketCounts - :tickets where t.ticketLocation = :location")
+    @RestResource(exported = false)
+    int takeTickets(@Param("location") String ticketLocation, @Param("tickets") int tickets);
+
+    // Slim listings, see TicketListingController
+
+    @RestResource(exported = false)
+    Page<TicketRow> findAllProjectedBy(Pageable pageable);
+
+    @RestResource(exported = false)
+    List<TicketRow> findByIdGreaterThanOrderByIdAsc(Long id, Pageable pageable);
+}
+
+// Projection of a Ticket for listings, without HAL links
+interface TicketRow {
+
+    Long getId();
+
+    String getTicketLocation();
+
+    int getTicketCounts();
+}
+
+// Lists ticket locations a page at a time as plain JSON, for clients that
+// cannot afford the whole HAL collection of /tickets
+@RestController
+@RequestMapping("/listing/tickets")
+class TicketListingController {
+
+    @Autowired
+    private TicketRepository ticketRepository;
+
+    @Value("${listing.max-page-size:1000}")
+    private int maxPageSize;
+
+    // Rows with an ID above the cursor; pass the ID of the last row to get the next ones
+    @GetMapping
+    public List<TicketRow> after(@RequestParam(defaultValue = "0") long after,
+                                 @RequestParam(defaultValue = "500") int size) {
+        return ticketRepository.findByIdGreaterThanOrderByIdAsc(after, new PageRequest(0, pageSize(size)));
+    }
+
+    @GetMapping("/pages")
+    public Page<TicketRow> page(@RequestParam(defaultValue = "0") int page,
+                                @RequestParam(defaultValue = "500") int size) {
+        return ticketRepository.findAllProjectedBy(new PageRequest(page, pageSize(size)));
+    }
+
+    private int pageSize(int size) {
+        return Math.max(1, Math.min(size, maxPageSize));
+    }
+}
+
+// Holds seats directly, for clients that run their own two-phase flow, such as
+// holding while a payment goes through
+@RestController
+class SeatHoldController {
+
+    @Autowired
+    private SeatHolds holds;
+
+    @Autowired
+    private TicketInventory inventory;
+
+    // Answers with the transaction ID to confirm or release, or 409 if the seats are not available
+    @PostMapping("/holds")
+    public ResponseEntity<String> hold(@RequestParam String location,
+                                       @RequestParam int seats,
+                                       @RequestParam(required = false) String transactionID,
+                                       @RequestParam(name = "ttl-ms", required = false) Long ttlMillis) {
+        String id = transactionID != null ? transactionID : UUID.randomUUID().toString();
+        boolean held = ttlMillis != null ? holds.hold(id, location, seats, ttlMillis) : holds.hold(id, location, seats);
+        return held ? ResponseEntity.status(HttpStatus.CREATED).body(id) : ResponseEntity.status(HttpStatus.CONFLICT).build();
+    }
+
+    @PostMapping("/holds/{transactionID}/confirm")
+    public ResponseEntity<Void> confirm(@PathVariable String transactionID) {
+        return holds.confirm(transactionID) ? ResponseEntity.ok().build() : ResponseEntity.notFound().build();
+    }
+
+    @DeleteMapping("/holds/{transactionID}")
+    public ResponseEntity<Void> release(@PathVariable String transactionID) {
+        return holds.release(transactionID) ? ResponseEntity.noContent().build() : ResponseEntity.notFound().build();
+    }
+
+    @GetMapping("/availability/{location}")
+    public ResponseEntity<Availability> availability(@PathVariable String location) {
+        int available = inventory.available(location);
+        return available < 0 ? ResponseEntity.notFound().build()
+                : ResponseEntity.ok(new Availability(location, available, inventory.held(location)));
+    }
+}
+
+// Seats of a location that can still be held, and those held now
+class Availability {
+
+    private final String location;
+    private final int available;
+    private final int held;
+
+    Availability(String location, int available, int held) {
+        this.location = location;
+        this.available = available;
+        this.held = held;
+    }
+
+    public String getLocation() {
+        return location;
+    }
+
+    public int getAvailable() {
+        return available;
+    }
+
+    public int getHeld() {
+        return held;
+    }
 }
 
 
 @Entity
+@Table(indexes = @Index(name = "ticket_location_idx", columnList = "ticketLocation"))
 class Ticket {
 
     @Id
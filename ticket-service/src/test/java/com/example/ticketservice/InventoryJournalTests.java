@@ -0,0 +1,61 @@
+package com.example.ticketservice;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+public class InventoryJournalTests {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void recoversWhatWasRecordedBeforeACrash() throws Exception {
+		String dir = folder.getRoot().getPath();
+		InventoryJournal journal = new InventoryJournal(dir, 4096);
+		journal.stored("Pune", () -> 10);
+		journal.hold("t1", "Pune", 2, 1000L);
+		journal.hold("t2", "Pune", 3, 2000L);
+		journal.settle("t1");
+		journal.stored("Pune", () -> 8);
+		// small segments, so the records span several
+		for (int i = 0; i < 300; i++) {
+			journal.stored("Agra", () -> 1);
+		}
+
+		// never closed, like a process that died
+		InventoryJournal.State state = new InventoryJournal(dir, 4096).recover();
+
+		assertThat(state.stored).containsEntry("Pune", 8).containsEntry("Agra", 1);
+		assertThat(state.holds).containsOnlyKeys("t2");
+		assertThat(state.holds.get("t2").seats).isEqualTo(3);
+		assertThat(state.holds.get("t2").deadline).isEqualTo(2000L);
+	}
+
+	@Test
+	public void snapshotReplacesTheJournalBeforeIt() throws Exception {
+		String dir = folder.getRoot().getPath();
+		InventoryJournal journal = new InventoryJournal(dir, 4096);
+		journal.stored("Pune", () -> 10);
+		journal.hold("t1", "Pune", 2, 1000L);
+
+		journal.snapshot(state -> {
+			state.stored.put("Pune", 10);
+			state.holds.put("t1", new InventoryJournal.HeldSeats("Pune", 2, 1000L));
+		});
+		journal.settle("t1");
+		journal.stored("Pune", () -> 8);
+		journal.close();
+
+		assertThat(folder.getRoot().list()).containsOnly("snapshot-0000000001.gz", "journal-0000000002.seg");
+		InventoryJournal.State state = new InventoryJournal(dir, 4096).recover();
+		assertThat(state.stored).containsOnly(entry("Pune", 8));
+		assertThat(state.holds).isEmpty();
+		assertThat(new File(folder.getRoot(), "journal-0000000003.seg")).exists();
+	}
+}
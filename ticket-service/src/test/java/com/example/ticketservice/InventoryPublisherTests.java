@@ -0,0 +1,42 @@
+package com.example.ticketservice;
+
+import com.example.reservationevents.InventoryEvent;
+import com.example.reservationevents.SagaEventPublisher;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class InventoryPublisherTests {
+
+	@Test
+	public void publishesOnlyChangedLocationsBetweenRefreshes() {
+		TicketRepository repository = mock(TicketRepository.class);
+		when(repository.findAll()).thenReturn(Arrays.asList(new Ticket("Mumbai", 10), new Ticket("Delhi", 5)));
+		TicketInventory inventory = new TicketInventory(repository, mock(PlatformTransactionManager.class),
+				InventoryJournal.disabled());
+		inventory.load();
+		SagaEventPublisher publisher = mock(SagaEventPublisher.class);
+		InventoryPublisher inventoryPublisher = new InventoryPublisher(inventory, publisher, 200, 60000);
+
+		// the first look is a refresh
+		inventoryPublisher.publishChanges();
+		inventory.tryHold("Mumbai", 4);
+		inventoryPublisher.publishChanges();
+		inventoryPublisher.publishChanges();
+
+		ArgumentCaptor<InventoryEvent> events = ArgumentCaptor.forClass(InventoryEvent.class);
+		verify(publisher, times(3)).publish(events.capture());
+		InventoryEvent last = events.getAllValues().get(2);
+		assertThat(last.getTicketLocation()).isEqualTo("Mumbai");
+		assertThat(last.getAvailableTickets()).isEqualTo(6);
+	}
+
+}
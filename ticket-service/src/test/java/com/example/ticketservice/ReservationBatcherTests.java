@@ -0,0 +1,98 @@
+package com.example.ticketservice;
+
+import com.example.reservationevents.EventType;
+import com.example.reservationevents.ProcessedEvents;
+import com.example.reservationevents.ReservationSavedEvent;
+import com.example.reservationevents.SagaEvent;
+import com.example.reservationevents.SagaEventPublisher;
+import com.example.reservationevents.SagaMetrics;
+import org.junit.After;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+public class ReservationBatcherTests {
+
+	private final EmbeddedDatabase database = new EmbeddedDatabaseBuilder().setType(EmbeddedDatabaseType.H2).generateUniqueName(true).build();
+	private final TicketRepository repository = mock(TicketRepository.class);
+	private final TicketInventory inventory = new TicketInventory(repository, mock(PlatformTransactionManager.class),
+			InventoryJournal.disabled());
+	private final SagaEventPublisher publisher = mock(SagaEventPublisher.class);
+	private final SeatHolds holds = new SeatHolds(inventory, InventoryJournal.disabled(), 60000, 100, 8);
+	private final ReservationBatcher batcher = new ReservationBatcher(holds, publisher, new SagaMetrics(),
+			new ProcessedEvents(new JdbcTemplate(database), 2, 60000, 100, 60000),
+			new TransactionTemplate(new DataSourceTransactionManager(database)), 100, 20, 100, 1);
+
+	@After
+	public void shutdown() throws Exception {
+		holds.close();
+		database.shutdown();
+	}
+
+	@Test
+	public void batchHoldsSeatsWithoutWriting() throws Exception {
+		when(repository.findAll()).thenReturn(Arrays.asList(new Ticket("Mumbai", 10), new Ticket("Delhi", 5)));
+		inventory.load();
+
+		batcher.process(Arrays.asList(
+				new ReservationSavedEvent("Ashish", "Mumbai", 4, "t1"),
+				new ReservationSavedEvent("Amit", "Delhi", 2, "t2"),
+				new ReservationSavedEvent("Amar", "Mumbai", 3, "t3"),
+				// would leave Mumbai without tickets, rejected
+				new ReservationSavedEvent("Tushar", "Mumbai", 3, "t4")));
+
+		assertThat(inventory.available("Mumbai")).isEqualTo(3);
+		assertThat(inventory.held("Mumbai")).isEqualTo(7);
+		assertThat(inventory.held("Delhi")).isEqualTo(2);
+		assertThat(holds.active()).isEqualTo(3);
+		verify(repository, never()).save(any(Ticket.class));
+
+		ArgumentCaptor<SagaEvent> replies = ArgumentCaptor.forClass(SagaEvent.class);
+		verify(publisher, times(4)).publish(replies.capture());
+		assertThat(replies.getAllValues()).extracting(SagaEvent::getTransactionID)
+				.containsExactly("t1", "t2", "t3", "t4");
+		assertThat(replies.getAllValues()).extracting(SagaEvent::getType).containsExactly(EventType.TICKET_RESERVE,
+				EventType.TICKET_RESERVE, EventType.TICKET_RESERVE, EventType.TICKET_REJECT);
+		verifyNoMoreInteractions(publisher);
+	}
+
+	@Test
+	public void answersARedeliveryAgainWithoutTakingTheSeatsTwice() throws Exception {
+		when(repository.findAll()).thenReturn(Collections.singletonList(new Ticket("Mumbai", 10)));
+		inventory.load();
+		ReservationSavedEvent reservation = new ReservationSavedEvent("Ashish", "Mumbai", 4, "t1");
+		batcher.process(Collections.singletonList(reservation));
+		reset(publisher);
+
+		// its TICKET_RESERVE may not have gone out
+		batcher.process(Collections.singletonList(reservation));
+		assertThat(inventory.available("Mumbai")).isEqualTo(6);
+		verify(publisher).publish(any(SagaEvent.class));
+
+		// settled since, dropped
+		holds.confirm("t1");
+		batcher.process(Collections.singletonList(reservation));
+		assertThat(inventory.available("Mumbai")).isEqualTo(6);
+		verifyNoMoreInteractions(publisher);
+	}
+
+}
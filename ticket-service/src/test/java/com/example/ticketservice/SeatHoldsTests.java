@@ -0,0 +1,107 @@
+package com.example.ticketservice;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class SeatHoldsTests {
+
+	private TicketInventory inventory;
+	private SeatHolds holds;
+
+	@Before
+	public void setUp() {
+		TicketRepository repository = mock(TicketRepository.class);
+		when(repository.findAll()).thenReturn(Collections.singletonList(new Ticket("Pune", 10)));
+		inventory = new TicketInventory(repository, mock(PlatformTransactionManager.class),
+				InventoryJournal.disabled());
+		inventory.load();
+		holds = new SeatHolds(inventory, InventoryJournal.disabled(), 60000, 10, 8);
+	}
+
+	@After
+	public void close() throws InterruptedException {
+		holds.close();
+	}
+
+	@Test
+	public void heldSeatsAreUnavailableUntilReleased() {
+		assertThat(holds.hold("t1", "Pune", 4)).isTrue();
+		// holding again for the same transaction takes nothing more
+		assertThat(holds.hold("t1", "Pune", 4)).isTrue();
+		assertThat(inventory.available("Pune")).isEqualTo(6);
+		assertThat(inventory.held("Pune")).isEqualTo(4);
+		// would leave Pune without tickets
+		assertThat(holds.hold("t2", "Pune", 6)).isFalse();
+
+		assertThat(holds.release("t1")).isTrue();
+		assertThat(holds.release("t1")).isFalse();
+		assertThat(inventory.available("Pune")).isEqualTo(10);
+		assertThat(inventory.held("Pune")).isZero();
+	}
+
+	@Test
+	public void confirmedSeatsAreSold() {
+		holds.hold("t1", "Pune", 3);
+
+		assertThat(holds.confirm("t1")).isTrue();
+		assertThat(holds.release("t1")).isFalse();
+		assertThat(inventory.available("Pune")).isEqualTo(7);
+		assertThat(inventory.held("Pune")).isZero();
+	}
+
+	@Test
+	public void expiredHoldsGiveTheSeatsBack() throws Exception {
+		holds.hold("t1", "Pune", 5, 20);
+
+		awaitExpiry();
+		assertThat(inventory.available("Pune")).isEqualTo(10);
+		// sold to another booking meanwhile
+		assertThat(holds.hold("t2", "Pune", 6)).isTrue();
+		assertThat(holds.confirm("t1")).isFalse();
+		assertThat(inventory.available("Pune")).isEqualTo(4);
+	}
+
+	@Test
+	public void aConfirmAfterTheHoldExpiredTakesTheSeatsAgain() throws Exception {
+		holds.hold("t1", "Pune", 3, 20);
+
+		awaitExpiry();
+		assertThat(holds.confirm("t1")).isTrue();
+		assertThat(inventory.available("Pune")).isEqualTo(7);
+		assertThat(inventory.held("Pune")).isZero();
+		assertThat(holds.confirm("t1")).isFalse();
+		assertThat(inventory.available("Pune")).isEqualTo(7);
+	}
+
+	@Test
+	public void restoredHoldsKeepTheirSeatsUntilTheirDeadline() {
+		assertThat(holds.restore("t1", "Pune", 4, System.currentTimeMillis() + 60000)).isTrue();
+		assertThat(holds.restore("t1", "Pune", 4, System.currentTimeMillis() + 60000)).isTrue();
+		// timed out while the service was down
+		assertThat(holds.restore("t2", "Pune", 3, System.currentTimeMillis() - 1)).isFalse();
+
+		assertThat(inventory.available("Pune")).isEqualTo(6);
+		assertThat(inventory.held("Pune")).isEqualTo(4);
+		assertThat(holds.confirm("t1")).isTrue();
+		assertThat(inventory.available("Pune")).isEqualTo(6);
+		assertThat(inventory.held("Pune")).isZero();
+	}
+
+	private void awaitExpiry() throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while ((holds.active() > 0 || inventory.held("Pune") > 0) && System.nanoTime() < deadline) {
+			Thread.sleep(10);
+		}
+		assertThat(holds.active()).isZero();
+	}
+
+}
@@ -0,0 +1,90 @@
+package com.example.ticketservice;
+
+import org.junit.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class TicketInventoryTests {
+
+	@Test
+	public void concurrentReservationsNeverOversell() throws Exception {
+		TicketRepository repository = mock(TicketRepository.class);
+		when(repository.findAll()).thenReturn(Collections.singletonList(new Ticket("Mumbai", 500)));
+		TicketInventory inventory = new TicketInventory(repository, mock(PlatformTransactionManager.class),
+				InventoryJournal.disabled());
+		inventory.load();
+
+		ExecutorService consumers = Executors.newFixedThreadPool(16);
+		CountDownLatch start = new CountDownLatch(1);
+		AtomicInteger reserved = new AtomicInteger();
+		for (int i = 0; i < 1000; i++) {
+			consumers.execute(() -> {
+				try {
+					start.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				if (inventory.tryReserve("Mumbai", 1)) {
+					reserved.incrementAndGet();
+				}
+			});
+		}
+		start.countDown();
+		consumers.shutdown();
+		assertThat(consumers.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+
+		// the last ticket of a location is never handed out
+		assertThat(reserved.get()).isEqualTo(499);
+		assertThat(inventory.available("Mumbai")).isEqualTo(1);
+	}
+
+	@Test
+	public void holdsWriteNothingAndConfirmsWriteTheLowerCountThroughTheWriter() throws Exception {
+		TicketRepository repository = mock(TicketRepository.class);
+		Ticket mumbai = new Ticket("Mumbai", 10);
+		when(repository.findAll()).thenReturn(Collections.singletonList(mumbai));
+		when(repository.findByTicketLocationIn(Collections.singletonList("Mumbai")))
+				.thenReturn(Collections.singletonList(mumbai));
+		TicketInventory inventory = new TicketInventory(repository, mock(PlatformTransactionManager.class),
+				InventoryJournal.disabled());
+		inventory.load();
+
+		assertThat(inventory.tryHold("Mumbai", 4)).isTrue();
+		assertThat(inventory.tryHold("Mumbai", 3)).isTrue();
+		inventory.release("Mumbai", 3);
+		verify(repository, never()).findByTicketLocationIn(any());
+
+		inventory.confirm("Mumbai", 4);
+		inventory.close();
+
+		// the stored count, updated on the row rather than decremented per booking
+		assertThat(mumbai.getTicketCounts()).isEqualTo(6);
+		verify(repository, never()).takeTickets(anyString(), anyInt());
+		verify(repository, never()).save(any(Ticket.class));
+	}
+
+	@Test
+	public void unknownLocationIsNotReserved() {
+		TicketInventory inventory = new TicketInventory(mock(TicketRepository.class), mock(PlatformTransactionManager.class),
+				InventoryJournal.disabled());
+
+		assertThat(inventory.tryReserve("Atlantis", 1)).isFalse();
+		assertThat(inventory.available("Atlantis")).isEqualTo(-1);
+	}
+
+}
@@ -0,0 +1,49 @@
+package com.example.ticketservice;
+
+import com.example.reservationevents.ReservationSavedEvent;
+import com.example.reservationevents.SagaEvent;
+import com.example.reservationevents.TicketConfirmEvent;
+import com.example.reservationevents.TicketReleaseEvent;
+import com.example.reservationevents.TicketSaveEvent;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TicketReplayTests {
+
+	private final TicketReplay replay = new TicketReplay(InventoryJournal.disabled(), 60000);
+
+	@Test
+	public void deductsTheSeatsOfConfirmedHoldsFromTheLastSave() {
+		TicketReplay.Location pune = fold(
+				new TicketSaveEvent("Pune", 10),
+				new ReservationSavedEvent("Amit", "Pune", 4, "t1"),
+				// would leave Pune without tickets
+				new ReservationSavedEvent("Amar", "Pune", 6, "t2"),
+				new ReservationSavedEvent("Ashish", "Pune", 2, "t3"),
+				new TicketConfirmEvent("Amit", "Pune", 4, "t1"),
+				new TicketReleaseEvent("Ashish", "Pune", 2, "t3"),
+				new TicketConfirmEvent("Amar", "Pune", 6, "t2"));
+
+		assertThat(pune.getStored()).isEqualTo(6);
+		assertThat(pune.getHeld()).isZero();
+	}
+
+	@Test
+	public void leavesLocationsWithoutASaveAsTheyAre() {
+		TicketReplay.Location agra = fold(
+				new ReservationSavedEvent("Amit", "Agra", 4, "t1"),
+				new TicketConfirmEvent("Amit", "Agra", 4, "t1"));
+
+		assertThat(agra.getStored()).isNull();
+	}
+
+	private TicketReplay.Location fold(SagaEvent... events) {
+		TicketReplay.Location location = null;
+		for (SagaEvent event : events) {
+			assertThat(replay.keyOf(event)).isNotNull();
+			location = replay.apply(location, event);
+		}
+		return location;
+	}
+}
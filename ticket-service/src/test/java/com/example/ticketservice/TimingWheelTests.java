@@ -0,0 +1,52 @@
+package com.example.ticketservice;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TimingWheelTests {
+
+	// 4 slots of 10 ms, so a 100 ms timeout goes round the wheel twice first
+	private final TimingWheel wheel = new TimingWheel("test-wheel", 10, TimeUnit.MILLISECONDS, 4);
+
+	@After
+	public void close() throws InterruptedException {
+		wheel.close();
+	}
+
+	@Test
+	public void timeoutsRunOnceTheirDelayHasPassed() throws Exception {
+		CountDownLatch ran = new CountDownLatch(2);
+		long start = System.nanoTime();
+		AtomicInteger elapsedMillis = new AtomicInteger();
+		wheel.schedule(() -> {
+			elapsedMillis.set((int) TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+			ran.countDown();
+		}, 100, TimeUnit.MILLISECONDS);
+		wheel.schedule(ran::countDown, 0, TimeUnit.MILLISECONDS);
+
+		assertThat(ran.await(5, TimeUnit.SECONDS)).isTrue();
+		assertThat(elapsedMillis.get()).isGreaterThanOrEqualTo(100);
+		assertThat(wheel.pending()).isZero();
+	}
+
+	@Test
+	public void cancelledTimeoutsNeverRun() throws Exception {
+		AtomicInteger runs = new AtomicInteger();
+		TimingWheel.Timeout cancelled = wheel.schedule(runs::incrementAndGet, 30, TimeUnit.MILLISECONDS);
+		CountDownLatch later = new CountDownLatch(1);
+		wheel.schedule(later::countDown, 60, TimeUnit.MILLISECONDS);
+
+		assertThat(cancelled.cancel()).isTrue();
+		assertThat(later.await(5, TimeUnit.SECONDS)).isTrue();
+		assertThat(runs.get()).isZero();
+		assertThat(cancelled.isExpired()).isFalse();
+		assertThat(cancelled.cancel()).isFalse();
+	}
+
+}